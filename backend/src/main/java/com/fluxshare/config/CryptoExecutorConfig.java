@@ -0,0 +1,29 @@
+package com.fluxshare.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+
+/**
+ * Configuration for the shared executor that encrypts segments of large uploads.
+ * The queue is bounded; when it is full the uploading thread encrypts the
+ * segment itself, so a burst of uploads degrades to sequential encryption
+ * instead of piling up buffers.
+ */
+@Configuration
+public class CryptoExecutorConfig {
+
+    /** Queued segment tasks allowed per worker thread */
+    private static final int QUEUE_SLOTS_PER_THREAD = 4;
+
+    @Bean(name = "cryptoExecutor", destroyMethod = "shutdown")
+    public ExecutorService cryptoExecutor(
+            @Value("${fluxshare.encryption.parallel.threads:0}") int threads) {
+        int poolSize = ExecutorFactory.threadsOrCores(threads);
+        return ExecutorFactory.fixedPool("crypto", poolSize, poolSize * QUEUE_SLOTS_PER_THREAD,
+                new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+}
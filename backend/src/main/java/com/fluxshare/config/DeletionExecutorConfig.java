@@ -0,0 +1,25 @@
+package com.fluxshare.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+
+/**
+ * Configuration for the worker pool deleting stored data from the deletion
+ * queue. Deletes are I/O-bound, so the pool is sized independently of the
+ * CPU count; a full queue makes the submitting thread delete the entry itself.
+ */
+@Configuration
+public class DeletionExecutorConfig {
+
+    @Bean(name = "deletionExecutor", destroyMethod = "shutdown")
+    public ExecutorService deletionExecutor(
+            @Value("${fluxshare.storage.deletion.threads:4}") int threads,
+            @Value("${fluxshare.storage.deletion.batch-size:200}") int batchSize) {
+        return ExecutorFactory.fixedPool("deletion", Math.max(1, threads), Math.max(1, batchSize),
+                new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+}
@@ -0,0 +1,49 @@
+package com.fluxshare.config;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Builds the fixed-size worker pools behind the executor beans: daemon
+ * threads named after the pool and a bounded queue. The pools differ only
+ * in size, queue capacity and what happens when the queue is full.
+ */
+final class ExecutorFactory {
+
+    private ExecutorFactory() {
+    }
+
+    /**
+     * Resolve a configured thread count, where 0 means one thread per core
+     */
+    static int threadsOrCores(int threads) {
+        return threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+    }
+
+    /**
+     * Create a pool of {@code poolSize} daemon threads named {@code name-1}, {@code name-2}, ...
+     *
+     * @param name Thread name prefix
+     * @param poolSize Number of worker threads
+     * @param queueCapacity Tasks that may wait for a worker
+     * @param rejectionPolicy What to do with a task when the queue is full
+     * @return The executor; shut down by the bean's destroy method
+     */
+    static ExecutorService fixedPool(String name, int poolSize, int queueCapacity,
+                                     RejectedExecutionHandler rejectionPolicy) {
+        AtomicInteger threadCount = new AtomicInteger();
+
+        return new ThreadPoolExecutor(poolSize, poolSize, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, name + "-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                rejectionPolicy);
+    }
+}
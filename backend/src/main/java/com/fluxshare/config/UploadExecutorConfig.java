@@ -0,0 +1,44 @@
+package com.fluxshare.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+
+/**
+ * Configuration for the pool encrypting the files of multi-file uploads
+ * concurrently. Its size caps the files being encrypted across all uploads;
+ * each upload also keeps at most its own limit in flight. When the queue is
+ * full the uploading thread waits for a free slot instead of storing the file
+ * itself, which would let the number of files in flight grow with the number
+ * of uploads.
+ */
+@Configuration
+public class UploadExecutorConfig {
+
+    /** Queued files allowed per worker thread */
+    private static final int QUEUE_SLOTS_PER_THREAD = 2;
+
+    @Bean(name = "uploadExecutor", destroyMethod = "shutdown")
+    public ExecutorService uploadExecutor(
+            @Value("${fluxshare.upload.parallel.threads:0}") int threads) {
+        int poolSize = ExecutorFactory.threadsOrCores(threads);
+        return ExecutorFactory.fixedPool("upload", poolSize, poolSize * QUEUE_SLOTS_PER_THREAD,
+                UploadExecutorConfig::waitForQueueSlot);
+    }
+
+    private static void waitForQueueSlot(Runnable runnable, ThreadPoolExecutor executor) {
+        if (executor.isShutdown()) {
+            throw new RejectedExecutionException("Upload pool is shut down");
+        }
+        try {
+            executor.getQueue().put(runnable);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RejectedExecutionException("Interrupted while waiting for the upload pool", e);
+        }
+    }
+}
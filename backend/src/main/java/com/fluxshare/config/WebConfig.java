@@ -1,6 +1,12 @@
 package com.fluxshare.config;
 
+import com.fluxshare.controller.FileShareController;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.boot.autoconfigure.web.servlet.MultipartProperties;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.web.multipart.MultipartResolver;
+import org.springframework.web.multipart.support.StandardServletMultipartResolver;
 import org.springframework.web.servlet.config.annotation.CorsRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 
@@ -10,12 +16,33 @@ import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 @Configuration
 public class WebConfig implements WebMvcConfigurer {
 
+    /**
+     * Multipart resolver leaving streamed uploads alone: resolving parses the
+     * whole body up front, spooling large files to disk
+     */
+    @Bean
+    public MultipartResolver multipartResolver(MultipartProperties multipartProperties) {
+        StandardServletMultipartResolver resolver = new StandardServletMultipartResolver() {
+            @Override
+            public boolean isMultipart(HttpServletRequest request) {
+                return !FileShareController.STREAMING_UPLOAD_PATH.equals(request.getServletPath())
+                        && super.isMultipart(request);
+            }
+        };
+        resolver.setResolveLazily(multipartProperties.isResolveLazily());
+        return resolver;
+    }
+
     @Override
     public void addCorsMappings(CorsRegistry registry) {
         registry.addMapping("/api/**")
                 .allowedOrigins("*")
                 .allowedMethods("GET", "POST", "PUT", "DELETE", "OPTIONS")
                 .allowedHeaders("*")
+                // Read by browsers decrypting client-decryption shares and resuming uploads
+                .exposedHeaders("Content-Disposition", "Content-Range", "X-Cipher-Format",
+                        "X-Encryption-Algorithm", "X-Original-Content-Type", "X-Original-Content-Length",
+                        "Upload-Offset")
                 .maxAge(3600);
     }
 }
@@ -11,16 +11,26 @@ import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.fileupload2.core.DiskFileItem;
+import org.apache.commons.fileupload2.core.DiskFileItemFactory;
+import org.apache.commons.fileupload2.jakarta.servlet6.JakartaServletFileUpload;
+import org.springframework.boot.autoconfigure.web.servlet.MultipartProperties;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.util.UriComponentsBuilder;
+import org.springframework.web.util.UriUtils;
 
 import java.io.IOException;
 import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 /**
@@ -32,11 +42,28 @@ import java.util.stream.Collectors;
 @Slf4j
 public class FileShareController {
 
+    /** Upload path whose multipart body is read as it arrives instead of being parsed up front */
+    public static final String STREAMING_UPLOAD_PATH = "/api/v1/share/file/stream";
+
+    // Servlet request attributes of Tomcat's sendfile support
+    private static final String SENDFILE_SUPPORTED = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    // Response headers describing ciphertext served to client-decryption shares
+    private static final String CIPHER_FORMAT_HEADER = "X-Cipher-Format";
+    private static final String ENCRYPTION_ALGORITHM_HEADER = "X-Encryption-Algorithm";
+    private static final String ORIGINAL_TYPE_HEADER = "X-Original-Content-Type";
+    private static final String ORIGINAL_LENGTH_HEADER = "X-Original-Content-Length";
+
     private final ShareFactoryService shareFactoryService;
     private final ShareService shareService;
     private final FileStorageService fileStorageService;
     private final AccessLogService accessLogService;
     private final RateLimitService rateLimitService;
+    private final CompressionService compressionService;
+    private final MultipartProperties multipartProperties;
 
     /**
      * Upload files and create share
@@ -50,6 +77,7 @@ public class FileShareController {
             @RequestParam(required = false) String notes,
             @RequestParam(required = false) Integer maxDownloads,
             @RequestParam(required = false) Integer maxViews,
+            @RequestParam(required = false) Boolean clientDecryption,
             HttpServletRequest request) {
 
         log.info("Creating file share with {} files", files.size());
@@ -61,12 +89,13 @@ public class FileShareController {
                 .notes(notes)
                 .maxDownloads(maxDownloads)
                 .maxViews(maxViews)
+                .clientDecryption(clientDecryption)
                 .build();
 
         Share share = shareFactoryService.createFileShare(files, shareRequest);
 
         // Build share URL from request context
-        String shareUrl = buildShareUrl(request, share.getShareId());
+        String shareUrl = shareService.buildShareUrl(request, share);
 
         ShareResponse response = ShareResponse.forFileShare(
                 share.getShareId(),
@@ -83,20 +112,40 @@ public class FileShareController {
     }
 
     /**
-     * Build complete share URL
+     * Upload files and create share, encrypting each file as its part of the
+     * request arrives. Takes the same options as {@code /file}, as query
+     * parameters or as form fields sent before the files.
      */
-    private String buildShareUrl(HttpServletRequest request, String shareId) {
-        String scheme = request.getScheme();
-        String serverName = request.getServerName();
-        int serverPort = request.getServerPort();
-        
-        String portPart = "";
-        if ((scheme.equals("http") && serverPort != 80) || 
-            (scheme.equals("https") && serverPort != 443)) {
-            portPart = ":" + serverPort;
-        }
-        
-        return scheme + "://" + serverName + portPart + "/share/" + shareId;
+    @PostMapping(value = "/file/stream", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ResponseEntity<ShareResponse> createStreamedFileShare(HttpServletRequest request) throws IOException {
+        // request.getParameter would make the container parse (and spool) the whole body
+        Map<String, String> options = new LinkedHashMap<>();
+        UriComponentsBuilder.newInstance().query(request.getQueryString()).build().getQueryParams()
+                .forEach((name, values) -> options.put(UriUtils.decode(name, StandardCharsets.UTF_8),
+                        values.get(0) != null ? UriUtils.decode(values.get(0), StandardCharsets.UTF_8) : ""));
+
+        JakartaServletFileUpload<DiskFileItem, DiskFileItemFactory> upload = new JakartaServletFileUpload<>();
+        upload.setHeaderCharset(StandardCharsets.UTF_8);
+        upload.setFileSizeMax(multipartProperties.getMaxFileSize().toBytes());
+        upload.setSizeMax(multipartProperties.getMaxRequestSize().toBytes());
+
+        List<FileMetadata> files = shareFactoryService.createStreamedFileShare(upload, request, options);
+        Share share = files.get(0).getShare();
+
+        String shareUrl = shareService.buildShareUrl(request, share);
+
+        ShareResponse response = ShareResponse.forFileShare(
+                share.getShareId(),
+                shareUrl,
+                share.getExpiryTime(),
+                share.getViewOnce(),
+                share.isPasswordProtected(),
+                files.size()
+        );
+
+        accessLogService.logAccess(share, AccessAction.VIEW, request);
+
+        return ResponseEntity.status(HttpStatus.CREATED).body(response);
     }
 
     /**
@@ -133,6 +182,7 @@ public class FileShareController {
                 .files(fileEntries)
                 .totalFiles(files.size())
                 .totalSize(totalSize)
+                .clientDecryption(share.isClientDecryption())
                 .build();
 
         accessLogService.logAccess(share, AccessAction.METADATA_ACCESS, request);
@@ -141,7 +191,7 @@ public class FileShareController {
     }
 
     /**
-     * Download a single file
+     * Download a single file (supports single byte-range requests)
      */
     @GetMapping("/{shareId}/files/{fileName}")
     public void downloadFile(
@@ -158,27 +208,174 @@ public class FileShareController {
         shareService.validatePassword(share, password);
 
         FileMetadata fileMetadata = fileStorageService.getFileByName(share, fileName);
+
+        if (share.isClientDecryption()) {
+            sendCiphertext(share, fileMetadata, request, response);
+            return;
+        }
+
+        // Compressed files are sent as stored when the client accepts the content-coding;
+        // ranges then apply to the encoded bytes
+        boolean encoded = fileMetadata.getCompression() != null && compressionService.acceptsEncoding(
+                request.getHeader(HttpHeaders.ACCEPT_ENCODING), fileMetadata.getCompression());
+        boolean seekable = encoded ? fileMetadata.isEncodedSeekable() : fileMetadata.isSeekable();
+        long fileSize = encoded ? fileMetadata.getStoredLength() : fileMetadata.getSize();
+
+        // Resolve requested range; non-seekable files are always served whole
+        HttpRange range = seekable ? parseSingleRange(request.getHeader(HttpHeaders.RANGE)) : null;
+        long rangeStart = 0;
+        long rangeEnd = fileSize - 1;
+        if (range != null) {
+            rangeStart = range.getRangeStart(fileSize);
+            rangeEnd = Math.min(range.getRangeEnd(fileSize), fileSize - 1);
+            if (rangeStart >= fileSize || rangeStart > rangeEnd) {
+                response.setStatus(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE.value());
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + fileSize);
+                return;
+            }
+        }
+
         byte[] contentKey = shareService.getContentKey(share);
 
         // Set response headers
         response.setContentType(fileMetadata.getMimeType());
         response.setHeader(HttpHeaders.CONTENT_DISPOSITION, 
                 "attachment; filename=\"" + fileMetadata.getFilename() + "\"");
-        response.setContentLengthLong(fileMetadata.getSize());
+        if (seekable) {
+            response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        }
+        if (fileMetadata.getCompression() != null) {
+            response.setHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        }
+        if (encoded) {
+            response.setHeader(HttpHeaders.CONTENT_ENCODING, fileMetadata.getCompression().getContentEncoding());
+        }
 
         // Stream file
-        try (OutputStream outputStream = response.getOutputStream()) {
-            fileStorageService.streamFile(fileMetadata, outputStream, contentKey);
+        if (range != null) {
+            long rangeLength = rangeEnd - rangeStart + 1;
+            response.setStatus(HttpStatus.PARTIAL_CONTENT.value());
+            response.setHeader(HttpHeaders.CONTENT_RANGE, 
+                    "bytes " + rangeStart + "-" + rangeEnd + "/" + fileSize);
+            response.setContentLengthLong(rangeLength);
+
+            try (OutputStream outputStream = response.getOutputStream()) {
+                if (encoded) {
+                    fileStorageService.streamEncodedFileRange(fileMetadata, outputStream, contentKey,
+                            rangeStart, rangeLength);
+                } else {
+                    fileStorageService.streamFileRange(fileMetadata, outputStream, contentKey,
+                            rangeStart, rangeLength);
+                }
+            }
+        } else {
+            response.setContentLengthLong(fileSize);
+
+            try (OutputStream outputStream = response.getOutputStream()) {
+                if (encoded) {
+                    fileStorageService.streamEncodedFile(fileMetadata, outputStream, contentKey);
+                } else {
+                    fileStorageService.streamFile(fileMetadata, outputStream, contentKey);
+                }
+            }
+        }
+
+        // Resumed downloads and seeks are not counted as new downloads
+        if (rangeStart == 0) {
+            recordDownload(share, fileName, request);
+        }
+
+        log.info("Downloaded file: {} (bytes {}-{}) from share {}", fileName, rangeStart, rangeEnd, shareId);
+    }
+
+    /**
+     * Send a file of a client-decryption share as stored: the segmented AES-GCM
+     * ciphertext, untouched. Local files are handed to the container's sendfile
+     * support when available, so the bytes go from the page cache to the socket
+     * without passing through the JVM; ranges refer to the ciphertext.
+     */
+    private void sendCiphertext(Share share, FileMetadata fileMetadata, HttpServletRequest request,
+                                HttpServletResponse response) throws IOException {
+        FileStorageService.StoredCiphertext ciphertext = fileStorageService.locateCiphertext(fileMetadata);
+        long fileSize = ciphertext.getLength();
+
+        HttpRange range = parseSingleRange(request.getHeader(HttpHeaders.RANGE));
+        long rangeStart = 0;
+        long rangeEnd = fileSize - 1;
+        if (range != null) {
+            rangeStart = range.getRangeStart(fileSize);
+            rangeEnd = Math.min(range.getRangeEnd(fileSize), fileSize - 1);
+            if (rangeStart >= fileSize || rangeStart > rangeEnd) {
+                response.setStatus(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE.value());
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + fileSize);
+                return;
+            }
         }
+        long rangeLength = rangeEnd - rangeStart + 1;
 
+        response.setContentType(MediaType.APPLICATION_OCTET_STREAM_VALUE);
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION,
+                "attachment; filename=\"" + fileMetadata.getFilename() + "\"");
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        response.setHeader(CIPHER_FORMAT_HEADER, String.valueOf(fileMetadata.getCipherFormat()));
+        response.setHeader(ENCRYPTION_ALGORITHM_HEADER, fileMetadata.getEncryptionAlgorithm());
+        response.setHeader(ORIGINAL_TYPE_HEADER, fileMetadata.getMimeType());
+        response.setHeader(ORIGINAL_LENGTH_HEADER, String.valueOf(fileMetadata.getSize()));
+        if (range != null) {
+            response.setStatus(HttpStatus.PARTIAL_CONTENT.value());
+            response.setHeader(HttpHeaders.CONTENT_RANGE,
+                    "bytes " + rangeStart + "-" + rangeEnd + "/" + fileSize);
+        }
+        response.setContentLengthLong(rangeLength);
+
+        if (ciphertext.getLocalPath() != null && Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORTED))) {
+            // Tomcat sends the file once the handler returns
+            long start = ciphertext.getOffset() + rangeStart;
+            request.setAttribute(SENDFILE_FILENAME, ciphertext.getLocalPath().toAbsolutePath().toString());
+            request.setAttribute(SENDFILE_START, start);
+            request.setAttribute(SENDFILE_END, start + rangeLength);
+        } else {
+            try (OutputStream outputStream = response.getOutputStream()) {
+                fileStorageService.transferCiphertext(ciphertext, outputStream, rangeStart, rangeLength);
+            }
+        }
+
+        if (rangeStart == 0) {
+            recordDownload(share, fileMetadata.getFilename(), request);
+        }
+
+        log.info("Sent encrypted file: {} (bytes {}-{}) from share {}", fileMetadata.getFilename(),
+                rangeStart, rangeEnd, share.getShareId());
+    }
+
+    /**
+     * Count a download and apply view-once
+     */
+    private void recordDownload(Share share, String fileName, HttpServletRequest request) {
         // Increment download count
         shareService.incrementDownloadCount(share);
         accessLogService.logAccess(share, AccessAction.DOWNLOAD, request, fileName, true, null);
 
         // Handle view-once
         shareService.handleViewOnce(share);
+    }
+
+    /**
+     * Parse a Range header, returning null when absent, malformed or multi-range
+     * (in which case the whole file is served)
+     */
+    private HttpRange parseSingleRange(String rangeHeader) {
+        if (rangeHeader == null || rangeHeader.isBlank()) {
+            return null;
+        }
 
-        log.info("Downloaded file: {} from share {}", fileName, shareId);
+        try {
+            List<HttpRange> ranges = HttpRange.parseRanges(rangeHeader);
+            return ranges.size() == 1 ? ranges.get(0) : null;
+        } catch (IllegalArgumentException e) {
+            log.debug("Ignoring invalid Range header: {}", rangeHeader);
+            return null;
+        }
     }
 
     /**
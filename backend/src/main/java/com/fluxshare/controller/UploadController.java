@@ -0,0 +1,181 @@
+package com.fluxshare.controller;
+
+import com.fluxshare.dto.FileShareRequest;
+import com.fluxshare.dto.ShareResponse;
+import com.fluxshare.dto.UploadSessionRequest;
+import com.fluxshare.dto.UploadSessionResponse;
+import com.fluxshare.entity.Share;
+import com.fluxshare.entity.UploadSession;
+import com.fluxshare.enums.AccessAction;
+import com.fluxshare.exception.GlobalExceptionHandler;
+import com.fluxshare.exception.InvalidUploadException;
+import com.fluxshare.service.AccessLogService;
+import com.fluxshare.service.ShareService;
+import com.fluxshare.service.UploadSessionService;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.validation.Valid;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.UUID;
+
+/**
+ * Controller for resumable uploads: open a session, PUT chunks at the
+ * current offset (resuming after a failure by asking for it), then complete
+ * the session into a file share. Multipart uploads PUT numbered parts in
+ * any order and in parallel instead.
+ */
+@RestController
+@RequestMapping("/api/v1/share/upload")
+@RequiredArgsConstructor
+@Slf4j
+public class UploadController {
+
+    private static final String UPLOAD_OFFSET_HEADER = GlobalExceptionHandler.UPLOAD_OFFSET_HEADER;
+
+    private final UploadSessionService uploadSessionService;
+    private final ShareService shareService;
+    private final AccessLogService accessLogService;
+
+    /**
+     * Open a resumable upload
+     */
+    @PostMapping
+    public ResponseEntity<UploadSessionResponse> createUpload(@Valid @RequestBody UploadSessionRequest request) {
+        UploadSession session = uploadSessionService.createSession(request.getFilename(), request.getSize(),
+                Boolean.TRUE.equals(request.getClientDecryption()), Boolean.TRUE.equals(request.getMultipart()),
+                request.getPartSize());
+
+        return ResponseEntity.status(HttpStatus.CREATED)
+                .header(UPLOAD_OFFSET_HEADER, "0")
+                .body(toResponse(session));
+    }
+
+    /**
+     * Get an upload's current offset, e.g. to resume after a failed chunk
+     */
+    @GetMapping("/{uploadId}")
+    public ResponseEntity<UploadSessionResponse> getUpload(@PathVariable UUID uploadId) {
+        UploadSession session = uploadSessionService.getSession(uploadId);
+        UploadSessionResponse response = toResponse(session);
+
+        return ResponseEntity.ok()
+                .header(UPLOAD_OFFSET_HEADER, String.valueOf(response.getOffset()))
+                .body(response);
+    }
+
+    /**
+     * Append a chunk; the request body is the chunk's raw bytes and
+     * Upload-Offset must be the upload's current offset
+     */
+    @PutMapping("/{uploadId}")
+    public ResponseEntity<Void> uploadChunk(
+            @PathVariable UUID uploadId,
+            @RequestHeader(UPLOAD_OFFSET_HEADER) long offset,
+            HttpServletRequest request) throws IOException {
+
+        long length = request.getContentLengthLong();
+        if (length < 0) {
+            throw new InvalidUploadException("Chunks must be sent with a Content-Length");
+        }
+
+        long newOffset;
+        try (InputStream inputStream = request.getInputStream()) {
+            newOffset = uploadSessionService.appendChunk(uploadId, offset, length, inputStream);
+        }
+
+        return ResponseEntity.noContent()
+                .header(UPLOAD_OFFSET_HEADER, String.valueOf(newOffset))
+                .build();
+    }
+
+    /**
+     * Upload one part of a multipart upload; the request body is the part's raw bytes
+     */
+    @PutMapping("/{uploadId}/parts/{partNumber}")
+    public ResponseEntity<Void> uploadPart(
+            @PathVariable UUID uploadId,
+            @PathVariable int partNumber,
+            HttpServletRequest request) throws IOException {
+
+        long length = request.getContentLengthLong();
+        if (length < 0) {
+            throw new InvalidUploadException("Parts must be sent with a Content-Length");
+        }
+
+        try (InputStream inputStream = request.getInputStream()) {
+            uploadSessionService.uploadPart(uploadId, partNumber, length, inputStream);
+        }
+
+        return ResponseEntity.noContent().build();
+    }
+
+    /**
+     * Turn a fully received upload into a file share
+     */
+    @PostMapping("/{uploadId}/complete")
+    public ResponseEntity<ShareResponse> completeUpload(
+            @PathVariable UUID uploadId,
+            @RequestParam(required = false) Integer expiryHours,
+            @RequestParam(required = false) Boolean viewOnce,
+            @RequestParam(required = false) String password,
+            @RequestParam(required = false) String notes,
+            @RequestParam(required = false) Integer maxDownloads,
+            @RequestParam(required = false) Integer maxViews,
+            HttpServletRequest request) {
+
+        FileShareRequest shareRequest = FileShareRequest.builder()
+                .expiryHours(expiryHours)
+                .viewOnce(viewOnce)
+                .password(password)
+                .notes(notes)
+                .maxDownloads(maxDownloads)
+                .maxViews(maxViews)
+                .build();
+
+        Share share = uploadSessionService.completeSession(uploadId, shareRequest);
+
+        String shareUrl = shareService.buildShareUrl(request, share);
+
+        ShareResponse response = ShareResponse.forFileShare(
+                share.getShareId(),
+                shareUrl,
+                share.getExpiryTime(),
+                share.getViewOnce(),
+                share.isPasswordProtected(),
+                1
+        );
+
+        accessLogService.logAccess(share, AccessAction.VIEW, request);
+
+        return ResponseEntity.status(HttpStatus.CREATED).body(response);
+    }
+
+    /**
+     * Abort an upload and discard what was received
+     */
+    @DeleteMapping("/{uploadId}")
+    public ResponseEntity<Void> abortUpload(@PathVariable UUID uploadId) {
+        uploadSessionService.abortSession(uploadId);
+        return ResponseEntity.noContent().build();
+    }
+
+    private UploadSessionResponse toResponse(UploadSession session) {
+        return UploadSessionResponse.builder()
+                .uploadId(session.getId().toString())
+                .filename(session.getFilename())
+                .size(session.getTotalSize())
+                .offset(uploadSessionService.getReceivedBytes(session))
+                .chunkSize(uploadSessionService.getChunkSize(session))
+                .segmentSize(uploadSessionService.getSegmentSize(session))
+                .partCount(session.isMultipart() ? session.getPartCount() : null)
+                .receivedParts(session.isMultipart() ? uploadSessionService.getReceivedParts(session) : null)
+                .expiresAt(session.getExpiresAt())
+                .build();
+    }
+}
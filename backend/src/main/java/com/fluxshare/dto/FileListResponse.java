@@ -24,6 +24,8 @@ public class FileListResponse {
     
     private Long totalSize;
 
+    private Boolean clientDecryption;
+
     @Data
     @Builder
     @NoArgsConstructor
@@ -30,4 +30,6 @@ public class FileShareRequest {
 
     @Builder.Default
     private Boolean enablePreview = true;
+
+    private Boolean clientDecryption;
 }
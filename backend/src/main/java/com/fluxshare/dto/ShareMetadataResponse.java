@@ -43,6 +43,8 @@ public class ShareMetadataResponse {
     
     private Integer maxViews;
 
+    private Boolean clientDecryption;
+
     @Data
     @Builder
     @NoArgsConstructor
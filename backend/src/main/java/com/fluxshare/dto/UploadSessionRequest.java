@@ -0,0 +1,32 @@
+package com.fluxshare.dto;
+
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.PositiveOrZero;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Request DTO for opening a resumable or multipart upload
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class UploadSessionRequest {
+
+    @NotBlank(message = "Filename is required")
+    private String filename;
+
+    @NotNull(message = "Size is required")
+    @PositiveOrZero(message = "Size must not be negative")
+    private Long size;
+
+    private Boolean clientDecryption; // decided up front: it fixes how chunks are encrypted
+
+    private Boolean multipart; // send numbered parts in parallel instead of chunks in order
+
+    private Long partSize; // optional for multipart uploads; a multiple of the segment size
+}
@@ -0,0 +1,37 @@
+package com.fluxshare.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Response DTO describing a resumable or multipart upload
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class UploadSessionResponse {
+
+    private String uploadId;
+
+    private String filename;
+
+    private Long size;
+
+    private Long offset; // bytes received; the next chunk starts here
+
+    private Long chunkSize; // recommended chunk size; the part size of multipart uploads
+
+    private Integer partCount; // multipart uploads only
+
+    private List<Integer> receivedParts; // multipart uploads only
+
+    private Integer segmentSize; // chunks other than the last must be a multiple of this
+
+    private LocalDateTime expiresAt;
+}
@@ -0,0 +1,69 @@
+package com.fluxshare.entity;
+
+import com.fluxshare.enums.CipherFormat;
+import com.fluxshare.enums.Compression;
+import jakarta.persistence.*;
+import lombok.*;
+import org.hibernate.annotations.CreationTimestamp;
+import org.hibernate.annotations.GenericGenerator;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Entity representing a deduplicated encrypted blob.
+ * A blob is stored once and referenced by every FileMetadata row with the
+ * same content; it is deleted when its reference count drops to zero.
+ */
+@Entity
+@Table(name = "file_blob", indexes = {
+    @Index(name = "idx_blob_content_hash", columnList = "content_hash"),
+    @Index(name = "idx_blob_stored_path", columnList = "stored_path")
+})
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class Blob {
+
+    @Id
+    @GeneratedValue(generator = "UUID")
+    @GenericGenerator(name = "UUID", strategy = "org.hibernate.id.UUIDGenerator")
+    @Column(name = "id", updatable = false, nullable = false)
+    private UUID id;
+
+    @Column(name = "content_hash", nullable = false, length = 64)
+    private String contentHash; // keyed digest of the plaintext, scoped per dedup mode
+
+    @Column(name = "stored_path", nullable = false, length = 1000)
+    private String storedPath;
+
+    @Column(name = "encrypted_key", columnDefinition = "bytea", nullable = false)
+    private byte[] encryptedKey; // blob key wrapped with the master key
+
+    @Column(name = "size", nullable = false)
+    private Long size;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "cipher_format", length = 20)
+    private CipherFormat cipherFormat;
+
+    @Column(name = "encryption_algorithm", length = 50)
+    private String encryptionAlgorithm;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "compression", length = 20)
+    private Compression compression;
+
+    @Column(name = "encoded_size")
+    private Long encodedSize;
+
+    @Column(name = "reference_count", nullable = false)
+    @Builder.Default
+    private Integer referenceCount = 0;
+
+    @CreationTimestamp
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+}
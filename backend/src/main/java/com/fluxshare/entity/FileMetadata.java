@@ -1,5 +1,7 @@
 package com.fluxshare.entity;
 
+import com.fluxshare.enums.CipherFormat;
+import com.fluxshare.enums.Compression;
 import jakarta.persistence.*;
 import lombok.*;
 import org.hibernate.annotations.CreationTimestamp;
@@ -15,7 +17,8 @@ import java.util.UUID;
 @Entity
 @Table(name = "file_metadata", indexes = {
     @Index(name = "idx_file_share_id", columnList = "share_id"),
-    @Index(name = "idx_filename", columnList = "filename")
+    @Index(name = "idx_filename", columnList = "filename"),
+    @Index(name = "idx_file_stored_path", columnList = "stored_path")
 })
 @Getter
 @Setter
@@ -57,6 +60,61 @@ public class FileMetadata {
     @Builder.Default
     private Boolean isPreviewable = false;
 
+    @Enumerated(EnumType.STRING)
+    @Column(name = "cipher_format", length = 20)
+    private CipherFormat cipherFormat; // null for files stored before segmentation
+
+    @Column(name = "encryption_algorithm", length = 50)
+    private String encryptionAlgorithm; // null for files stored before algorithms were pluggable
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "compression", length = 20)
+    private Compression compression; // null when stored uncompressed
+
+    @Column(name = "encoded_size")
+    private Long encodedSize; // compressed size; null when stored uncompressed
+
+    @ManyToOne(fetch = FetchType.EAGER)
+    @JoinColumn(name = "blob_id")
+    private Blob blob; // shared deduplicated blob; null when the file has its own stored copy
+
+    @Column(name = "pack_offset")
+    private Long packOffset; // offset inside the packed segment at storedPath; null when stored as its own file
+
+    @Column(name = "pack_length")
+    private Integer packLength; // length of the encrypted entry inside the packed segment
+
+    @Column(name = "volume", length = 50)
+    private String volume; // storage volume holding storedPath; null for files stored before volumes existed
+
+    /**
+     * Check if the file is appended to a packed segment rather than stored on its own
+     */
+    public boolean isPacked() {
+        return packOffset != null;
+    }
+
+    /**
+     * Check if the original bytes support random access (HTTP Range)
+     */
+    public boolean isSeekable() {
+        return cipherFormat == CipherFormat.SEGMENTED && compression == null;
+    }
+
+    /**
+     * Check if the stored (possibly compressed) bytes support random access
+     */
+    public boolean isEncodedSeekable() {
+        return cipherFormat == CipherFormat.SEGMENTED;
+    }
+
+    /**
+     * Get the length of the stored representation before encryption
+     */
+    public long getStoredLength() {
+        return compression != null ? encodedSize : size;
+    }
+
     /**
      * Check if file can be previewed based on MIME type
      */
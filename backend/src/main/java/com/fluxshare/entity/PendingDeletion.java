@@ -0,0 +1,57 @@
+package com.fluxshare.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+import org.hibernate.annotations.CreationTimestamp;
+import org.hibernate.annotations.GenericGenerator;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Entity representing stored data waiting to be deleted.
+ * Rows are written in the same transaction that drops the metadata pointing
+ * at the data, and removed once a deletion worker has deleted it.
+ */
+@Entity
+@Table(name = "pending_deletion", indexes = {
+    @Index(name = "idx_pending_deletion_next_attempt", columnList = "next_attempt_at"),
+    @Index(name = "idx_pending_deletion_lease", columnList = "lease_token")
+})
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class PendingDeletion {
+
+    @Id
+    @GeneratedValue(generator = "UUID")
+    @GenericGenerator(name = "UUID", strategy = "org.hibernate.id.UUIDGenerator")
+    @Column(name = "id", updatable = false, nullable = false)
+    private UUID id;
+
+    @Column(name = "storage_key", nullable = false, length = 1000)
+    private String storageKey;
+
+    @Column(name = "directory", nullable = false)
+    @Builder.Default
+    private Boolean directory = false; // delete everything under the key as a directory-style prefix
+
+    @Column(name = "attempts", nullable = false)
+    @Builder.Default
+    private Integer attempts = 0;
+
+    @Column(name = "next_attempt_at", nullable = false)
+    private LocalDateTime nextAttemptAt; // also the lease expiry while a worker holds the row
+
+    @Column(name = "lease_token")
+    private UUID leaseToken; // batch that last claimed the row
+
+    @Column(name = "last_error", length = 500)
+    private String lastError;
+
+    @CreationTimestamp
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+}
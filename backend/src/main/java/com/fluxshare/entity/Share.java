@@ -79,6 +79,9 @@ public class Share {
     @Column(name = "max_views")
     private Integer maxViews;
 
+    @Column(name = "client_decryption")
+    private Boolean clientDecryption; // null for shares created before the mode existed
+
     @OneToMany(mappedBy = "share", cascade = CascadeType.ALL, orphanRemoval = true, fetch = FetchType.LAZY)
     @Builder.Default
     private List<FileMetadata> files = new ArrayList<>();
@@ -120,6 +123,13 @@ public class Share {
         return passwordHash != null && !passwordHash.isEmpty();
     }
 
+    /**
+     * Check if downloads are served as stored ciphertext for the client to decrypt
+     */
+    public boolean isClientDecryption() {
+        return Boolean.TRUE.equals(clientDecryption);
+    }
+
     /**
      * Increment view count
      */
@@ -0,0 +1,48 @@
+package com.fluxshare.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * Entity holding a checkpoint of one storage usage counter.
+ * Counters are keyed by scope, e.g. "global", "type:FILE" or "volume:default";
+ * nodes add their deltas to the row instead of overwriting it. The generation
+ * is the start time of the recount that last corrected the row: deltas from
+ * before it are already part of the count.
+ */
+@Entity
+@Table(name = "storage_usage")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class StorageUsage {
+
+    @Id
+    @Column(name = "id", length = 100, nullable = false)
+    private String id;
+
+    @Column(name = "file_count", nullable = false)
+    @Builder.Default
+    private Long fileCount = 0L;
+
+    @Column(name = "byte_count", nullable = false)
+    @Builder.Default
+    private Long byteCount = 0L;
+
+    @Column(name = "updated_at", nullable = false)
+    private LocalDateTime updatedAt;
+
+    @Column(name = "generation")
+    private Long generation; // epoch millis when the last recount started; null before the first one
+
+    /**
+     * Get the generation, treating rows never recounted as generation 0
+     */
+    public long getGenerationOrZero() {
+        return generation != null ? generation : 0L;
+    }
+}
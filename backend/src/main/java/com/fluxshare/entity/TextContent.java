@@ -1,5 +1,6 @@
 package com.fluxshare.entity;
 
+import com.fluxshare.enums.Compression;
 import jakarta.persistence.*;
 import lombok.*;
 import org.hibernate.annotations.CreationTimestamp;
@@ -49,4 +50,11 @@ public class TextContent {
     @Column(name = "is_code", nullable = false)
     @Builder.Default
     private Boolean isCode = false;
+
+    @Column(name = "encryption_algorithm", length = 50)
+    private String encryptionAlgorithm; // null for content stored before algorithms were pluggable
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "compression", length = 20)
+    private Compression compression; // null when stored uncompressed
 }
@@ -0,0 +1,48 @@
+package com.fluxshare.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+import org.hibernate.annotations.CreationTimestamp;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.OnDelete;
+import org.hibernate.annotations.OnDeleteAction;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Entity recording a part of a multipart upload that is on disk.
+ * Removed together with its upload session.
+ */
+@Entity
+@Table(name = "upload_part", uniqueConstraints = {
+    @UniqueConstraint(name = "uk_upload_part_number", columnNames = {"upload_id", "part_number"})
+})
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class UploadPart {
+
+    @Id
+    @GeneratedValue(generator = "UUID")
+    @GenericGenerator(name = "UUID", strategy = "org.hibernate.id.UUIDGenerator")
+    @Column(name = "id", updatable = false, nullable = false)
+    private UUID id;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "upload_id", nullable = false)
+    @OnDelete(action = OnDeleteAction.CASCADE)
+    private UploadSession session;
+
+    @Column(name = "part_number", nullable = false)
+    private Integer partNumber; // 1-based
+
+    @Column(name = "size", nullable = false)
+    private Long size; // plaintext bytes
+
+    @CreationTimestamp
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+}
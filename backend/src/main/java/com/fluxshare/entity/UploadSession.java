@@ -0,0 +1,94 @@
+package com.fluxshare.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+import org.hibernate.annotations.CreationTimestamp;
+import org.hibernate.annotations.GenericGenerator;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Entity representing a resumable upload in progress.
+ * Chunks (or, for multipart uploads, parts) are encrypted into the staging
+ * file as they arrive; completing the upload turns the staging file into a
+ * share's file and removes the row.
+ */
+@Entity
+@Table(name = "upload_session", indexes = {
+    @Index(name = "idx_upload_session_expires", columnList = "expires_at"),
+    @Index(name = "idx_upload_session_staging_path", columnList = "staging_path")
+})
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class UploadSession {
+
+    @Id
+    @GeneratedValue(generator = "UUID")
+    @GenericGenerator(name = "UUID", strategy = "org.hibernate.id.UUIDGenerator")
+    @Column(name = "id", updatable = false, nullable = false)
+    private UUID id;
+
+    @Column(name = "filename", nullable = false, length = 500)
+    private String filename;
+
+    @Column(name = "total_size", nullable = false)
+    private Long totalSize;
+
+    @Column(name = "received_bytes", nullable = false)
+    @Builder.Default
+    private Long receivedBytes = 0L; // plaintext bytes encrypted into the staging file so far
+
+    @Column(name = "staging_path", nullable = false, length = 1000)
+    private String stagingPath;
+
+    @Column(name = "mime_type", length = 255)
+    private String mimeType; // sniffed from the first chunk or part
+
+    @Column(name = "part_size")
+    private Long partSize; // set for multipart uploads: parts are sent in parallel instead of chunks in order
+
+    @Column(name = "volume", length = 50)
+    private String volume; // storage volume the staging file and the finished file live on
+
+    @Column(name = "encrypted_key", columnDefinition = "bytea", nullable = false)
+    private byte[] encryptedKey; // content key of the share the upload becomes, wrapped with the master key
+
+    @Column(name = "encryption_algorithm", nullable = false, length = 50)
+    private String encryptionAlgorithm;
+
+    @Column(name = "client_decryption", nullable = false)
+    @Builder.Default
+    private Boolean clientDecryption = false;
+
+    @CreationTimestamp
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+
+    @Column(name = "expires_at", nullable = false)
+    private LocalDateTime expiresAt; // pushed back by every chunk; abandoned sessions are cleaned up after it
+
+    /**
+     * Check if the parts of this upload can be sent in parallel
+     */
+    public boolean isMultipart() {
+        return partSize != null;
+    }
+
+    /**
+     * Get the number of parts of a multipart upload; an empty file is one empty part
+     */
+    public int getPartCount() {
+        return (int) Math.max(1, (totalSize + partSize - 1) / partSize);
+    }
+
+    /**
+     * Check if every chunk has been received; multipart uploads count their parts instead
+     */
+    public boolean isComplete() {
+        return receivedBytes.equals(totalSize);
+    }
+}
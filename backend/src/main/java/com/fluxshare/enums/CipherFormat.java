@@ -0,0 +1,18 @@
+package com.fluxshare.enums;
+
+/**
+ * Enum representing the on-disk layout of an encrypted file
+ */
+public enum CipherFormat {
+    /**
+     * Single IV followed by one GCM stream covering the whole file.
+     * Must be decrypted from the first byte.
+     */
+    LEGACY_STREAM,
+
+    /**
+     * Versioned header followed by fixed-size segments, each carrying
+     * its own nonce and tag. Supports random access.
+     */
+    SEGMENTED
+}
@@ -0,0 +1,25 @@
+package com.fluxshare.enums;
+
+/**
+ * Enum representing the compression applied to content before encryption
+ */
+public enum Compression {
+    /**
+     * zlib-wrapped Deflate (RFC 1950), served as-is with
+     * {@code Content-Encoding: deflate}
+     */
+    DEFLATE("deflate");
+
+    private final String contentEncoding;
+
+    Compression(String contentEncoding) {
+        this.contentEncoding = contentEncoding;
+    }
+
+    /**
+     * Get the HTTP content-coding token for this compression
+     */
+    public String getContentEncoding() {
+        return contentEncoding;
+    }
+}
@@ -0,0 +1,11 @@
+package com.fluxshare.exception;
+
+/**
+ * Exception thrown when an upload request is malformed
+ */
+public class InvalidUploadException extends FluxShareException {
+
+    public InvalidUploadException(String message) {
+        super(message);
+    }
+}
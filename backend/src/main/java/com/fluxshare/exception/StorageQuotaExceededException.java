@@ -0,0 +1,11 @@
+package com.fluxshare.exception;
+
+/**
+ * Exception thrown when an upload would exceed the storage capacity
+ */
+public class StorageQuotaExceededException extends FluxShareException {
+
+    public StorageQuotaExceededException(String message) {
+        super(message);
+    }
+}
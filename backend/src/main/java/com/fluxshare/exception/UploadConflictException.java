@@ -0,0 +1,21 @@
+package com.fluxshare.exception;
+
+/**
+ * Exception thrown when a chunk does not continue an upload at its current offset
+ */
+public class UploadConflictException extends FluxShareException {
+
+    private final long offset;
+
+    public UploadConflictException(String message, long offset) {
+        super(message);
+        this.offset = offset;
+    }
+
+    /**
+     * Get the offset the upload actually continues at
+     */
+    public long getOffset() {
+        return offset;
+    }
+}
@@ -0,0 +1,11 @@
+package com.fluxshare.exception;
+
+/**
+ * Exception thrown when a resumable upload session does not exist or has expired
+ */
+public class UploadSessionNotFoundException extends FluxShareException {
+
+    public UploadSessionNotFoundException(String uploadId) {
+        super("Upload session not found: " + uploadId);
+    }
+}
@@ -0,0 +1,59 @@
+package com.fluxshare.repository;
+
+import com.fluxshare.entity.Blob;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Repository for Blob entity operations.
+ * Reference counts are only changed through atomic update queries.
+ */
+@Repository
+public interface BlobRepository extends JpaRepository<Blob, UUID> {
+
+    /**
+     * Find blobs with a given content hash (normally at most one)
+     */
+    List<Blob> findByContentHash(String contentHash);
+
+    /**
+     * Find which of the given stored paths belong to blobs
+     */
+    @Query("SELECT b.storedPath FROM Blob b WHERE b.storedPath IN :paths")
+    List<String> findStoredPathsIn(@Param("paths") Collection<String> paths);
+
+    /**
+     * Find the next batch of blobs after a given ID (keyset pagination)
+     */
+    @Query("SELECT b FROM Blob b WHERE b.id > :afterId ORDER BY b.id")
+    List<Blob> findBlobsAfter(@Param("afterId") UUID afterId, Pageable pageable);
+
+    /**
+     * Add a reference to a blob; returns 0 if the blob no longer exists
+     */
+    @Modifying
+    @Query("UPDATE Blob b SET b.referenceCount = b.referenceCount + 1 WHERE b.id = :id")
+    int incrementReferenceCount(@Param("id") UUID id);
+
+    /**
+     * Drop a reference to a blob
+     */
+    @Modifying
+    @Query("UPDATE Blob b SET b.referenceCount = b.referenceCount - 1 WHERE b.id = :id AND b.referenceCount > 0")
+    int decrementReferenceCount(@Param("id") UUID id);
+
+    /**
+     * Delete a blob row if nothing references it any more; returns 1 if deleted
+     */
+    @Modifying
+    @Query("DELETE FROM Blob b WHERE b.id = :id AND b.referenceCount <= 0")
+    int deleteIfUnreferenced(@Param("id") UUID id);
+}
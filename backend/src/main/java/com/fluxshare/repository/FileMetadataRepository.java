@@ -2,11 +2,15 @@ package com.fluxshare.repository;
 
 import com.fluxshare.entity.FileMetadata;
 import com.fluxshare.entity.Share;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
@@ -63,4 +67,88 @@ public interface FileMetadataRepository extends JpaRepository<FileMetadata, UUID
      * Delete all files for a share
      */
     void deleteByShare(Share share);
+
+    /**
+     * Find the next batch of files stored on their own (not deduplicated or packed) after a given ID (keyset pagination)
+     */
+    @Query("SELECT fm FROM FileMetadata fm JOIN FETCH fm.share WHERE fm.blob IS NULL AND fm.packOffset IS NULL AND fm.id > :afterId ORDER BY fm.id")
+    List<FileMetadata> findStandaloneFilesAfter(@Param("afterId") UUID afterId, Pageable pageable);
+
+    /**
+     * Find which of the given stored paths are referenced by files
+     */
+    @Query("SELECT fm.storedPath FROM FileMetadata fm WHERE fm.storedPath IN :paths")
+    List<String> findStoredPathsIn(@Param("paths") Collection<String> paths);
+
+    /**
+     * Find the segments holding packed files
+     */
+    @Query("SELECT DISTINCT fm.storedPath FROM FileMetadata fm WHERE fm.packOffset IS NOT NULL")
+    List<String> findPackedSegmentPaths();
+
+    /**
+     * Delete a file row only if its stored path has not changed; returns 0 otherwise
+     */
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM FileMetadata fm WHERE fm.id = :id AND fm.storedPath = :storedPath")
+    int deleteByIdAndStoredPath(@Param("id") UUID id, @Param("storedPath") String storedPath);
+
+    /**
+     * Delete the rows of all files packed into a segment
+     */
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM FileMetadata fm WHERE fm.storedPath = :segmentPath AND fm.packOffset IS NOT NULL")
+    int deletePackedEntries(@Param("segmentPath") String segmentPath);
+
+    /**
+     * Delete the rows of all files referencing a blob
+     */
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM FileMetadata fm WHERE fm.blob.id = :blobId")
+    int deleteByBlobId(@Param("blobId") UUID blobId);
+
+    /**
+     * Get the current stored path of a file
+     */
+    @Query("SELECT fm.storedPath FROM FileMetadata fm WHERE fm.id = :id")
+    Optional<String> findStoredPathById(@Param("id") UUID id);
+
+    /**
+     * Move a file's stored path only if it has not changed; returns 0 if the row changed or was deleted
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE FileMetadata fm SET fm.storedPath = :newPath WHERE fm.id = :id AND fm.storedPath = :oldPath")
+    int updateStoredPath(@Param("id") UUID id, @Param("oldPath") String oldPath, @Param("newPath") String newPath);
+
+    /**
+     * Find the entries of a packed segment in file order
+     */
+    @Query("SELECT fm FROM FileMetadata fm WHERE fm.storedPath = :segmentPath AND fm.packOffset IS NOT NULL ORDER BY fm.packOffset")
+    List<FileMetadata> findPackedEntries(@Param("segmentPath") String segmentPath);
+
+    /**
+     * Get the bytes of a packed segment still referenced by files
+     */
+    @Query("SELECT COALESCE(SUM(fm.packLength), 0) FROM FileMetadata fm WHERE fm.storedPath = :segmentPath AND fm.packOffset IS NOT NULL")
+    long getLivePackedBytes(@Param("segmentPath") String segmentPath);
+
+    /**
+     * Point a packed entry at its copy in another segment, only if it has not moved; returns 0 otherwise
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE FileMetadata fm SET fm.storedPath = :newPath, fm.packOffset = :newOffset "
+            + "WHERE fm.id = :id AND fm.storedPath = :oldPath AND fm.packOffset = :oldOffset")
+    int relocatePackedEntry(@Param("id") UUID id, @Param("oldPath") String oldPath, @Param("oldOffset") long oldOffset,
+                            @Param("newPath") String newPath, @Param("newOffset") long newOffset);
+
+    /**
+     * Count files and sum their sizes per storage volume, as {volume, count, bytes} rows
+     */
+    @Query("SELECT fm.volume, COUNT(fm), COALESCE(SUM(fm.size), 0) FROM FileMetadata fm GROUP BY fm.volume")
+    List<Object[]> sumUsage();
 }
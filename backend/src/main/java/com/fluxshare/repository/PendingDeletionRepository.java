@@ -0,0 +1,75 @@
+package com.fluxshare.repository;
+
+import com.fluxshare.entity.PendingDeletion;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Repository for the deletion queue.
+ * Rows are claimed with a lease: a batch stamps its token and the lease expiry
+ * on due rows, so a crashed worker's rows become due again once it expires.
+ */
+@Repository
+public interface PendingDeletionRepository extends JpaRepository<PendingDeletion, UUID> {
+
+    /**
+     * Find IDs of rows due for an attempt, oldest first
+     */
+    @Query("SELECT d.id FROM PendingDeletion d WHERE d.nextAttemptAt <= :now ORDER BY d.nextAttemptAt")
+    List<UUID> findDueIds(@Param("now") LocalDateTime now, Pageable pageable);
+
+    /**
+     * Claim rows that are still due; rows claimed concurrently by another node are skipped
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE PendingDeletion d SET d.leaseToken = :token, d.nextAttemptAt = :leaseUntil " +
+           "WHERE d.id IN :ids AND d.nextAttemptAt <= :now")
+    int claim(@Param("ids") Collection<UUID> ids, @Param("now") LocalDateTime now,
+              @Param("token") UUID token, @Param("leaseUntil") LocalDateTime leaseUntil);
+
+    /**
+     * Find which of the given keys are queued for deletion
+     */
+    @Query("SELECT d.storageKey FROM PendingDeletion d WHERE d.storageKey IN :keys")
+    List<String> findStorageKeysIn(@Param("keys") Collection<String> keys);
+
+    /**
+     * Find the directory-style prefixes queued for deletion
+     */
+    @Query("SELECT d.storageKey FROM PendingDeletion d WHERE d.directory = true")
+    List<String> findDirectoryKeys();
+
+    /**
+     * Find the rows claimed by a batch
+     */
+    List<PendingDeletion> findByLeaseToken(UUID leaseToken);
+
+    /**
+     * Record a failed attempt and schedule the next one
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE PendingDeletion d SET d.attempts = d.attempts + 1, d.nextAttemptAt = :nextAttemptAt, " +
+           "d.lastError = :error, d.leaseToken = null WHERE d.id = :id")
+    int reschedule(@Param("id") UUID id, @Param("nextAttemptAt") LocalDateTime nextAttemptAt,
+                   @Param("error") String error);
+
+    /**
+     * Remove completed rows
+     */
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM PendingDeletion d WHERE d.id IN :ids")
+    int deleteByIdIn(@Param("ids") Collection<UUID> ids);
+}
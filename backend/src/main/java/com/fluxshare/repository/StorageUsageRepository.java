@@ -0,0 +1,58 @@
+package com.fluxshare.repository;
+
+import com.fluxshare.entity.StorageUsage;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Repository for storage usage checkpoints
+ */
+@Repository
+public interface StorageUsageRepository extends JpaRepository<StorageUsage, String> {
+
+    /**
+     * Add a delta to a counter in place, so checkpoints of several nodes add up.
+     * Only applies while the row is still at the given generation.
+     *
+     * @return Number of rows updated; 0 when the counter has no row yet or a recount moved it on
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE StorageUsage u SET u.fileCount = u.fileCount + :files, u.byteCount = u.byteCount + :bytes, " +
+           "u.updatedAt = :now WHERE u.id = :id AND COALESCE(u.generation, 0) = :generation")
+    int addDelta(@Param("id") String id, @Param("files") long files, @Param("bytes") long bytes,
+                 @Param("now") LocalDateTime now, @Param("generation") long generation);
+
+    /**
+     * Move every counter to a new generation unless one was started after {@code claimBefore}
+     *
+     * @return Number of rows moved
+     */
+    @Modifying
+    @Query("UPDATE StorageUsage u SET u.generation = :generation WHERE COALESCE(u.generation, 0) < :claimBefore")
+    int moveToGeneration(@Param("generation") long generation, @Param("claimBefore") long claimBefore);
+
+    /**
+     * Claim a recount: move the counters to a new generation and read them in
+     * the same transaction, so the values returned hold exactly the deltas of
+     * older generations
+     *
+     * @param generation The recount's start time in epoch millis
+     * @param claimBefore Do not claim when another recount started at or after this time
+     * @return The counters at the moment of the claim; empty if another recount holds it
+     */
+    @Transactional
+    default List<StorageUsage> claimRecount(long generation, long claimBefore) {
+        if (moveToGeneration(generation, claimBefore) == 0) {
+            return List.of();
+        }
+        return findAll();
+    }
+}
@@ -7,6 +7,7 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 
@@ -42,4 +43,16 @@ public interface TextContentRepository extends JpaRepository<TextContent, UUID>
      */
     @Query("SELECT tc FROM TextContent tc WHERE tc.isCode = true AND tc.language = :language")
     Optional<TextContent> findCodeByLanguage(@Param("language") String language);
+
+    /**
+     * Get the content length of a share's text without loading the content
+     */
+    @Query("SELECT tc.contentLength FROM TextContent tc WHERE tc.share = :share")
+    Optional<Integer> findContentLengthByShare(@Param("share") Share share);
+
+    /**
+     * Count text and code content and sum its length, as {isCode, count, length} rows
+     */
+    @Query("SELECT tc.isCode, COUNT(tc), COALESCE(SUM(tc.contentLength), 0) FROM TextContent tc GROUP BY tc.isCode")
+    List<Object[]> sumUsage();
 }
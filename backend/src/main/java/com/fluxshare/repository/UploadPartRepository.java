@@ -0,0 +1,45 @@
+package com.fluxshare.repository;
+
+import com.fluxshare.entity.UploadPart;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Repository for the received parts of multipart uploads
+ */
+@Repository
+public interface UploadPartRepository extends JpaRepository<UploadPart, UUID> {
+
+    /**
+     * Check if a part was already received
+     */
+    @Query("SELECT COUNT(p) > 0 FROM UploadPart p WHERE p.session.id = :uploadId AND p.partNumber = :partNumber")
+    boolean existsPart(@Param("uploadId") UUID uploadId, @Param("partNumber") int partNumber);
+
+    /**
+     * Forget a received part, e.g. before it is overwritten
+     */
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM UploadPart p WHERE p.session.id = :uploadId AND p.partNumber = :partNumber")
+    int deletePart(@Param("uploadId") UUID uploadId, @Param("partNumber") int partNumber);
+
+    /**
+     * Get the numbers of the received parts in ascending order
+     */
+    @Query("SELECT p.partNumber FROM UploadPart p WHERE p.session.id = :uploadId ORDER BY p.partNumber")
+    List<Integer> findPartNumbers(@Param("uploadId") UUID uploadId);
+
+    /**
+     * Get the plaintext bytes received in parts
+     */
+    @Query("SELECT COALESCE(SUM(p.size), 0) FROM UploadPart p WHERE p.session.id = :uploadId")
+    long sumSizes(@Param("uploadId") UUID uploadId);
+}
@@ -0,0 +1,76 @@
+package com.fluxshare.repository;
+
+import com.fluxshare.entity.UploadSession;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Repository for resumable upload sessions
+ */
+@Repository
+public interface UploadSessionRepository extends JpaRepository<UploadSession, UUID> {
+
+    /**
+     * Get the plaintext bytes received so far
+     */
+    @Query("SELECT u.receivedBytes FROM UploadSession u WHERE u.id = :id")
+    Optional<Long> findReceivedBytes(@Param("id") UUID id);
+
+    /**
+     * Record a received chunk, only if no other chunk was recorded since it started; returns 0 otherwise
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE UploadSession u SET u.receivedBytes = :newOffset, u.expiresAt = :expiresAt "
+            + "WHERE u.id = :id AND u.receivedBytes = :oldOffset")
+    int advance(@Param("id") UUID id, @Param("oldOffset") long oldOffset, @Param("newOffset") long newOffset,
+                @Param("expiresAt") LocalDateTime expiresAt);
+
+    /**
+     * Push back a session's expiry; returns 0 when the session is gone
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE UploadSession u SET u.expiresAt = :expiresAt WHERE u.id = :id")
+    int touch(@Param("id") UUID id, @Param("expiresAt") LocalDateTime expiresAt);
+
+    /**
+     * Record the MIME type sniffed from the start of the file
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE UploadSession u SET u.mimeType = :mimeType WHERE u.id = :id")
+    int updateMimeType(@Param("id") UUID id, @Param("mimeType") String mimeType);
+
+    /**
+     * Find sessions abandoned before the given time
+     */
+    @Query("SELECT u FROM UploadSession u WHERE u.expiresAt < :now ORDER BY u.expiresAt")
+    List<UploadSession> findExpired(@Param("now") LocalDateTime now, Pageable pageable);
+
+    /**
+     * Delete a session and, through the foreign key, its parts, only if it has
+     * not been completed or cleaned up concurrently; returns 0 otherwise
+     */
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM UploadSession u WHERE u.id = :id")
+    int deleteSession(@Param("id") UUID id);
+
+    /**
+     * Find which of the given paths are staging files of open sessions
+     */
+    @Query("SELECT u.stagingPath FROM UploadSession u WHERE u.stagingPath IN :paths")
+    List<String> findStagingPathsIn(@Param("paths") Collection<String> paths);
+}
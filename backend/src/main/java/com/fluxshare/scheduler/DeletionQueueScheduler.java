@@ -0,0 +1,35 @@
+package com.fluxshare.scheduler;
+
+import com.fluxshare.service.DeletionQueueService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Scheduled task deleting stored data queued by share deletion and cleanup
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class DeletionQueueScheduler {
+
+    private final DeletionQueueService deletionQueueService;
+
+    /**
+     * Process due deletion queue entries
+     */
+    @Scheduled(initialDelayString = "${fluxshare.storage.deletion.initial-delay-ms:10000}",
+            fixedDelayString = "${fluxshare.storage.deletion.interval-ms:2000}")
+    public void processDeletionQueue() {
+        try {
+            int completed = deletionQueueService.processDueEntries();
+            if (completed > 0) {
+                log.info("Deleted {} queued files and directories, {} still queued",
+                        completed, deletionQueueService.getQueueDepth());
+            }
+        } catch (Exception e) {
+            log.error("Error while processing the deletion queue", e);
+        }
+    }
+}
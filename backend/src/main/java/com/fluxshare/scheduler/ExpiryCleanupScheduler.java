@@ -3,8 +3,10 @@ package com.fluxshare.scheduler;
 import com.fluxshare.entity.Share;
 import com.fluxshare.enums.ShareType;
 import com.fluxshare.repository.ShareRepository;
+import com.fluxshare.service.ContentKeyCacheService;
 import com.fluxshare.service.FileStorageService;
 import com.fluxshare.service.TextContentService;
+import com.fluxshare.service.UploadSessionService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
@@ -26,10 +28,15 @@ public class ExpiryCleanupScheduler {
     private final ShareRepository shareRepository;
     private final FileStorageService fileStorageService;
     private final TextContentService textContentService;
+    private final ContentKeyCacheService contentKeyCacheService;
+    private final UploadSessionService uploadSessionService;
 
     @Value("${fluxshare.cleanup.enabled:true}")
     private boolean cleanupEnabled;
 
+    @Value("${fluxshare.upload.resumable.cleanup-batch-size:500}")
+    private int uploadCleanupBatchSize;
+
     /**
      * Clean up expired shares every 15 minutes
      */
@@ -104,6 +111,32 @@ public class ExpiryCleanupScheduler {
         }
     }
 
+    /**
+     * Clean up resumable uploads abandoned before completion, with the same
+     * schedule as expired shares
+     */
+    @Scheduled(cron = "${fluxshare.cleanup.cron:0 */15 * * * *}")
+    public void cleanupAbandonedUploads() {
+        if (!cleanupEnabled) {
+            return;
+        }
+
+        try {
+            int removed;
+            int total = 0;
+            do {
+                removed = uploadSessionService.cleanupExpiredSessions(uploadCleanupBatchSize);
+                total += removed;
+            } while (removed == uploadCleanupBatchSize);
+
+            if (total > 0) {
+                log.info("Cleaned up {} abandoned uploads", total);
+            }
+        } catch (Exception e) {
+            log.error("Error during abandoned uploads cleanup", e);
+        }
+    }
+
     /**
      * Clean up a single share
      */
@@ -120,6 +153,7 @@ public class ExpiryCleanupScheduler {
         // Mark as expired
         share.setHasExpired(true);
         shareRepository.save(share);
+        contentKeyCacheService.evict(share);
 
         log.debug("Share cleaned up: {}", share.getShareId());
     }
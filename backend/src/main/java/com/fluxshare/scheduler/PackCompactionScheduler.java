@@ -0,0 +1,35 @@
+package com.fluxshare.scheduler;
+
+import com.fluxshare.service.PackedStorageService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Scheduled task reclaiming space from packed segments whose entries
+ * belonged to deleted or expired shares
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class PackCompactionScheduler {
+
+    private final PackedStorageService packedStorageService;
+
+    /**
+     * Compact packed segments
+     */
+    @Scheduled(initialDelayString = "${fluxshare.storage.pack.compaction.interval-ms:600000}",
+            fixedDelayString = "${fluxshare.storage.pack.compaction.interval-ms:600000}")
+    public void compactSegments() {
+        try {
+            long reclaimed = packedStorageService.compact();
+            if (reclaimed > 0) {
+                log.info("Packed segment compaction reclaimed {} bytes", reclaimed);
+            }
+        } catch (Exception e) {
+            log.error("Error during packed segment compaction", e);
+        }
+    }
+}
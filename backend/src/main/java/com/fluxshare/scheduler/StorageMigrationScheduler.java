@@ -0,0 +1,43 @@
+package com.fluxshare.scheduler;
+
+import com.fluxshare.service.StorageMigrationService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Scheduled task moving existing files into the configured storage layout,
+ * one small batch per run so normal traffic is not starved
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class StorageMigrationScheduler {
+
+    private final StorageMigrationService storageMigrationService;
+
+    @Value("${fluxshare.storage.migration.enabled:true}")
+    private boolean migrationEnabled;
+
+    /**
+     * Migrate the next batch of files
+     */
+    @Scheduled(initialDelayString = "${fluxshare.storage.migration.initial-delay-ms:60000}",
+            fixedDelayString = "${fluxshare.storage.migration.interval-ms:5000}")
+    public void migrateBatch() {
+        if (!migrationEnabled || storageMigrationService.isComplete()) {
+            return;
+        }
+
+        try {
+            int moved = storageMigrationService.migrateNextBatch();
+            if (moved > 0) {
+                log.info("Storage migration moved {} files", moved);
+            }
+        } catch (Exception e) {
+            log.error("Error during storage migration", e);
+        }
+    }
+}
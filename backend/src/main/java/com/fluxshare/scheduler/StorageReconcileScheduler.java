@@ -0,0 +1,47 @@
+package com.fluxshare.scheduler;
+
+import com.fluxshare.service.StorageReconcilerService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Scheduled task comparing stored data with its metadata
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class StorageReconcileScheduler {
+
+    /** Only log the differences */
+    public static final String MODE_REPORT = "report";
+
+    /** Delete orphaned files and dangling rows */
+    public static final String MODE_FIX = "fix";
+
+    private final StorageReconcilerService storageReconcilerService;
+
+    @Value("${fluxshare.storage.reconcile.enabled:true}")
+    private boolean reconcileEnabled;
+
+    @Value("${fluxshare.storage.reconcile.mode:report}")
+    private String mode;
+
+    /**
+     * Reconcile storage, by default nightly at 3:30
+     */
+    @Scheduled(cron = "${fluxshare.storage.reconcile.cron:0 30 3 * * *}")
+    public void reconcileStorage() {
+        if (!reconcileEnabled) {
+            return;
+        }
+
+        try {
+            storageReconcilerService.reconcile(MODE_FIX.equalsIgnoreCase(mode));
+        } catch (Exception e) {
+            log.error("Error during storage reconciliation", e);
+        }
+    }
+}
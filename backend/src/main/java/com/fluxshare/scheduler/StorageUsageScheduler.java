@@ -0,0 +1,43 @@
+package com.fluxshare.scheduler;
+
+import com.fluxshare.service.StorageUsageService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Scheduled tasks persisting and correcting the storage usage counters
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class StorageUsageScheduler {
+
+    private final StorageUsageService storageUsageService;
+
+    /**
+     * Checkpoint the in-memory counters
+     */
+    @Scheduled(initialDelayString = "${fluxshare.storage.usage.checkpoint-interval-ms:30000}",
+            fixedDelayString = "${fluxshare.storage.usage.checkpoint-interval-ms:30000}")
+    public void checkpointUsage() {
+        try {
+            storageUsageService.checkpoint();
+        } catch (Exception e) {
+            log.error("Error while checkpointing storage usage", e);
+        }
+    }
+
+    /**
+     * Recount usage from the metadata, by default nightly at 4:00 (after reconciliation)
+     */
+    @Scheduled(cron = "${fluxshare.storage.usage.recount-cron:0 0 4 * * *}")
+    public void recountUsage() {
+        try {
+            storageUsageService.recount();
+        } catch (Exception e) {
+            log.error("Error while recounting storage usage", e);
+        }
+    }
+}
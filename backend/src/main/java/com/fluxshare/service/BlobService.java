@@ -0,0 +1,157 @@
+package com.fluxshare.service;
+
+import com.fluxshare.entity.Blob;
+import com.fluxshare.entity.Share;
+import com.fluxshare.repository.BlobRepository;
+import com.fluxshare.util.StoragePathUtil;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.HexFormat;
+import java.util.UUID;
+
+/**
+ * Service for the opt-in content-addressed blob store.
+ * Identical uploads are stored once and reference-counted across FileMetadata
+ * rows; the stored file is removed when the last reference is released.
+ *
+ * Deduplication trades confidentiality for space: with the {@code global}
+ * scope, anyone able to upload can learn from the server's behaviour (or an
+ * operator from the index) that two shares hold the same content. The
+ * {@code share} scope only deduplicates within a single share. Lookup hashes
+ * are keyed with the master key, so the index alone does not reveal which
+ * known files are stored.
+ */
+@Service
+@Slf4j
+public class BlobService {
+
+    /** Deduplicate only within a share */
+    public static final String SCOPE_SHARE = "share";
+
+    /** Deduplicate across all shares */
+    public static final String SCOPE_GLOBAL = "global";
+
+    private final BlobRepository blobRepository;
+    private final EncryptionService encryptionService;
+    private final BlobStore blobStore;
+    private final DeletionQueueService deletionQueueService;
+    private final StoragePathUtil storagePathUtil;
+    private final boolean dedupEnabled;
+    private final boolean globalScope;
+
+    @Value("${fluxshare.storage.temp-path:./storage/temp}")
+    private String tempPath;
+
+    public BlobService(
+            BlobRepository blobRepository,
+            EncryptionService encryptionService,
+            BlobStore blobStore,
+            DeletionQueueService deletionQueueService,
+            StoragePathUtil storagePathUtil,
+            @Value("${fluxshare.storage.dedup.enabled:false}") boolean dedupEnabled,
+            @Value("${fluxshare.storage.dedup.scope:share}") String scope) {
+        this.blobRepository = blobRepository;
+        this.encryptionService = encryptionService;
+        this.blobStore = blobStore;
+        this.deletionQueueService = deletionQueueService;
+        this.storagePathUtil = storagePathUtil;
+        this.dedupEnabled = dedupEnabled;
+        this.globalScope = SCOPE_GLOBAL.equalsIgnoreCase(scope);
+        if (dedupEnabled) {
+            log.info("Blob deduplication enabled with {} scope", globalScope ? SCOPE_GLOBAL : SCOPE_SHARE);
+        }
+    }
+
+    /**
+     * Check if uploads should go through the blob store
+     */
+    public boolean isEnabled() {
+        return dedupEnabled;
+    }
+
+    /**
+     * Get a fresh staging key for an upload whose content hash is not known yet
+     */
+    public String newStagingKey() {
+        return Paths.get(tempPath, UUID.randomUUID() + ".part").toString();
+    }
+
+    /**
+     * Reference an existing blob with the same content, or promote the staged
+     * upload to a new blob. The staged file is consumed either way.
+     *
+     * @param share The share the upload belongs to
+     * @param sha256 SHA-256 of the plaintext
+     * @param stagedFile Encrypted upload written with the candidate's key
+     * @param candidate Unsaved blob describing the staged upload
+     * @return The referenced blob (reference already counted)
+     */
+    @Transactional
+    public Blob attach(Share share, byte[] sha256, String stagedFile, Blob candidate) {
+        String contentHash = lookupHash(share, sha256);
+
+        for (Blob existing : blobRepository.findByContentHash(contentHash)) {
+            // The increment fails if the blob was released and deleted concurrently
+            if (blobRepository.incrementReferenceCount(existing.getId()) == 0) {
+                continue;
+            }
+            if (!blobStore.exists(existing.getStoredPath())) {
+                log.warn("Blob {} is missing its stored file, not reusing it", existing.getId());
+                blobRepository.decrementReferenceCount(existing.getId());
+                continue;
+            }
+
+            blobStore.delete(stagedFile);
+            log.debug("Deduplicated upload for share {} into blob {}", share.getShareId(), existing.getId());
+            return existing;
+        }
+
+        String blobPath = storagePathUtil.blobPath(UUID.randomUUID()).toString();
+        blobStore.move(stagedFile, blobPath);
+
+        candidate.setContentHash(contentHash);
+        candidate.setStoredPath(blobPath);
+        candidate.setReferenceCount(1);
+        return blobRepository.save(candidate);
+    }
+
+    /**
+     * Drop one reference to a blob; once nothing references it, its row goes
+     * and its stored file is queued for deletion
+     *
+     * @param blob The blob to release
+     */
+    @Transactional
+    public void release(Blob blob) {
+        blobRepository.decrementReferenceCount(blob.getId());
+        if (blobRepository.deleteIfUnreferenced(blob.getId()) == 0) {
+            return;
+        }
+
+        deletionQueueService.enqueue(blob.getStoredPath());
+        log.debug("Queued unreferenced blob {} for deletion", blob.getId());
+    }
+
+    /**
+     * Unwrap the key a blob was encrypted with
+     *
+     * @param blob The blob
+     * @return The unwrapped blob key (caller should zero it after use)
+     */
+    public byte[] getBlobKey(Blob blob) {
+        return encryptionService.unwrapContentKey(blob.getEncryptedKey());
+    }
+
+    /**
+     * Keyed, scope-bound lookup hash for a plaintext digest
+     */
+    private String lookupHash(Share share, byte[] sha256) {
+        String context = globalScope ? "blob:" + SCOPE_GLOBAL : "blob:" + SCOPE_SHARE + ":" + share.getId();
+        return HexFormat.of().formatHex(encryptionService.keyedHash(context.getBytes(StandardCharsets.UTF_8), sha256));
+    }
+}
@@ -0,0 +1,101 @@
+package com.fluxshare.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+
+/**
+ * Strategy interface for the backend holding encrypted file data.
+ * Objects are addressed by the storage key recorded in FileMetadata.storedPath;
+ * keys use '/' separated, path-like names so directory-style prefixes work on
+ * every backend. Failures surface as FileStorageException.
+ */
+public interface BlobStore {
+
+    /**
+     * Prepare the backend for use (create directories, check the bucket)
+     */
+    void initialize();
+
+    /**
+     * Write an object. The object only becomes visible once the writer
+     * returns; if it fails, nothing is stored and the error is rethrown.
+     *
+     * @param key The storage key
+     * @param writer Producer of the object's content
+     */
+    void write(String key, ContentWriter writer);
+
+    /**
+     * Open an object for reading. {@code skip} seeks without reading the
+     * skipped bytes, so range reads only fetch what they need.
+     *
+     * @param key The storage key
+     * @return Stream over the object's content
+     */
+    InputStream openStream(String key);
+
+    /**
+     * Open an object as a local file channel for positional or mapped reads
+     *
+     * @param key The storage key
+     * @return Read-only channel, or null when the backend does not keep local files
+     */
+    FileChannel openChannel(String key);
+
+    /**
+     * Get the local file holding an object, so it can be handed to the OS
+     * (sendfile) instead of being copied through the application
+     *
+     * @param key The storage key
+     * @return The file, or null when the backend does not keep local files
+     */
+    Path localPath(String key);
+
+    /**
+     * Get an object's size in bytes
+     */
+    long size(String key);
+
+    /**
+     * Check if an object exists
+     */
+    boolean exists(String key);
+
+    /**
+     * Delete an object; missing objects are ignored
+     */
+    void delete(String key);
+
+    /**
+     * Delete every object under a directory-style prefix
+     *
+     * @param prefix Key prefix without the trailing separator
+     */
+    void deleteDirectory(String prefix);
+
+    /**
+     * Copy an object, replacing any object at the target key
+     */
+    void copy(String sourceKey, String targetKey);
+
+    /**
+     * Move an object, replacing any object at the target key
+     */
+    void move(String sourceKey, String targetKey);
+
+    /**
+     * Get the backend name
+     */
+    String getType();
+
+    /**
+     * Producer of an object's content, invoked once by {@link #write}
+     */
+    @FunctionalInterface
+    interface ContentWriter {
+        void writeTo(OutputStream outputStream) throws IOException;
+    }
+}
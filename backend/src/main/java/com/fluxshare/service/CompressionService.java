@@ -0,0 +1,215 @@
+package com.fluxshare.service;
+
+import com.fluxshare.enums.Compression;
+import com.fluxshare.exception.FileStorageException;
+import com.fluxshare.util.MimeTypeUtil;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.io.output.CloseShieldOutputStream;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterInputStream;
+import java.util.zip.InflaterOutputStream;
+
+/**
+ * Service for compressing content before it is encrypted.
+ * Compression is chosen per MIME type and only applied when a sample of the
+ * content actually shrinks by the configured margin, so incompressible data
+ * pays for one small probe at most. Files above a size limit are never
+ * compressed: a compressed file has no seekable identity form, so clients
+ * that do not accept the coding could not resume or seek in it.
+ */
+@Service
+@Slf4j
+public class CompressionService {
+
+    /** Number of leading bytes compressed to decide whether compression pays off */
+    public static final int SAMPLE_SIZE = 64 * 1024;
+
+    private final MimeTypeUtil mimeTypeUtil;
+    private final boolean compressionEnabled;
+    private final int level;
+    private final int minSize;
+    private final long maxSize;
+    private final int minSavingsPercent;
+
+    public CompressionService(
+            MimeTypeUtil mimeTypeUtil,
+            @Value("${fluxshare.compression.enabled:true}") boolean compressionEnabled,
+            @Value("${fluxshare.compression.level:6}") int level,
+            @Value("${fluxshare.compression.min-size:512}") int minSize,
+            @Value("${fluxshare.compression.max-size:16777216}") long maxSize,
+            @Value("${fluxshare.compression.min-savings-percent:10}") int minSavingsPercent) {
+        this.mimeTypeUtil = mimeTypeUtil;
+        this.compressionEnabled = compressionEnabled;
+        this.level = level;
+        this.minSize = minSize;
+        this.maxSize = maxSize;
+        this.minSavingsPercent = minSavingsPercent;
+    }
+
+    /**
+     * Decide how to compress a stored file. Files larger than the size limit
+     * are kept uncompressed so they can be served by HTTP Range.
+     *
+     * @param mimeType The content MIME type
+     * @param contentLength The file size, or an upper bound of it
+     * @param sample The first bytes of the content
+     * @param length Number of valid bytes in the sample
+     * @return The compression to apply, or null to store the file as-is
+     */
+    public Compression select(String mimeType, long contentLength, byte[] sample, int length) {
+        if (contentLength > maxSize) {
+            return null;
+        }
+        return select(mimeType, sample, length);
+    }
+
+    /**
+     * Decide how to compress content from its MIME type and a leading sample
+     *
+     * @param mimeType The content MIME type
+     * @param sample The first bytes of the content
+     * @param length Number of valid bytes in the sample
+     * @return The compression to apply, or null to store the content as-is
+     */
+    public Compression select(String mimeType, byte[] sample, int length) {
+        if (!compressionEnabled || length < minSize || !mimeTypeUtil.isCompressible(mimeType)) {
+            return null;
+        }
+
+        Deflater deflater = new Deflater(level);
+        try {
+            deflater.setInput(sample, 0, length);
+            deflater.finish();
+            byte[] scratch = new byte[length];
+            long compressedLength = 0;
+            while (!deflater.finished()) {
+                compressedLength += deflater.deflate(scratch);
+            }
+
+            boolean paysOff = compressedLength * 100 <= (long) length * (100 - minSavingsPercent);
+            log.debug("Compression probe for {}: {} -> {} bytes", mimeType, length, compressedLength);
+            return paysOff ? Compression.DEFLATE : null;
+        } finally {
+            deflater.end();
+        }
+    }
+
+    /**
+     * Wrap a plaintext stream so that reading it yields compressed bytes
+     *
+     * @param compression The compression to apply
+     * @param inputStream The plaintext stream
+     * @return A stream of compressed bytes
+     */
+    public InputStream compressingStream(Compression compression, InputStream inputStream) {
+        Deflater deflater = new Deflater(level);
+        return new DeflaterInputStream(inputStream, deflater) {
+            @Override
+            public void close() throws IOException {
+                try {
+                    super.close();
+                } finally {
+                    deflater.end();
+                }
+            }
+        };
+    }
+
+    /**
+     * Wrap an output stream so that compressed bytes written to it are inflated.
+     * Closing the returned stream leaves {@code outputStream} open.
+     *
+     * @param compression The compression that was applied
+     * @param outputStream Destination for the original bytes
+     * @return A stream accepting compressed bytes
+     */
+    public OutputStream decompressingStream(Compression compression, OutputStream outputStream) {
+        return new InflaterOutputStream(CloseShieldOutputStream.wrap(outputStream));
+    }
+
+    /**
+     * Compress a byte array
+     *
+     * @param compression The compression to apply
+     * @param data The data to compress
+     * @return Compressed data
+     */
+    public byte[] compress(Compression compression, byte[] data) {
+        Deflater deflater = new Deflater(level);
+        try {
+            deflater.setInput(data);
+            deflater.finish();
+            ByteArrayOutputStream outputStream = new ByteArrayOutputStream(data.length / 2 + 64);
+            byte[] buffer = new byte[8192];
+            while (!deflater.finished()) {
+                outputStream.write(buffer, 0, deflater.deflate(buffer));
+            }
+            return outputStream.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    /**
+     * Decompress a byte array
+     *
+     * @param compression The compression that was applied
+     * @param data The compressed data
+     * @return The original data
+     */
+    public byte[] decompress(Compression compression, byte[] data) {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream(data.length * 3);
+        try (OutputStream inflating = decompressingStream(compression, outputStream)) {
+            inflating.write(data);
+        } catch (IOException e) {
+            throw new FileStorageException("Failed to decompress content", e);
+        }
+        return outputStream.toByteArray();
+    }
+
+    /**
+     * Check whether an Accept-Encoding header allows the stored compressed
+     * form to be sent as-is
+     *
+     * @param acceptEncoding The Accept-Encoding header value (may be null)
+     * @param compression The stored compression
+     * @return true if the client accepts this content-coding
+     */
+    public boolean acceptsEncoding(String acceptEncoding, Compression compression) {
+        if (acceptEncoding == null || acceptEncoding.isBlank()) {
+            return false;
+        }
+
+        Boolean wildcard = null;
+        for (String entry : acceptEncoding.split(",")) {
+            String[] parts = entry.trim().split(";");
+            String coding = parts[0].trim();
+            boolean acceptable = true;
+            for (int i = 1; i < parts.length; i++) {
+                String param = parts[i].trim();
+                if (param.startsWith("q=")) {
+                    try {
+                        acceptable = Double.parseDouble(param.substring(2)) > 0;
+                    } catch (NumberFormatException e) {
+                        acceptable = false;
+                    }
+                }
+            }
+
+            if (coding.equalsIgnoreCase(compression.getContentEncoding())) {
+                return acceptable;
+            }
+            if (coding.equals("*")) {
+                wildcard = acceptable;
+            }
+        }
+        return Boolean.TRUE.equals(wildcard);
+    }
+}
@@ -0,0 +1,158 @@
+package com.fluxshare.service;
+
+import com.fluxshare.entity.Share;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalListener;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.GuavaCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Service caching unwrapped content keys per share.
+ * Entries are bounded by size and TTL, never outlive the share's expiry time,
+ * and are zeroed when evicted. Hit/miss statistics are published as
+ * {@code fluxshare.content-keys} cache metrics.
+ */
+@Service
+@Slf4j
+public class ContentKeyCacheService {
+
+    private final EncryptionService encryptionService;
+    private final boolean cacheEnabled;
+    private final long ttlSeconds;
+    private final Cache<UUID, CachedKey> keys;
+
+    public ContentKeyCacheService(
+            EncryptionService encryptionService,
+            MeterRegistry meterRegistry,
+            @Value("${fluxshare.encryption.key-cache.enabled:true}") boolean cacheEnabled,
+            @Value("${fluxshare.encryption.key-cache.max-size:10000}") long maxSize,
+            @Value("${fluxshare.encryption.key-cache.ttl-seconds:600}") long ttlSeconds) {
+        this.encryptionService = encryptionService;
+        this.cacheEnabled = cacheEnabled;
+        this.ttlSeconds = ttlSeconds;
+        this.keys = CacheBuilder.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttlSeconds, TimeUnit.SECONDS)
+                .recordStats()
+                .removalListener((RemovalListener<UUID, CachedKey>) notification -> {
+                    // Wipe key material as soon as an entry leaves the cache
+                    if (notification.getValue() != null) {
+                        notification.getValue().destroy();
+                    }
+                })
+                .build();
+
+        GuavaCacheMetrics.monitor(meterRegistry, keys, "fluxshare.content-keys");
+    }
+
+    /**
+     * Get the unwrapped content key for a share, unwrapping on a cache miss
+     *
+     * @param share The share whose key is requested
+     * @return A private copy of the content key
+     */
+    public byte[] getContentKey(Share share) {
+        if (!cacheEnabled || share.getId() == null) {
+            return encryptionService.unwrapContentKey(share.getEncryptedKey());
+        }
+
+        try {
+            CachedKey cached = keys.get(share.getId(), () -> unwrap(share));
+            byte[] key = cached.copyIfValid();
+            if (key != null) {
+                return key;
+            }
+
+            // Entry outlived the share or was wiped concurrently
+            keys.asMap().remove(share.getId(), cached);
+            return encryptionService.unwrapContentKey(share.getEncryptedKey());
+        } catch (ExecutionException | UncheckedExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new IllegalStateException("Failed to load content key", e.getCause());
+        }
+    }
+
+    /**
+     * Seed the cache with a freshly generated content key
+     *
+     * @param share The newly created share
+     * @param contentKey The unwrapped content key (copied)
+     */
+    public void put(Share share, byte[] contentKey) {
+        if (!cacheEnabled || share.getId() == null) {
+            return;
+        }
+
+        CachedKey cached = new CachedKey(contentKey.clone(), deadlineFor(share));
+        if (cached.isExpired()) {
+            cached.destroy();
+            return;
+        }
+        keys.put(share.getId(), cached);
+    }
+
+    /**
+     * Drop the cached key for a share (expired, deleted or used up)
+     *
+     * @param share The share to evict
+     */
+    public void evict(Share share) {
+        if (share.getId() != null) {
+            keys.invalidate(share.getId());
+        }
+    }
+
+    private CachedKey unwrap(Share share) {
+        log.debug("Content key cache miss for share {}", share.getShareId());
+        return new CachedKey(encryptionService.unwrapContentKey(share.getEncryptedKey()), deadlineFor(share));
+    }
+
+    /**
+     * An entry is valid until the configured TTL or the share's expiry, whichever comes first
+     */
+    private LocalDateTime deadlineFor(Share share) {
+        LocalDateTime ttlDeadline = LocalDateTime.now().plusSeconds(ttlSeconds);
+        LocalDateTime expiryTime = share.getExpiryTime();
+        return expiryTime != null && expiryTime.isBefore(ttlDeadline) ? expiryTime : ttlDeadline;
+    }
+
+    /**
+     * Cached key material with its deadline; wiped on eviction
+     */
+    private static final class CachedKey {
+        private final byte[] key;
+        private final LocalDateTime deadline;
+        private boolean destroyed;
+
+        private CachedKey(byte[] key, LocalDateTime deadline) {
+            this.key = key;
+            this.deadline = deadline;
+        }
+
+        private boolean isExpired() {
+            return !LocalDateTime.now().isBefore(deadline);
+        }
+
+        private synchronized byte[] copyIfValid() {
+            return destroyed || isExpired() ? null : key.clone();
+        }
+
+        private synchronized void destroy() {
+            Arrays.fill(key, (byte) 0);
+            destroyed = true;
+        }
+    }
+}
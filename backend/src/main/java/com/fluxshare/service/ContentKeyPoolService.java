@@ -0,0 +1,161 @@
+package com.fluxshare.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Service holding a pool of pre-generated, already-wrapped content keys.
+ * A background thread refills the pool whenever it drops below the low-water
+ * mark, taking key generation off the share creation path. Each key is removed
+ * from the pool when handed out, so no key is ever issued twice.
+ */
+@Service
+@Slf4j
+public class ContentKeyPoolService {
+
+    private final EncryptionService encryptionService;
+    private final boolean poolEnabled;
+    private final int lowWaterMark;
+    private final BlockingQueue<PooledKey> pool;
+    private final AtomicBoolean refillScheduled = new AtomicBoolean(false);
+    private final ExecutorService refillExecutor;
+
+    public ContentKeyPoolService(
+            EncryptionService encryptionService,
+            @Value("${fluxshare.encryption.key-pool.enabled:true}") boolean poolEnabled,
+            @Value("${fluxshare.encryption.key-pool.capacity:256}") int capacity,
+            @Value("${fluxshare.encryption.key-pool.low-water-mark:64}") int lowWaterMark) {
+        this.encryptionService = encryptionService;
+        this.poolEnabled = poolEnabled;
+        this.lowWaterMark = Math.min(lowWaterMark, capacity);
+        this.pool = new ArrayBlockingQueue<>(Math.max(capacity, 1));
+        this.refillExecutor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "content-key-pool");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Fill the pool in the background on startup
+     */
+    @PostConstruct
+    public void init() {
+        if (poolEnabled) {
+            scheduleRefill();
+        }
+    }
+
+    /**
+     * Take a fresh content key with its wrapped form.
+     * Falls back to synchronous generation when the pool is empty.
+     *
+     * @return A key pair that has never been handed out before
+     */
+    public PooledKey take() {
+        if (!poolEnabled) {
+            return generate();
+        }
+
+        PooledKey key = pool.poll();
+        if (pool.size() < lowWaterMark) {
+            scheduleRefill();
+        }
+
+        if (key == null) {
+            log.debug("Content key pool empty, generating synchronously");
+            return generate();
+        }
+        return key;
+    }
+
+    /**
+     * Get the number of keys currently pooled
+     */
+    public int size() {
+        return pool.size();
+    }
+
+    private void scheduleRefill() {
+        if (refillScheduled.compareAndSet(false, true)) {
+            try {
+                refillExecutor.execute(this::refill);
+            } catch (RuntimeException e) {
+                refillScheduled.set(false);
+                log.warn("Failed to schedule content key pool refill", e);
+            }
+        }
+    }
+
+    private void refill() {
+        try {
+            while (pool.remainingCapacity() > 0 && !Thread.currentThread().isInterrupted()) {
+                PooledKey key = generate();
+                if (!pool.offer(key)) {
+                    key.destroy();
+                    break;
+                }
+            }
+            log.debug("Content key pool refilled to {}", pool.size());
+        } catch (Exception e) {
+            log.error("Failed to refill content key pool", e);
+        } finally {
+            refillScheduled.set(false);
+        }
+    }
+
+    private PooledKey generate() {
+        byte[] contentKey = encryptionService.generateContentKey();
+        return new PooledKey(contentKey, encryptionService.wrapContentKey(contentKey));
+    }
+
+    /**
+     * Stop the refill thread and wipe pooled key material
+     */
+    @PreDestroy
+    public void shutdown() {
+        refillExecutor.shutdownNow();
+        PooledKey key;
+        while ((key = pool.poll()) != null) {
+            key.destroy();
+        }
+    }
+
+    /**
+     * A content key together with its master-key-wrapped form
+     */
+    public static class PooledKey {
+        private final byte[] contentKey;
+        private final byte[] wrappedKey;
+
+        public PooledKey(byte[] contentKey, byte[] wrappedKey) {
+            this.contentKey = contentKey;
+            this.wrappedKey = wrappedKey;
+        }
+
+        public byte[] getContentKey() {
+            return contentKey;
+        }
+
+        public byte[] getWrappedKey() {
+            return wrappedKey;
+        }
+
+        /**
+         * Zero the unwrapped key
+         */
+        public void destroy() {
+            Arrays.fill(contentKey, (byte) 0);
+        }
+    }
+}
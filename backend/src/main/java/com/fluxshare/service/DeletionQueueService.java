@@ -0,0 +1,192 @@
+package com.fluxshare.service;
+
+import com.fluxshare.entity.PendingDeletion;
+import com.fluxshare.repository.PendingDeletionRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Service for the durable deletion queue.
+ *
+ * Share cleanup only records what has to go (a row per stored file or share
+ * directory) in its own transaction and returns; the database connection is
+ * not held while files are deleted. Deletion workers then claim due rows in
+ * batches, delete the data in parallel and remove the rows. Failed attempts
+ * are retried with exponential backoff, and rows of a node that died
+ * mid-batch become due again when their lease expires. Deletes are
+ * idempotent, so running an entry twice is harmless.
+ */
+@Service
+@Slf4j
+public class DeletionQueueService {
+
+    private static final int MAX_ERROR_LENGTH = 500;
+
+    private final PendingDeletionRepository pendingDeletionRepository;
+    private final BlobStore blobStore;
+    private final ExecutorService deletionExecutor;
+    private final int batchSize;
+    private final long leaseMillis;
+    private final long retryDelayMillis;
+    private final long maxRetryDelayMillis;
+
+    private final AtomicLong queueDepth = new AtomicLong();
+    private final Counter completedDeletions;
+    private final Counter failedDeletions;
+
+    public DeletionQueueService(
+            PendingDeletionRepository pendingDeletionRepository,
+            BlobStore blobStore,
+            @Qualifier("deletionExecutor") ExecutorService deletionExecutor,
+            MeterRegistry meterRegistry,
+            @Value("${fluxshare.storage.deletion.batch-size:200}") int batchSize,
+            @Value("${fluxshare.storage.deletion.lease-ms:300000}") long leaseMillis,
+            @Value("${fluxshare.storage.deletion.retry-delay-ms:10000}") long retryDelayMillis,
+            @Value("${fluxshare.storage.deletion.max-retry-delay-ms:3600000}") long maxRetryDelayMillis) {
+        this.pendingDeletionRepository = pendingDeletionRepository;
+        this.blobStore = blobStore;
+        this.deletionExecutor = deletionExecutor;
+        this.batchSize = Math.max(1, batchSize);
+        this.leaseMillis = leaseMillis;
+        this.retryDelayMillis = retryDelayMillis;
+        this.maxRetryDelayMillis = maxRetryDelayMillis;
+
+        Gauge.builder("fluxshare.deletion.queue.depth", queueDepth, AtomicLong::get)
+                .description("Stored files and directories waiting to be deleted")
+                .register(meterRegistry);
+        this.completedDeletions = Counter.builder("fluxshare.deletion.completed")
+                .description("Deletion queue entries completed")
+                .register(meterRegistry);
+        this.failedDeletions = Counter.builder("fluxshare.deletion.failed")
+                .description("Deletion attempts that failed and were rescheduled")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Queue a stored object for deletion, as part of the caller's transaction
+     *
+     * @param storageKey The object's storage key
+     */
+    @Transactional
+    public void enqueue(String storageKey) {
+        save(storageKey, false);
+    }
+
+    /**
+     * Queue everything under a directory-style prefix for deletion, as part of
+     * the caller's transaction
+     *
+     * @param prefix Key prefix without the trailing separator
+     */
+    @Transactional
+    public void enqueueDirectory(String prefix) {
+        save(prefix, true);
+    }
+
+    /**
+     * Work through all due entries, one claimed batch at a time
+     *
+     * @return Number of entries completed
+     */
+    public int processDueEntries() {
+        int completed = 0;
+        int claimed;
+        do {
+            LocalDateTime now = LocalDateTime.now();
+            List<UUID> dueIds = pendingDeletionRepository.findDueIds(now, PageRequest.ofSize(batchSize));
+            if (dueIds.isEmpty()) {
+                break;
+            }
+
+            UUID leaseToken = UUID.randomUUID();
+            claimed = pendingDeletionRepository.claim(dueIds, now, leaseToken,
+                    now.plusNanos(leaseMillis * 1_000_000));
+            if (claimed > 0) {
+                completed += processBatch(pendingDeletionRepository.findByLeaseToken(leaseToken));
+            }
+        } while (claimed == batchSize);
+
+        queueDepth.set(pendingDeletionRepository.count());
+        return completed;
+    }
+
+    /**
+     * Get the number of queued entries as of the last run
+     */
+    public long getQueueDepth() {
+        return queueDepth.get();
+    }
+
+    /**
+     * Delete a claimed batch in parallel, then drop the completed rows in one statement
+     */
+    private int processBatch(List<PendingDeletion> batch) {
+        List<Future<?>> results = new ArrayList<>(batch.size());
+        for (PendingDeletion entry : batch) {
+            results.add(deletionExecutor.submit(() -> delete(entry)));
+        }
+
+        List<UUID> completedIds = new ArrayList<>(batch.size());
+        for (int i = 0; i < batch.size(); i++) {
+            PendingDeletion entry = batch.get(i);
+            try {
+                results.get(i).get();
+                completedIds.add(entry.getId());
+            } catch (ExecutionException e) {
+                reschedule(entry, e.getCause());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break; // the remaining rows are retried once their lease expires
+            }
+        }
+
+        if (!completedIds.isEmpty()) {
+            pendingDeletionRepository.deleteByIdIn(completedIds);
+            completedDeletions.increment(completedIds.size());
+        }
+        return completedIds.size();
+    }
+
+    private void delete(PendingDeletion entry) {
+        if (entry.getDirectory()) {
+            blobStore.deleteDirectory(entry.getStorageKey());
+        } else {
+            blobStore.delete(entry.getStorageKey());
+        }
+    }
+
+    private void reschedule(PendingDeletion entry, Throwable cause) {
+        int attempt = entry.getAttempts() + 1;
+        long delay = Math.min(retryDelayMillis << Math.min(attempt - 1, 20), maxRetryDelayMillis);
+        String error = String.valueOf(cause.getMessage());
+
+        pendingDeletionRepository.reschedule(entry.getId(), LocalDateTime.now().plusNanos(delay * 1_000_000),
+                error.length() > MAX_ERROR_LENGTH ? error.substring(0, MAX_ERROR_LENGTH) : error);
+        failedDeletions.increment();
+        log.warn("Failed to delete {} (attempt {}), retrying in {} ms", entry.getStorageKey(), attempt, delay, cause);
+    }
+
+    private void save(String storageKey, boolean directory) {
+        pendingDeletionRepository.save(PendingDeletion.builder()
+                .storageKey(storageKey)
+                .directory(directory)
+                .nextAttemptAt(LocalDateTime.now())
+                .build());
+    }
+}
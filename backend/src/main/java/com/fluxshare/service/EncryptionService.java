@@ -2,30 +2,80 @@ package com.fluxshare.service;
 
 import com.fluxshare.exception.EncryptionException;
 import com.fluxshare.service.impl.AesGcmEncryptionStrategy;
+import com.fluxshare.service.impl.ChaCha20Poly1305EncryptionStrategy;
+import com.sun.management.HotSpotDiagnosticMXBean;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import javax.crypto.Cipher;
+import javax.crypto.Mac;
 import javax.crypto.spec.SecretKeySpec;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.channels.FileChannel;
 import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
 
 /**
  * Service for encryption operations.
  * Uses Strategy pattern to allow different encryption algorithms.
+ * New data is encrypted with the configured (or, in opt-in {@code auto} mode,
+ * the one this JVM accelerates) strategy; existing data is decrypted with the algorithm
+ * recorded alongside it. Callers read {@link #getAlgorithmName()} once and
+ * pass it to the encrypt methods, so the name they record always matches.
  */
 @Service
+@Slf4j
 public class EncryptionService {
 
+    /** Configuration value selecting the strategy this JVM accelerates */
+    public static final String AUTO_ALGORITHM = "auto";
+
+    /** Algorithm of data stored before the algorithm was recorded */
+    public static final String LEGACY_ALGORITHM = AesGcmEncryptionStrategy.TRANSFORMATION;
+
+    /** Algorithm of data decrypted by clients; AES-GCM is the AEAD browsers offer (WebCrypto) */
+    public static final String CLIENT_DECRYPTION_ALGORITHM = AesGcmEncryptionStrategy.TRANSFORMATION;
+
+    /** HotSpot flag that is on only when the CPU has AES instructions (AES-NI, ARMv8 AES) */
+    private static final String HARDWARE_AES_FLAG = "UseAES";
+
+    private final Map<String, EncryptionStrategy> strategies = new LinkedHashMap<>();
     private final EncryptionStrategy encryptionStrategy;
     private final byte[] masterKey;
+    private final ExecutorService cryptoExecutor;
+    private final boolean parallelEnabled;
+    private final long parallelMinSize;
+    private final int parallelMaxInFlight;
 
     public EncryptionService(
-            AesGcmEncryptionStrategy encryptionStrategy,
-            @Value("${fluxshare.encryption.master-key}") String masterKeyString) {
-        this.encryptionStrategy = encryptionStrategy;
+            List<EncryptionStrategy> availableStrategies,
+            @Qualifier("cryptoExecutor") ExecutorService cryptoExecutor,
+            @Value("${fluxshare.encryption.algorithm:AES/GCM/NoPadding}") String algorithm,
+            @Value("${fluxshare.encryption.master-key}") String masterKeyString,
+            @Value("${fluxshare.encryption.parallel.enabled:false}") boolean parallelEnabled,
+            @Value("${fluxshare.encryption.parallel.min-size:8388608}") long parallelMinSize,
+            @Value("${fluxshare.encryption.parallel.max-in-flight:0}") int parallelMaxInFlight) {
+        this.cryptoExecutor = cryptoExecutor;
+        this.parallelEnabled = parallelEnabled;
+        this.parallelMinSize = parallelMinSize;
+        this.parallelMaxInFlight = parallelMaxInFlight > 0
+                ? parallelMaxInFlight
+                : 2 * Runtime.getRuntime().availableProcessors();
+        for (EncryptionStrategy strategy : availableStrategies) {
+            strategies.put(strategy.getAlgorithmName(), strategy);
+        }
+        this.encryptionStrategy = resolveStrategy(AUTO_ALGORITHM.equalsIgnoreCase(algorithm)
+                ? selectAcceleratedAlgorithm()
+                : algorithm);
         this.masterKey = deriveMasterKey(masterKeyString);
+        log.info("Encrypting new content with {}", encryptionStrategy.getAlgorithmName());
     }
 
     /**
@@ -71,6 +121,26 @@ public class EncryptionService {
         }
     }
 
+    /**
+     * Compute an HMAC-SHA256 of data under the master key, bound to a context
+     * so digests for different purposes never collide
+     * 
+     * @param context Purpose label mixed into the MAC input
+     * @param data The data to authenticate
+     * @return 32-byte keyed digest
+     */
+    public byte[] keyedHash(byte[] context, byte[] data) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(masterKey, "HmacSHA256"));
+            mac.update(context);
+            mac.update((byte) 0);
+            return mac.doFinal(data);
+        } catch (Exception e) {
+            throw new EncryptionException("Failed to compute keyed hash", e);
+        }
+    }
+
     /**
      * Encrypt data using the configured strategy
      * 
@@ -83,14 +153,27 @@ public class EncryptionService {
     }
 
     /**
-     * Decrypt data using the configured strategy
+     * Encrypt data with a specific algorithm
+     * 
+     * @param plainData The data to encrypt
+     * @param key The encryption key
+     * @param algorithm The algorithm to use, as returned by {@link #getAlgorithmName()}
+     * @return Encrypted data
+     */
+    public byte[] encrypt(byte[] plainData, byte[] key, String algorithm) {
+        return resolveStrategy(algorithm).encrypt(plainData, key);
+    }
+
+    /**
+     * Decrypt data using the strategy it was encrypted with
      * 
      * @param encryptedData The data to decrypt
      * @param key The encryption key
+     * @param algorithm The recorded algorithm (null for legacy data)
      * @return Decrypted data
      */
-    public byte[] decrypt(byte[] encryptedData, byte[] key) {
-        return encryptionStrategy.decrypt(encryptedData, key);
+    public byte[] decrypt(byte[] encryptedData, byte[] key, String algorithm) {
+        return resolveStrategy(algorithm).decrypt(encryptedData, key);
     }
 
     /**
@@ -109,10 +192,11 @@ public class EncryptionService {
      * 
      * @param encryptedData The data to decrypt
      * @param key The encryption key
+     * @param algorithm The recorded algorithm (null for legacy data)
      * @return Decrypted text
      */
-    public String decryptToString(byte[] encryptedData, byte[] key) {
-        byte[] decrypted = decrypt(encryptedData, key);
+    public String decryptToString(byte[] encryptedData, byte[] key, String algorithm) {
+        byte[] decrypted = decrypt(encryptedData, key, algorithm);
         return new String(decrypted);
     }
 
@@ -127,19 +211,107 @@ public class EncryptionService {
         encryptionStrategy.encryptStream(inputStream, outputStream, key);
     }
 
+    /**
+     * Encrypt stream, sealing segments on all cores when the content is large
+     * 
+     * @param inputStream Input stream with plain data
+     * @param outputStream Output stream for encrypted data
+     * @param key The encryption key
+     * @param algorithm The algorithm to use, as returned by {@link #getAlgorithmName()}
+     * @param expectedSize Expected plaintext size, used to pick the sequential or parallel path
+     */
+    public void encryptStream(InputStream inputStream, OutputStream outputStream, byte[] key,
+                              String algorithm, long expectedSize) {
+        EncryptionStrategy strategy = resolveStrategy(algorithm);
+        if (parallelEnabled && expectedSize >= parallelMinSize) {
+            strategy.encryptStreamParallel(inputStream, outputStream, key, cryptoExecutor, parallelMaxInFlight);
+        } else {
+            strategy.encryptStream(inputStream, outputStream, key);
+        }
+    }
+
+    /**
+     * Encrypt one piece of a segmented stream written in several calls
+     * 
+     * @param inputStream Input stream holding exactly the piece's plaintext
+     * @param outputStream Output stream for encrypted data
+     * @param key The encryption key
+     * @param algorithm The algorithm to use, as returned by {@link #getAlgorithmName()}
+     * @param offset Plaintext offset of the piece, on a segment boundary
+     * @param length Plaintext length of the piece, whole segments unless it ends the stream
+     * @param totalSize Plaintext size of the whole stream
+     */
+    public void encryptSegments(InputStream inputStream, OutputStream outputStream, byte[] key, String algorithm,
+                                long offset, long length, long totalSize) {
+        resolveStrategy(algorithm).encryptSegments(inputStream, outputStream, key, offset, length, totalSize);
+    }
+
+    /**
+     * Get the length of a complete segmented stream
+     * 
+     * @param algorithm The algorithm the stream is encrypted with
+     * @param plaintextLength Plaintext bytes in the stream
+     * @return Encrypted length, header included
+     */
+    public long encryptedLength(String algorithm, long plaintextLength) {
+        return resolveStrategy(algorithm).encryptedLength(plaintextLength);
+    }
+
+    /**
+     * Get the plaintext bytes per segment of new segmented streams
+     * 
+     * @param algorithm The algorithm the stream is encrypted with
+     */
+    public int getSegmentSize(String algorithm) {
+        return resolveStrategy(algorithm).getSegmentSize();
+    }
+
     /**
      * Decrypt stream
      * 
      * @param inputStream Input stream with encrypted data
      * @param outputStream Output stream for decrypted data
      * @param key The encryption key
+     * @param algorithm The recorded algorithm (null for legacy data)
      */
-    public void decryptStream(InputStream inputStream, OutputStream outputStream, byte[] key) {
-        encryptionStrategy.decryptStream(inputStream, outputStream, key);
+    public void decryptStream(InputStream inputStream, OutputStream outputStream, byte[] key,
+                              String algorithm) {
+        resolveStrategy(algorithm).decryptStream(inputStream, outputStream, key);
     }
 
     /**
-     * Get the encryption algorithm name
+     * Decrypt a plaintext byte range of a segmented stream
+     * 
+     * @param inputStream Input stream with encrypted data, positioned at its start
+     * @param outputStream Output stream for decrypted data
+     * @param key The encryption key
+     * @param algorithm The recorded algorithm (null for legacy data)
+     * @param offset First plaintext byte to write
+     * @param length Number of plaintext bytes to write
+     */
+    public void decryptStreamRange(InputStream inputStream, OutputStream outputStream, byte[] key,
+                                   String algorithm, long offset, long length) {
+        resolveStrategy(algorithm).decryptStreamRange(inputStream, outputStream, key, offset, length);
+    }
+
+    /**
+     * Decrypt a plaintext byte range of an encrypted file read through its channel
+     * 
+     * @param channel Channel over the encrypted file
+     * @param outputStream Output stream for decrypted data
+     * @param key The encryption key
+     * @param algorithm The recorded algorithm (null for legacy data)
+     * @param offset First plaintext byte to write
+     * @param length Number of plaintext bytes to write (Long.MAX_VALUE for the rest)
+     * @param windowSize Bytes read ahead per window
+     */
+    public void decryptChannel(FileChannel channel, OutputStream outputStream, byte[] key, String algorithm,
+                               long offset, long length, int windowSize) {
+        resolveStrategy(algorithm).decryptChannel(channel, outputStream, key, offset, length, windowSize);
+    }
+
+    /**
+     * Get the name of the algorithm used for new content
      * 
      * @return Algorithm name
      */
@@ -147,6 +319,43 @@ public class EncryptionService {
         return encryptionStrategy.getAlgorithmName();
     }
 
+    /**
+     * Find the strategy for a recorded algorithm name
+     * 
+     * @param algorithm The algorithm name (null for legacy data)
+     * @return The matching strategy
+     */
+    private EncryptionStrategy resolveStrategy(String algorithm) {
+        EncryptionStrategy strategy = strategies.get(algorithm != null ? algorithm : LEGACY_ALGORITHM);
+        if (strategy == null) {
+            throw new EncryptionException("Unsupported encryption algorithm: " + algorithm);
+        }
+        return strategy;
+    }
+
+    /**
+     * Pick AES-GCM when the JVM uses hardware AES instructions and
+     * ChaCha20-Poly1305 (several times faster in pure Java) otherwise. Reads
+     * the JVM's own flag instead of benchmarking, so startup costs nothing.
+     */
+    private String selectAcceleratedAlgorithm() {
+        if (!strategies.containsKey(ChaCha20Poly1305EncryptionStrategy.TRANSFORMATION)) {
+            return AesGcmEncryptionStrategy.TRANSFORMATION;
+        }
+        try {
+            HotSpotDiagnosticMXBean hotSpot = ManagementFactory.getPlatformMXBean(HotSpotDiagnosticMXBean.class);
+            boolean hardwareAes = Boolean.parseBoolean(hotSpot.getVMOption(HARDWARE_AES_FLAG).getValue());
+            log.info("Hardware AES {}", hardwareAes ? "available" : "unavailable");
+            return hardwareAes
+                    ? AesGcmEncryptionStrategy.TRANSFORMATION
+                    : ChaCha20Poly1305EncryptionStrategy.TRANSFORMATION;
+        } catch (RuntimeException e) {
+            // Not a HotSpot JVM; AES-GCM is the safe default
+            log.warn("Cannot read {}, using {}", HARDWARE_AES_FLAG, AesGcmEncryptionStrategy.TRANSFORMATION);
+            return AesGcmEncryptionStrategy.TRANSFORMATION;
+        }
+    }
+
     /**
      * Derive a 256-bit master key from the configuration string
      * 
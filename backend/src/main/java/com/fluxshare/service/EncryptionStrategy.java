@@ -2,6 +2,8 @@ package com.fluxshare.service;
 
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.Executor;
 
 /**
  * Strategy interface for encryption operations.
@@ -28,7 +30,7 @@ public interface EncryptionStrategy {
     byte[] decrypt(byte[] encryptedData, byte[] key);
 
     /**
-     * Encrypt stream
+     * Encrypt stream into the segmented, randomly accessible format
      * 
      * @param inputStream The input stream to encrypt
      * @param outputStream The output stream for encrypted data
@@ -37,7 +39,51 @@ public interface EncryptionStrategy {
     void encryptStream(InputStream inputStream, OutputStream outputStream, byte[] key);
 
     /**
-     * Decrypt stream
+     * Encrypt stream into the segmented format, sealing segments concurrently.
+     * Output is byte-for-byte the same layout as {@link #encryptStream} and is
+     * written in order; at most {@code maxInFlight} segments are buffered.
+     * 
+     * @param inputStream The input stream to encrypt
+     * @param outputStream The output stream for encrypted data
+     * @param key The encryption key
+     * @param executor Executor running the segment encryption tasks
+     * @param maxInFlight Maximum number of segments submitted but not yet written
+     */
+    void encryptStreamParallel(InputStream inputStream, OutputStream outputStream, byte[] key,
+                               Executor executor, int maxInFlight);
+
+    /**
+     * Encrypt one piece of a segmented stream whose plaintext size is known up
+     * front, so the stream can be written in several calls. The piece must
+     * start on a segment boundary and, unless it ends the stream, cover whole
+     * segments. The first piece writes the header; the segment reaching
+     * {@code totalSize} is flagged as the last.
+     * 
+     * @param inputStream The input stream holding exactly the piece's plaintext
+     * @param outputStream The output stream for encrypted data
+     * @param key The encryption key
+     * @param offset Plaintext offset of the piece
+     * @param length Plaintext length of the piece
+     * @param totalSize Plaintext size of the whole stream
+     */
+    void encryptSegments(InputStream inputStream, OutputStream outputStream, byte[] key,
+                         long offset, long length, long totalSize);
+
+    /**
+     * Get the length of a complete segmented stream
+     * 
+     * @param plaintextLength Plaintext bytes in the stream
+     * @return Encrypted length, header included
+     */
+    long encryptedLength(long plaintextLength);
+
+    /**
+     * Get the plaintext bytes per segment of new segmented streams
+     */
+    int getSegmentSize();
+
+    /**
+     * Decrypt stream (segmented or legacy single-stream format)
      * 
      * @param inputStream The encrypted input stream
      * @param outputStream The output stream for decrypted data
@@ -45,6 +91,34 @@ public interface EncryptionStrategy {
      */
     void decryptStream(InputStream inputStream, OutputStream outputStream, byte[] key);
 
+    /**
+     * Decrypt a plaintext byte range of a segmented stream.
+     * Only the segments covering the range are read and decrypted.
+     * 
+     * @param inputStream The encrypted input stream, positioned at its start
+     * @param outputStream The output stream for decrypted data
+     * @param key The encryption key
+     * @param offset First plaintext byte to write
+     * @param length Number of plaintext bytes to write
+     */
+    void decryptStreamRange(InputStream inputStream, OutputStream outputStream, byte[] key,
+                            long offset, long length);
+
+    /**
+     * Decrypt a plaintext byte range of an encrypted file through its channel.
+     * Segments are read in windows of {@code windowSize} bytes, one
+     * positional read per window, and decrypted straight from the window buffer.
+     * 
+     * @param channel Channel over the encrypted file
+     * @param outputStream The output stream for decrypted data
+     * @param key The encryption key
+     * @param offset First plaintext byte to write
+     * @param length Number of plaintext bytes to write (Long.MAX_VALUE for the rest)
+     * @param windowSize Bytes read ahead per window
+     */
+    void decryptChannel(FileChannel channel, OutputStream outputStream, byte[] key,
+                        long offset, long length, int windowSize);
+
     /**
      * Generate a new encryption key
      * 
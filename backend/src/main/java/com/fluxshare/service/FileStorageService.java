@@ -1,140 +1,731 @@
 package com.fluxshare.service;
 
+import com.fluxshare.entity.Blob;
 import com.fluxshare.entity.FileMetadata;
 import com.fluxshare.entity.Share;
+import com.fluxshare.entity.UploadSession;
+import com.fluxshare.enums.CipherFormat;
+import com.fluxshare.enums.Compression;
+import com.fluxshare.enums.ShareType;
 import com.fluxshare.exception.FileStorageException;
 import com.fluxshare.repository.FileMetadataRepository;
 import com.fluxshare.util.MimeTypeUtil;
+import com.fluxshare.util.StoragePathUtil;
 import com.fluxshare.util.ZipUtil;
-import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.input.CountingInputStream;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.*;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
 import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
 
 /**
  * Service for file storage operations with streaming support.
  * Implements Template Method pattern for file streaming workflows.
  */
 @Service
-@RequiredArgsConstructor
 @Slf4j
 public class FileStorageService {
 
     private final EncryptionService encryptionService;
+    private final CompressionService compressionService;
+    private final BlobService blobService;
+    private final BlobStore blobStore;
+    private final PackedStorageService packedStorageService;
+    private final DeletionQueueService deletionQueueService;
+    private final StorageUsageService storageUsageService;
+    private final StorageVolumeService storageVolumeService;
+    private final ContentKeyPoolService contentKeyPoolService;
     private final FileMetadataRepository fileMetadataRepository;
     private final MimeTypeUtil mimeTypeUtil;
+    private final StoragePathUtil storagePathUtil;
     private final ZipUtil zipUtil;
+    private final ExecutorService uploadExecutor;
 
-    @Value("${fluxshare.storage.base-path:./storage/encrypted}")
-    private String basePath;
+    @Value("${fluxshare.upload.parallel.max-files-per-request:4}")
+    private int maxFilesInFlight;
 
-    @Value("${fluxshare.storage.temp-path:./storage/temp}")
-    private String tempPath;
+    @Value("${fluxshare.preview.max-bytes:1048576}")
+    private int maxPreviewBytes;
+
+    @Value("${fluxshare.storage.read.channel-min-size:1048576}")
+    private long channelMinSize;
+
+    @Value("${fluxshare.storage.read.read-ahead:1048576}")
+    private int readAhead;
+
+    public FileStorageService(
+            EncryptionService encryptionService,
+            CompressionService compressionService,
+            BlobService blobService,
+            BlobStore blobStore,
+            PackedStorageService packedStorageService,
+            DeletionQueueService deletionQueueService,
+            StorageUsageService storageUsageService,
+            StorageVolumeService storageVolumeService,
+            ContentKeyPoolService contentKeyPoolService,
+            FileMetadataRepository fileMetadataRepository,
+            MimeTypeUtil mimeTypeUtil,
+            StoragePathUtil storagePathUtil,
+            ZipUtil zipUtil,
+            @Qualifier("uploadExecutor") ExecutorService uploadExecutor) {
+        this.encryptionService = encryptionService;
+        this.compressionService = compressionService;
+        this.blobService = blobService;
+        this.blobStore = blobStore;
+        this.packedStorageService = packedStorageService;
+        this.deletionQueueService = deletionQueueService;
+        this.storageUsageService = storageUsageService;
+        this.storageVolumeService = storageVolumeService;
+        this.contentKeyPoolService = contentKeyPoolService;
+        this.fileMetadataRepository = fileMetadataRepository;
+        this.mimeTypeUtil = mimeTypeUtil;
+        this.storagePathUtil = storagePathUtil;
+        this.zipUtil = zipUtil;
+        this.uploadExecutor = uploadExecutor;
+    }
 
     /**
-     * Initialize storage directories
+     * Initialize the storage backend
      */
     public void initializeStorage() {
+        blobStore.initialize();
+        storageVolumeService.initialize();
+    }
+
+    /**
+     * Store an encrypted file.
+     * The plaintext SHA-256 is computed while streaming; with deduplication
+     * enabled the upload is staged and then either shared with an identical
+     * blob or promoted to a new one. Small files are appended to a packed
+     * segment instead of getting a file of their own, and all other files go
+     * to the storage volume picked by free space and load. Files of shares that
+     * clients decrypt themselves are stored under the share's key, with
+     * AES-GCM and without compression.
+     */
+    @Transactional
+    public FileMetadata storeFile(MultipartFile file, Share share, byte[] contentKey) {
+        return persist(List.of(prepare(file, share, contentKey)), share).get(0);
+    }
+
+    /**
+     * Encrypt and write a file read straight from the request, e.g. a multipart
+     * part as it arrives, so the upload is written to disk once, encrypted.
+     * Nothing is saved to the database, so no transaction is held while the
+     * client sends the file; pass the result to {@link #savePrepared}, or to
+     * {@link #discard} if the upload fails. The size is counted while
+     * encrypting; a file that ends within the packing threshold is read ahead
+     * and packed like any other small file.
+     *
+     * @param inputStream The file's bytes, read to the end
+     * @param filename Original name of the file
+     * @param expectedSize Upper bound of the file's size, used for placement; -1 when unknown
+     * @param share The share the file belongs to
+     * @param contentKey The share's content key
+     */
+    public PreparedFile prepareStream(InputStream inputStream, String filename, long expectedSize, Share share,
+                                      byte[] contentKey) {
         try {
-            Files.createDirectories(Paths.get(basePath));
-            Files.createDirectories(Paths.get(tempPath));
-            log.info("Storage directories initialized: {} and {}", basePath, tempPath);
+            int probeSize = (int) Math.max(CompressionService.SAMPLE_SIZE, packedStorageService.getMaxFileSize() + 1);
+            byte[] head = inputStream.readNBytes(probeSize);
+            long size = head.length < probeSize ? head.length : -1;
+            InputStream source = new SequenceInputStream(new ByteArrayInputStream(head), inputStream);
+            return prepare(source, filename, size, size >= 0 ? size : Math.max(expectedSize, 0), share, contentKey);
         } catch (IOException e) {
-            throw new FileStorageException("Failed to initialize storage directories", e);
+            throw new FileStorageException("Failed to store file: " + filename, e);
         }
     }
 
     /**
-     * Store an encrypted file
+     * Save the metadata of files written by {@link #prepareStream} in one batch
      */
     @Transactional
-    public FileMetadata storeFile(MultipartFile file, Share share, byte[] contentKey) {
+    public List<FileMetadata> savePrepared(List<PreparedFile> prepared, Share share) {
+        return persist(prepared, share);
+    }
+
+    /**
+     * Delete the data written for prepared files whose metadata will not be
+     * saved; packed entries are left to compaction
+     */
+    public void discard(List<PreparedFile> prepared) {
+        for (PreparedFile file : prepared) {
+            deleteQuietly(file.writtenPath);
+            releasePackedEntry(file);
+        }
+    }
+
+    private PreparedFile prepare(MultipartFile file, Share share, byte[] contentKey) {
+        try (InputStream inputStream = file.getInputStream()) {
+            return prepare(inputStream, file.getOriginalFilename(), file.getSize(), file.getSize(), share,
+                    contentKey);
+        } catch (IOException e) {
+            throw new FileStorageException("Failed to store file: " + file.getOriginalFilename(), e);
+        }
+    }
+
+    /**
+     * Encrypt and write a file, without touching the database, so files of
+     * one upload can be prepared on several threads; the size is counted when
+     * not known up front
+     *
+     * @param size Exact plaintext size, or -1 when unknown
+     * @param expectedSize Size used for volume placement and to pick the encryption path
+     * @return The written file with its unsaved metadata
+     */
+    private PreparedFile prepare(InputStream source, String filename, long size, long expectedSize, Share share,
+                                 byte[] contentKey) {
+        boolean clientDecryption = share.isClientDecryption();
+        ContentKeyPoolService.PooledKey blobKey = blobService.isEnabled() && !clientDecryption
+                ? contentKeyPoolService.take()
+                : null;
+        boolean packed = blobKey == null && size >= 0 && packedStorageService.accepts(size);
+        PackedStorageService.PackedLocation packedLocation = null;
+        StorageVolumeService.Volume volume = null;
+        String storedPath = null;
+        boolean written = false;
+
         try {
-            // Generate unique filename
-            String storedFilename = generateStoredFilename(share.getShareId(), file.getOriginalFilename());
-            Path storedPath = Paths.get(basePath, storedFilename);
-
-            // Ensure parent directory exists
-            Files.createDirectories(storedPath.getParent());
-
-            // Encrypt and store file using streaming
-            try (InputStream inputStream = file.getInputStream();
-                 OutputStream outputStream = new FileOutputStream(storedPath.toFile())) {
-                
-                encryptionService.encryptStream(inputStream, outputStream, contentKey);
+            if (blobKey != null) {
+                storedPath = blobService.newStagingKey();
+            } else if (!packed) {
+                volume = storageVolumeService.acquire(expectedSize);
+                // Generate unique filename
+                String storedFilename = generateStoredFilename(share.getShareId(), filename);
+                storedPath = storagePathUtil.filePath(volume.getRoot(), share.getShareId(), storedFilename).toString();
             }
 
-            // Detect MIME type
-            String mimeType = mimeTypeUtil.detectFromFilename(file.getOriginalFilename());
+            String algorithm = clientDecryption
+                    ? EncryptionService.CLIENT_DECRYPTION_ALGORITHM
+                    : encryptionService.getAlgorithmName();
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            String mimeType;
+            Compression compression;
+            long plainSize;
+            long encodedSize;
+
+            // One pass over the plaintext: it is digested and counted on its way to the encryption, and its
+            // leading sample gives the MIME type (magic bytes, then extension) and the compression choice
+            try (CountingInputStream rawStream = new CountingInputStream(new DigestInputStream(source, digest))) {
+
+                byte[] sample = rawStream.readNBytes(CompressionService.SAMPLE_SIZE);
+                mimeType = mimeTypeUtil.detectMimeType(sample, filename);
+                compression = clientDecryption ? null : compressionService.select(mimeType,
+                        size >= 0 ? size : expectedSize, sample, sample.length);
+                InputStream plainStream = new SequenceInputStream(new ByteArrayInputStream(sample), rawStream);
+
+                try (CountingInputStream inputStream = new CountingInputStream(compression != null
+                        ? compressionService.compressingStream(compression, plainStream)
+                        : plainStream)) {
+                    byte[] key = blobKey != null ? blobKey.getContentKey() : contentKey;
+                    BlobStore.ContentWriter writer = outputStream -> encryptionService.encryptStream(
+                            inputStream, outputStream, key, algorithm, expectedSize);
+
+                    if (packed) {
+                        ByteArrayOutputStream entry = new ByteArrayOutputStream((int) size + 1024);
+                        writer.writeTo(entry);
+                        packedLocation = packedStorageService.append(entry.toByteArray());
+                        storedPath = packedLocation.getSegmentPath();
+                    } else {
+                        blobStore.write(storedPath, writer);
+                    }
+                    encodedSize = inputStream.getByteCount();
+                }
+                plainSize = rawStream.getByteCount();
+            }
+            if (size >= 0 && plainSize != size) {
+                throw new FileStorageException("File " + filename + " was truncated: received " + plainSize
+                        + " of " + size + " bytes");
+            }
+            byte[] sha256 = digest.digest();
 
             // Create metadata
             FileMetadata metadata = FileMetadata.builder()
                     .share(share)
-                    .filename(file.getOriginalFilename())
-                    .storedPath(storedPath.toString())
+                    .filename(filename)
+                    .storedPath(storedPath)
                     .mimeType(mimeType)
-                    .size(file.getSize())
+                    .size(plainSize)
+                    .originalChecksum(HexFormat.of().formatHex(sha256))
                     .isPreviewable(mimeTypeUtil.isPreviewable(mimeType))
+                    .cipherFormat(CipherFormat.SEGMENTED)
+                    .encryptionAlgorithm(algorithm)
+                    .compression(compression)
+                    .encodedSize(compression != null ? encodedSize : null)
+                    .packOffset(packedLocation != null ? packedLocation.getOffset() : null)
+                    .packLength(packedLocation != null ? packedLocation.getLength() : null)
+                    .volume(volume != null ? volume.getName() : StorageVolumeService.DEFAULT_VOLUME)
                     .build();
 
-            metadata = fileMetadataRepository.save(metadata);
-            log.info("Stored file: {} for share {}", file.getOriginalFilename(), share.getShareId());
+            Blob blobCandidate = null;
+            if (blobKey != null) {
+                blobCandidate = Blob.builder()
+                        .encryptedKey(blobKey.getWrappedKey())
+                        .size(metadata.getSize())
+                        .cipherFormat(metadata.getCipherFormat())
+                        .encryptionAlgorithm(metadata.getEncryptionAlgorithm())
+                        .compression(metadata.getCompression())
+                        .encodedSize(metadata.getEncodedSize())
+                        .build();
+            }
+            written = true;
+            log.info("Stored file: {} for share {}{}", filename, share.getShareId(),
+                    compression != null ? " (" + plainSize + " -> " + encodedSize + " bytes compressed)" : "");
+
+            return new PreparedFile(metadata, sha256, blobCandidate, packed ? null : storedPath, packedLocation);
+        } catch (IOException | NoSuchAlgorithmException e) {
+            throw new FileStorageException("Failed to store file: " + filename, e);
+        } finally {
+            if (volume != null) {
+                storageVolumeService.release(volume, expectedSize);
+            }
+            if (blobKey != null) {
+                blobKey.destroy();
+            }
+            if (!written && !packed) {
+                deleteQuietly(storedPath); // partial upload left behind by a failure
+            }
+            if (!written && packedLocation != null) {
+                packedStorageService.release(packedLocation); // left to compaction as dead space
+            }
+        }
+    }
+
+    /**
+     * Attach prepared files to their blobs and save their metadata in one
+     * batch. Should the transaction roll back, the data written for them is
+     * deleted again; packed entries are left to compaction, which may reclaim
+     * their segments once the transaction has completed either way.
+     */
+    private List<FileMetadata> persist(List<PreparedFile> prepared, Share share) {
+        List<String> writtenPaths = new ArrayList<>();
+        for (PreparedFile file : prepared) {
+            if (file.writtenPath != null) {
+                writtenPaths.add(file.writtenPath);
+            }
+        }
+        deleteOnRollback(writtenPaths);
+        releasePackedEntriesAfterCompletion(prepared);
+
+        List<FileMetadata> metadataList = new ArrayList<>(prepared.size());
+        for (PreparedFile file : prepared) {
+            FileMetadata metadata = file.metadata;
+            if (file.blobCandidate != null) {
+                String stagedPath = metadata.getStoredPath();
+                Blob blob = blobService.attach(share, file.sha256, stagedPath, file.blobCandidate);
+                writtenPaths.remove(stagedPath); // consumed by attach
+                if (blob == file.blobCandidate) {
+                    writtenPaths.add(blob.getStoredPath()); // promoted to a new blob, not deduplicated
+                }
+                useBlob(metadata, blob);
+            }
+            metadataList.add(metadata);
+        }
+
+        metadataList = fileMetadataRepository.saveAll(metadataList);
+        for (FileMetadata metadata : metadataList) {
+            storageUsageService.recordStored(ShareType.FILE, metadata.getVolume(), metadata.getSize());
+        }
+        return metadataList;
+    }
+
+    private void releasePackedEntriesAfterCompletion(List<PreparedFile> prepared) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            prepared.forEach(this::releasePackedEntry);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                prepared.forEach(FileStorageService.this::releasePackedEntry);
+            }
+        });
+    }
+
+    private void releasePackedEntry(PreparedFile file) {
+        if (file.packedLocation != null && file.packedReleased.compareAndSet(false, true)) {
+            packedStorageService.release(file.packedLocation);
+        }
+    }
+
+    private void deleteOnRollback(List<String> storedPaths) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status == STATUS_ROLLED_BACK) {
+                    storedPaths.forEach(FileStorageService.this::deleteQuietly);
+                }
+            }
+        });
+    }
+
+    private void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
 
-            return metadata;
+    private void deleteStagingFile(String stagingPath) {
+        try {
+            Files.deleteIfExists(Paths.get(stagingPath));
         } catch (IOException e) {
-            throw new FileStorageException("Failed to store file: " + file.getOriginalFilename(), e);
+            log.warn("Failed to delete upload staging file: {}", stagingPath, e);
+        }
+    }
+
+    /**
+     * Copy a completed resumable upload to where the share's file is stored,
+     * before any transaction is opened. The staging file already holds the
+     * segmented ciphertext under the share's key: other backends receive a
+     * copy here, which takes a while for a large file; with local storage the
+     * staging file is renamed into place later by {@link #storeUploadedFile}.
+     *
+     * @return The stored path to pass to {@link #storeUploadedFile}
+     */
+    public String copyUploadedFile(Share share, UploadSession session) {
+        Path root = storageVolumeService.rootOf(session.getVolume());
+        if (root == null) {
+            throw new FileStorageException("Storage volume " + session.getVolume() + " is no longer configured");
+        }
+        String storedFilename = generateStoredFilename(share.getShareId(), session.getFilename());
+        String storedPath = storagePathUtil.filePath(root, share.getShareId(), storedFilename).toString();
+
+        if (blobStore.localPath(storedPath) == null) {
+            blobStore.write(storedPath, outputStream -> Files.copy(Paths.get(session.getStagingPath()), outputStream));
         }
+        return storedPath;
     }
 
     /**
-     * Store multiple files
+     * Save the metadata of a resumable upload copied by {@link #copyUploadedFile}.
+     * With local storage the staging file is renamed into place before commit
+     * and moved back should the transaction roll back; with other backends it
+     * is deleted after commit.
      */
     @Transactional
-    public List<FileMetadata> storeFiles(List<MultipartFile> files, Share share, byte[] contentKey) {
-        List<FileMetadata> metadataList = new ArrayList<>();
-        
-        for (MultipartFile file : files) {
-            if (!file.isEmpty()) {
-                FileMetadata metadata = storeFile(file, share, contentKey);
-                metadataList.add(metadata);
-            }
+    public FileMetadata storeUploadedFile(Share share, UploadSession session, String storedPath) {
+        String stagingPath = session.getStagingPath();
+        boolean local = blobStore.localPath(storedPath) != null;
+        if (local) {
+            blobStore.move(stagingPath, storedPath);
+            moveBackOnRollback(storedPath, stagingPath);
         }
-        
+
+        String mimeType = session.getMimeType() != null
+                ? session.getMimeType()
+                : mimeTypeUtil.detectFromFilename(session.getFilename());
+        FileMetadata metadata = FileMetadata.builder()
+                .share(share)
+                .filename(session.getFilename())
+                .storedPath(storedPath)
+                .mimeType(mimeType)
+                .size(session.getTotalSize())
+                .isPreviewable(mimeTypeUtil.isPreviewable(mimeType))
+                .cipherFormat(CipherFormat.SEGMENTED)
+                .encryptionAlgorithm(session.getEncryptionAlgorithm())
+                .volume(session.getVolume())
+                .build();
+
+        metadata = fileMetadataRepository.save(metadata);
+        storageUsageService.recordStored(ShareType.FILE, metadata.getVolume(), metadata.getSize());
+        if (!local) {
+            afterCommit(() -> deleteStagingFile(stagingPath));
+        }
+        log.info("Stored resumable upload {} as {} for share {}", session.getId(), session.getFilename(),
+                share.getShareId());
+
+        return metadata;
+    }
+
+    /**
+     * Delete the copy made by {@link #copyUploadedFile} when its metadata was
+     * not saved. A local staging file is left where it is, so the upload can
+     * be completed again.
+     *
+     * @param storedPath The path returned by copyUploadedFile, or null if it failed
+     */
+    public void discardUploadedFile(String storedPath) {
+        if (storedPath != null && blobStore.localPath(storedPath) == null) {
+            deleteQuietly(storedPath);
+        }
+    }
+
+    private void moveBackOnRollback(String storedPath, String stagingPath) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status == STATUS_ROLLED_BACK) {
+                    try {
+                        blobStore.move(storedPath, stagingPath);
+                    } catch (FileStorageException e) {
+                        log.error("Failed to move {} back to upload staging file {}", storedPath, stagingPath, e);
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Store multiple files, encrypting up to the per-upload limit of them at
+     * once on the shared upload pool. Their metadata is saved in one batch
+     * once all are written; if any file fails, the data written for the
+     * others is deleted again.
+     */
+    @Transactional
+    public List<FileMetadata> storeFiles(List<MultipartFile> files, Share share, byte[] contentKey) {
+        List<MultipartFile> nonEmpty = files.stream().filter(file -> !file.isEmpty()).toList();
+        List<FileMetadata> metadataList = persist(prepareAll(nonEmpty, share, contentKey), share);
+
         log.info("Stored {} files for share {}", metadataList.size(), share.getShareId());
         return metadataList;
     }
 
+    /**
+     * Prepare files concurrently, keeping at most the per-upload limit in
+     * flight; stops submitting at the first failure
+     */
+    private List<PreparedFile> prepareAll(List<MultipartFile> files, Share share, byte[] contentKey) {
+        if (files.size() <= 1 || maxFilesInFlight <= 1) {
+            List<PreparedFile> prepared = new ArrayList<>(files.size());
+            try {
+                for (MultipartFile file : files) {
+                    prepared.add(prepare(file, share, contentKey));
+                }
+            } catch (RuntimeException e) {
+                discard(prepared);
+                throw e;
+            }
+            return prepared;
+        }
+
+        Semaphore slots = new Semaphore(maxFilesInFlight);
+        AtomicBoolean failed = new AtomicBoolean();
+        List<Future<PreparedFile>> futures = new ArrayList<>(files.size());
+        try {
+            for (MultipartFile file : files) {
+                slots.acquire();
+                if (failed.get()) {
+                    slots.release();
+                    break;
+                }
+                try {
+                    futures.add(uploadExecutor.submit(() -> {
+                        try {
+                            return prepare(file, share, contentKey);
+                        } catch (RuntimeException e) {
+                            failed.set(true);
+                            throw e;
+                        } finally {
+                            slots.release();
+                        }
+                    }));
+                } catch (RejectedExecutionException e) {
+                    slots.release();
+                    failed.set(true);
+                    break;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            failed.set(true);
+        }
+
+        // Wait for every submitted file, so none is still being written when the others are rolled back
+        List<PreparedFile> prepared = new ArrayList<>(futures.size());
+        Throwable failure = null;
+        for (Future<PreparedFile> future : futures) {
+            try {
+                prepared.add(future.get());
+            } catch (ExecutionException e) {
+                failure = failure != null ? failure : e.getCause();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                failure = failure != null ? failure : e;
+                future.cancel(true);
+            }
+        }
+
+        if (failure == null && !failed.get()) {
+            return prepared;
+        }
+        discard(prepared);
+        if (failure instanceof RuntimeException runtimeException) {
+            throw runtimeException;
+        }
+        throw new FileStorageException("Failed to store files for share " + share.getShareId(), failure);
+    }
+
     /**
      * Stream decrypted file to output stream (Template Method pattern)
      */
     public void streamFile(FileMetadata fileMetadata, OutputStream outputStream, byte[] contentKey) {
+        if (fileMetadata.getCompression() == null) {
+            streamEncodedFile(fileMetadata, outputStream, contentKey);
+            return;
+        }
+
+        try (OutputStream decompressingStream =
+                     compressionService.decompressingStream(fileMetadata.getCompression(), outputStream)) {
+            streamEncodedFile(fileMetadata, decompressingStream, contentKey);
+        } catch (IOException e) {
+            throw new FileStorageException("Failed to stream file: " + fileMetadata.getFilename(), e);
+        }
+    }
+
+    /**
+     * Stream the decrypted file exactly as stored, without undoing compression.
+     * Used to serve the compressed form directly with Content-Encoding.
+     */
+    public void streamEncodedFile(FileMetadata fileMetadata, OutputStream outputStream, byte[] contentKey) {
         try {
-            Path filePath = Paths.get(fileMetadata.getStoredPath());
-            
-            if (!Files.exists(filePath)) {
-                throw new FileStorageException("File not found: " + fileMetadata.getFilename());
+            byte[] key = resolveKey(fileMetadata, contentKey);
+            try {
+                if (!decryptFromChannel(fileMetadata, outputStream, key, 0, Long.MAX_VALUE)) {
+                    try (InputStream inputStream = openStoredFile(fileMetadata)) {
+                        encryptionService.decryptStream(inputStream, outputStream, key,
+                                fileMetadata.getEncryptionAlgorithm());
+                    }
+                }
+            } finally {
+                releaseKey(key, contentKey);
             }
 
-            try (InputStream inputStream = new FileInputStream(filePath.toFile())) {
-                encryptionService.decryptStream(inputStream, outputStream, contentKey);
+            log.debug("Streamed file: {}", fileMetadata.getFilename());
+        } catch (IOException e) {
+            throw new FileStorageException("Failed to stream file: " + fileMetadata.getFilename(), e);
+        }
+    }
+
+    /**
+     * Stream a decrypted byte range of a file; only the covering segments are read
+     */
+    public void streamFileRange(FileMetadata fileMetadata, OutputStream outputStream, byte[] contentKey,
+                                long offset, long length) {
+        if (!fileMetadata.isSeekable()) {
+            throw new FileStorageException("File does not support range reads: " + fileMetadata.getFilename());
+        }
+        streamEncodedFileRange(fileMetadata, outputStream, contentKey, offset, length);
+    }
+
+    /**
+     * Stream a byte range of the file as stored (compressed, if compression was applied)
+     */
+    public void streamEncodedFileRange(FileMetadata fileMetadata, OutputStream outputStream, byte[] contentKey,
+                                       long offset, long length) {
+        if (!fileMetadata.isEncodedSeekable()) {
+            throw new FileStorageException("File does not support range reads: " + fileMetadata.getFilename());
+        }
+
+        try {
+            byte[] key = resolveKey(fileMetadata, contentKey);
+            try {
+                if (!decryptFromChannel(fileMetadata, outputStream, key, offset, length)) {
+                    try (InputStream inputStream = openStoredFile(fileMetadata)) {
+                        encryptionService.decryptStreamRange(inputStream, outputStream, key,
+                                fileMetadata.getEncryptionAlgorithm(), offset, length);
+                    }
+                }
+            } finally {
+                releaseKey(key, contentKey);
             }
 
-            log.debug("Streamed file: {}", fileMetadata.getFilename());
+            log.debug("Streamed bytes {}-{} of file: {}", offset, offset + length - 1, fileMetadata.getFilename());
         } catch (IOException e) {
             throw new FileStorageException("Failed to stream file: " + fileMetadata.getFilename(), e);
         }
     }
 
+    /**
+     * Locate a file's encrypted bytes exactly as stored, for serving them to
+     * clients that decrypt downloads themselves
+     */
+    public StoredCiphertext locateCiphertext(FileMetadata fileMetadata) {
+        if (fileMetadata.isPacked()) {
+            String storedPath = fileMetadata.getStoredPath();
+            return new StoredCiphertext(storedPath, Paths.get(storedPath),
+                    fileMetadata.getPackOffset(), fileMetadata.getPackLength());
+        }
+        long size = openStored(fileMetadata, blobStore::size);
+        String storedPath = fileMetadata.getStoredPath();
+        return new StoredCiphertext(storedPath, blobStore.localPath(storedPath), 0, size);
+    }
+
+    /**
+     * Send a byte range of a file's stored ciphertext without decrypting it.
+     * Local files go through FileChannel.transferTo; other backends are
+     * copied from a stream that seeks to the range.
+     */
+    public void transferCiphertext(StoredCiphertext ciphertext, OutputStream outputStream, long start, long count) {
+        try {
+            if (ciphertext.getLocalPath() == null) {
+                try (InputStream inputStream = blobStore.openStream(ciphertext.getKey())) {
+                    inputStream.skipNBytes(ciphertext.getOffset() + start);
+                    IOUtils.copyLarge(inputStream, outputStream, 0, count);
+                }
+                return;
+            }
+
+            try (FileChannel channel = FileChannel.open(ciphertext.getLocalPath(), StandardOpenOption.READ)) {
+                WritableByteChannel target = Channels.newChannel(outputStream);
+                long position = ciphertext.getOffset() + start;
+                long end = position + count;
+                while (position < end) {
+                    long transferred = channel.transferTo(position, end - position, target);
+                    if (transferred <= 0) {
+                        throw new EOFException("Stored file is shorter than expected: " + ciphertext.getKey());
+                    }
+                    position += transferred;
+                }
+            }
+        } catch (IOException e) {
+            throw new FileStorageException("Failed to send file: " + ciphertext.getKey(), e);
+        }
+    }
+
     /**
      * Get decrypted file as byte array (for small files)
      */
@@ -155,20 +746,15 @@ public class FileStorageService {
                 throw new FileStorageException("No files found for share: " + share.getShareId());
             }
 
-            // Create list of file data for ZIP
-            List<ZipUtil.FileData> fileDataList = new ArrayList<>();
+            // Each file is decrypted straight into the ZIP stream when its entry is written
+            List<ZipUtil.StreamingEntry> entries = new ArrayList<>();
             
             for (FileMetadata file : files) {
-                // Create decrypted input stream for each file
-                ByteArrayOutputStream decryptedStream = new ByteArrayOutputStream();
-                streamFile(file, decryptedStream, contentKey);
-                ByteArrayInputStream inputStream = new ByteArrayInputStream(decryptedStream.toByteArray());
-                
-                fileDataList.add(new ZipUtil.FileData(file.getFilename(), inputStream));
+                entries.add(new ZipUtil.StreamingEntry(file.getFilename(),
+                        entryStream -> streamFile(file, entryStream, contentKey)));
             }
 
-            // Create ZIP
-            zipUtil.createZipFromStreams(fileDataList, outputStream);
+            zipUtil.createZipStreaming(entries, outputStream);
             
             log.info("Created ZIP with {} files for share {}", files.size(), share.getShareId());
         } catch (IOException e) {
@@ -177,79 +763,128 @@ public class FileStorageService {
     }
 
     /**
-     * Delete file from storage
+     * Queue a file's stored data for deletion; deduplicated files only drop
+     * their blob reference and packed files need no file system work at all
      */
+    @Transactional
     public void deleteFile(FileMetadata fileMetadata) {
-        try {
-            Path filePath = Paths.get(fileMetadata.getStoredPath());
-            
-            if (Files.exists(filePath)) {
-                Files.delete(filePath);
-                log.debug("Deleted file: {}", fileMetadata.getFilename());
-            }
-        } catch (IOException e) {
-            log.error("Failed to delete file: {}", fileMetadata.getFilename(), e);
+        if (fileMetadata.getBlob() != null) {
+            blobService.release(fileMetadata.getBlob());
+            return;
+        }
+        if (fileMetadata.isPacked()) {
+            return; // the entry becomes dead space, reclaimed by compaction
         }
+
+        deletionQueueService.enqueue(fileMetadata.getStoredPath());
+        log.debug("Queued file for deletion: {}", fileMetadata.getFilename());
     }
 
     /**
-     * Delete all files for a share
+     * Delete all files for a share.
+     * Only database work happens here: the rows go and the stored data is
+     * queued for the deletion workers. With per-share directories the share's
+     * directory on each volume is queued as a whole; only files stored
+     * elsewhere (blobs, not yet migrated files) are queued one by one.
      */
     @Transactional
     public void deleteFilesForShare(Share share) {
         List<FileMetadata> files = fileMetadataRepository.findByShare(share);
+        Set<Path> shareDirectories = new LinkedHashSet<>();
+        Path defaultDirectory = storagePathUtil.shareDirectory(share.getShareId());
+        if (defaultDirectory != null) {
+            shareDirectories.add(defaultDirectory);
+        }
+
+        // Rows go first: a blob can only be deleted once nothing references it
+        fileMetadataRepository.deleteByShare(share);
+        fileMetadataRepository.flush();
         
         for (FileMetadata file : files) {
-            deleteFile(file);
+            storageUsageService.recordDeleted(ShareType.FILE,
+                    file.getVolume() != null ? file.getVolume() : StorageVolumeService.DEFAULT_VOLUME, file.getSize());
+            Path root = storageVolumeService.rootOf(file.getVolume());
+            Path shareDirectory = root != null ? storagePathUtil.shareDirectory(root, share.getShareId()) : null;
+            if (shareDirectory == null || file.getBlob() != null
+                    || !Paths.get(file.getStoredPath()).startsWith(shareDirectory)) {
+                deleteFile(file);
+            } else {
+                shareDirectories.add(shareDirectory);
+            }
+        }
+
+        for (Path shareDirectory : shareDirectories) {
+            deletionQueueService.enqueueDirectory(shareDirectory.toString());
         }
         
-        fileMetadataRepository.deleteByShare(share);
         log.info("Deleted {} files for share {}", files.size(), share.getShareId());
     }
 
     /**
-     * Get preview for a file (limited bytes)
+     * Get preview for a file (limited bytes).
+     * The window is capped by the server limit and only the covering prefix is decrypted.
      */
     public byte[] getFilePreview(FileMetadata fileMetadata, byte[] contentKey, int maxBytes) {
         if (!fileMetadata.canPreview()) {
             throw new FileStorageException("File is not previewable: " + fileMetadata.getFilename());
         }
 
-        try {
-            Path filePath = Paths.get(fileMetadata.getStoredPath());
-            
-            if (!Files.exists(filePath)) {
-                throw new FileStorageException("File not found: " + fileMetadata.getFilename());
+        int previewBytes = (int) Math.min(Math.min(Math.max(maxBytes, 0), maxPreviewBytes), fileMetadata.getSize());
+        if (previewBytes == 0) {
+            return new byte[0];
+        }
+
+        if (fileMetadata.isSeekable()) {
+            ByteArrayOutputStream outputStream = new ByteArrayOutputStream(previewBytes);
+            streamFileRange(fileMetadata, outputStream, contentKey, 0, previewBytes);
+            return outputStream.toByteArray();
+        }
+
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream(previewBytes) {
+            @Override
+            public synchronized void write(byte[] b, int off, int len) {
+                super.write(b, off, Math.max(0, Math.min(len, previewBytes - count)));
             }
 
-            ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
-            
-            try (InputStream inputStream = new FileInputStream(filePath.toFile())) {
-                encryptionService.decryptStream(inputStream, outputStream, contentKey);
+            @Override
+            public synchronized void write(int b) {
+                if (count < previewBytes) {
+                    super.write(b);
+                }
             }
+        };
 
-            byte[] fullContent = outputStream.toByteArray();
-            
-            // Return only first maxBytes
-            if (fullContent.length <= maxBytes) {
-                return fullContent;
+        if (fileMetadata.getCompression() != null && fileMetadata.isEncodedSeekable()) {
+            // Inflate successive compressed windows until the preview is full
+            try (OutputStream decompressingStream =
+                         compressionService.decompressingStream(fileMetadata.getCompression(), outputStream)) {
+                long encodedSize = fileMetadata.getEncodedSize();
+                long offset = 0;
+                while (offset < encodedSize && outputStream.size() < previewBytes) {
+                    long length = Math.min(previewBytes, encodedSize - offset);
+                    streamEncodedFileRange(fileMetadata, decompressingStream, contentKey, offset, length);
+                    decompressingStream.flush();
+                    offset += length;
+                }
+            } catch (IOException e) {
+                throw new FileStorageException("Failed to preview file: " + fileMetadata.getFilename(), e);
             }
-            
-            byte[] preview = new byte[maxBytes];
-            System.arraycopy(fullContent, 0, preview, 0, maxBytes);
-            return preview;
-            
-        } catch (IOException e) {
-            throw new FileStorageException("Failed to generate preview: " + fileMetadata.getFilename(), e);
+            return outputStream.toByteArray();
         }
+
+        // Legacy single-stream files must be authenticated in full; keep only the window
+        streamFile(fileMetadata, outputStream, contentKey);
+        return outputStream.toByteArray();
     }
 
     /**
      * Check if file exists
      */
     public boolean fileExists(FileMetadata fileMetadata) {
-        Path filePath = Paths.get(fileMetadata.getStoredPath());
-        return Files.exists(filePath);
+        if (fileMetadata.isPacked()) {
+            return packedStorageService.exists(fileMetadata);
+        }
+        return blobStore.exists(fileMetadata.getStoredPath());
     }
 
     /**
@@ -267,6 +902,114 @@ public class FileStorageService {
         return fileMetadataRepository.findByShare(share);
     }
 
+    /**
+     * Open a file's stored data at its recorded path. Only when that path is
+     * missing is the current path looked up again, following a storage
+     * migration that moved the file after the metadata was loaded.
+     */
+    private <T> T openStored(FileMetadata fileMetadata, Function<String, T> opener) {
+        try {
+            return opener.apply(fileMetadata.getStoredPath());
+        } catch (FileStorageException e) {
+            if (!isMissing(e)) {
+                throw e;
+            }
+
+            if (fileMetadata.getBlob() == null && fileMetadata.getId() != null) {
+                String currentPath = fileMetadataRepository.findStoredPathById(fileMetadata.getId()).orElse(null);
+                if (currentPath != null && !currentPath.equals(fileMetadata.getStoredPath())) {
+                    fileMetadata.setStoredPath(currentPath);
+                    return opener.apply(currentPath);
+                }
+            }
+
+            storageVolumeService.checkAvailable(fileMetadata.getVolume());
+            throw new FileStorageException("File not found: " + fileMetadata.getFilename(), e);
+        }
+    }
+
+    private static boolean isMissing(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof NoSuchFileException || cause instanceof FileNotFoundException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Open a file's stored data; packed entries are read with one positional read
+     */
+    private InputStream openStoredFile(FileMetadata fileMetadata) {
+        if (fileMetadata.isPacked()) {
+            return new ByteArrayInputStream(packedStorageService.read(fileMetadata));
+        }
+        return openStored(fileMetadata, blobStore::openStream);
+    }
+
+    /**
+     * Decrypt through a file channel when enough is read to pay off: large
+     * positional reads with read-ahead, decrypted without copying through a
+     * stream buffer
+     *
+     * @return false if the file has to be read as a stream instead
+     */
+    private boolean decryptFromChannel(FileMetadata fileMetadata, OutputStream outputStream,
+                                       byte[] key, long offset, long length) throws IOException {
+        long span = Math.min(length, fileMetadata.getStoredLength() - offset);
+        if (fileMetadata.isPacked() || span < channelMinSize) {
+            return false;
+        }
+
+        try (FileChannel channel = openStored(fileMetadata, blobStore::openChannel)) {
+            if (channel == null) {
+                return false;
+            }
+            encryptionService.decryptChannel(channel, outputStream, key, fileMetadata.getEncryptionAlgorithm(),
+                    offset, length, readAhead);
+            return true;
+        }
+    }
+
+    /**
+     * Point file metadata at a blob, taking over its storage attributes
+     */
+    private void useBlob(FileMetadata metadata, Blob blob) {
+        metadata.setBlob(blob);
+        metadata.setStoredPath(blob.getStoredPath());
+        metadata.setCipherFormat(blob.getCipherFormat());
+        metadata.setEncryptionAlgorithm(blob.getEncryptionAlgorithm());
+        metadata.setCompression(blob.getCompression());
+        metadata.setEncodedSize(blob.getEncodedSize());
+    }
+
+    /**
+     * Get the key a file was encrypted with: its blob key, or the share's content key
+     */
+    private byte[] resolveKey(FileMetadata fileMetadata, byte[] contentKey) {
+        return fileMetadata.getBlob() != null ? blobService.getBlobKey(fileMetadata.getBlob()) : contentKey;
+    }
+
+    /**
+     * Wipe an unwrapped blob key after use (the caller owns the share's content key)
+     */
+    private void releaseKey(byte[] key, byte[] contentKey) {
+        if (key != contentKey) {
+            Arrays.fill(key, (byte) 0);
+        }
+    }
+
+    private void deleteQuietly(String storedPath) {
+        if (storedPath == null) {
+            return;
+        }
+        try {
+            blobStore.delete(storedPath);
+        } catch (FileStorageException e) {
+            log.warn("Failed to delete staged upload: {}", storedPath, e);
+        }
+    }
+
     /**
      * Generate a unique stored filename
      */
@@ -291,4 +1034,59 @@ public class FileStorageService {
         
         return filename.substring(lastDotIndex + 1);
     }
+
+    /**
+     * Where a file's stored ciphertext lives: its storage key, the local file
+     * when the backend keeps one, and the byte range inside it
+     */
+    public static class StoredCiphertext {
+        private final String key;
+        private final Path localPath;
+        private final long offset;
+        private final long length;
+
+        public StoredCiphertext(String key, Path localPath, long offset, long length) {
+            this.key = key;
+            this.localPath = localPath;
+            this.offset = offset;
+            this.length = length;
+        }
+
+        public String getKey() {
+            return key;
+        }
+
+        public Path getLocalPath() {
+            return localPath;
+        }
+
+        public long getOffset() {
+            return offset;
+        }
+
+        public long getLength() {
+            return length;
+        }
+    }
+
+    /**
+     * An encrypted and written file whose metadata is not saved yet
+     */
+    public static class PreparedFile {
+        private final FileMetadata metadata;
+        private final byte[] sha256;
+        private final Blob blobCandidate; // set when the file is staged for deduplication
+        private final String writtenPath; // file of its own to delete on failure; null when packed
+        private final PackedStorageService.PackedLocation packedLocation; // pinned until saved or discarded
+        private final AtomicBoolean packedReleased = new AtomicBoolean();
+
+        PreparedFile(FileMetadata metadata, byte[] sha256, Blob blobCandidate, String writtenPath,
+                     PackedStorageService.PackedLocation packedLocation) {
+            this.metadata = metadata;
+            this.sha256 = sha256;
+            this.blobCandidate = blobCandidate;
+            this.writtenPath = writtenPath;
+            this.packedLocation = packedLocation;
+        }
+    }
 }
@@ -0,0 +1,377 @@
+package com.fluxshare.service;
+
+import com.fluxshare.entity.FileMetadata;
+import com.fluxshare.exception.FileStorageException;
+import com.fluxshare.repository.FileMetadataRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+/**
+ * Service packing small encrypted files into large append-only segment files.
+ *
+ * Each small upload is appended to the active segment instead of becoming a
+ * file of its own; FileMetadata records the segment (storedPath), offset and
+ * length, which form the index. Reads are single positional reads on a shared
+ * channel. Deleting a packed file only removes its row; compaction later
+ * copies the live entries of mostly-dead segments into the active segment and
+ * deletes the old segment file.
+ *
+ * A segment is only appended to while it is younger than the maximum segment
+ * age, and only compacted once it has not been written for longer than that,
+ * so compaction never races an appender. An entry whose row is not committed
+ * yet pins its segment until the caller releases it, however long the upload
+ * around it takes. Packing needs local files and is disabled with other
+ * backends.
+ */
+@Service
+@Slf4j
+public class PackedStorageService {
+
+    /** Directory under the base path holding packed segments */
+    public static final String PACK_DIRECTORY = "packs";
+
+    private static final String SEGMENT_SUFFIX = ".pack";
+
+    private final FileMetadataRepository fileMetadataRepository;
+    private final boolean enabled;
+    private final Path packDirectory;
+    private final long maxFileSize;
+    private final long segmentSize;
+    private final long segmentMaxAgeMillis;
+    private final double minGarbageRatio;
+
+    private final Map<String, FileChannel> readChannels = new ConcurrentHashMap<>();
+    private final Map<Path, Long> retiredSegments = new ConcurrentHashMap<>();
+    private final Map<Path, Integer> pendingEntries = new ConcurrentHashMap<>();
+    private final Object appendLock = new Object();
+
+    private FileChannel activeChannel;
+    private Path activePath;
+    private long activeCreatedAt;
+
+    public PackedStorageService(
+            FileMetadataRepository fileMetadataRepository,
+            @Value("${fluxshare.storage.backend:local}") String backend,
+            @Value("${fluxshare.storage.pack.enabled:true}") boolean enabled,
+            @Value("${fluxshare.storage.base-path:./storage/encrypted}") String basePath,
+            @Value("${fluxshare.storage.pack.max-file-size:262144}") long maxFileSize,
+            @Value("${fluxshare.storage.pack.segment-size:67108864}") long segmentSize,
+            @Value("${fluxshare.storage.pack.segment-max-age-ms:600000}") long segmentMaxAgeMillis,
+            @Value("${fluxshare.storage.pack.compaction.min-garbage-ratio:0.5}") double minGarbageRatio) {
+        this.fileMetadataRepository = fileMetadataRepository;
+        this.enabled = enabled && "local".equalsIgnoreCase(backend);
+        this.packDirectory = Paths.get(basePath, PACK_DIRECTORY);
+        this.maxFileSize = maxFileSize;
+        this.segmentSize = segmentSize;
+        this.segmentMaxAgeMillis = segmentMaxAgeMillis;
+        this.minGarbageRatio = minGarbageRatio;
+
+        if (enabled && !this.enabled) {
+            log.info("Packed storage is only available with the local backend, storing small files individually");
+        }
+    }
+
+    /**
+     * Check if a file of the given size should be packed
+     */
+    public boolean accepts(long size) {
+        return enabled && size <= maxFileSize;
+    }
+
+    /**
+     * Get the largest file size that is packed, or -1 when packing is disabled
+     */
+    public long getMaxFileSize() {
+        return enabled ? maxFileSize : -1;
+    }
+
+    /**
+     * Append an encrypted entry to the active segment. The segment is kept
+     * from compaction until {@link #release} is called for the entry, once its
+     * row is committed or the entry is abandoned.
+     *
+     * @param data The encrypted entry
+     * @return Where the entry was written
+     */
+    public PackedLocation append(byte[] data) {
+        synchronized (appendLock) {
+            try {
+                if (activeChannel == null
+                        || activeChannel.size() + data.length > segmentSize
+                        || System.currentTimeMillis() - activeCreatedAt > segmentMaxAgeMillis) {
+                    rollSegment();
+                }
+
+                long offset = activeChannel.size();
+                ByteBuffer buffer = ByteBuffer.wrap(data);
+                while (buffer.hasRemaining()) {
+                    activeChannel.write(buffer, offset + buffer.position());
+                }
+                pendingEntries.merge(activePath, 1, Integer::sum);
+                return new PackedLocation(activePath.toString(), offset, data.length);
+            } catch (IOException e) {
+                closeActiveSegment(); // bytes written so far become dead space
+                throw new FileStorageException("Failed to append to packed segment", e);
+            }
+        }
+    }
+
+    /**
+     * Unpin the segment of an appended entry whose row is now committed, or
+     * which will never get one
+     *
+     * @param location The location returned by append
+     */
+    public void release(PackedLocation location) {
+        pendingEntries.computeIfPresent(Paths.get(location.getSegmentPath()),
+                (segment, count) -> count > 1 ? count - 1 : null);
+    }
+
+    /**
+     * Read a packed file's encrypted entry, following a compaction that moved
+     * it after the metadata was loaded
+     */
+    public byte[] read(FileMetadata fileMetadata) {
+        try {
+            return read(fileMetadata.getStoredPath(), fileMetadata.getPackOffset(), fileMetadata.getPackLength());
+        } catch (IOException e) {
+            FileMetadata current = fileMetadataRepository.findById(fileMetadata.getId())
+                    .filter(FileMetadata::isPacked)
+                    .orElseThrow(() -> new FileStorageException("File not found: " + fileMetadata.getFilename()));
+            if (current.getStoredPath().equals(fileMetadata.getStoredPath())
+                    && current.getPackOffset().equals(fileMetadata.getPackOffset())) {
+                throw new FileStorageException("Failed to read packed file: " + fileMetadata.getFilename(), e);
+            }
+
+            fileMetadata.setStoredPath(current.getStoredPath());
+            fileMetadata.setPackOffset(current.getPackOffset());
+            try {
+                return read(current.getStoredPath(), current.getPackOffset(), current.getPackLength());
+            } catch (IOException retryException) {
+                throw new FileStorageException("Failed to read packed file: " + fileMetadata.getFilename(), retryException);
+            }
+        }
+    }
+
+    /**
+     * Check if a packed file's segment exists
+     */
+    public boolean exists(FileMetadata fileMetadata) {
+        return Files.exists(Paths.get(fileMetadata.getStoredPath()));
+    }
+
+    /**
+     * Reclaim space in segments that are mostly dead, and delete segments
+     * retired by the previous run
+     *
+     * @return Number of bytes reclaimed
+     */
+    public synchronized long compact() {
+        if (!enabled || !Files.isDirectory(packDirectory)) {
+            return 0;
+        }
+
+        deleteRetiredSegments();
+
+        List<Path> segments;
+        try (Stream<Path> files = Files.list(packDirectory)) {
+            segments = files.filter(path -> path.getFileName().toString().endsWith(SEGMENT_SUFFIX)).toList();
+        } catch (IOException e) {
+            throw new FileStorageException("Failed to list packed segments", e);
+        }
+
+        long reclaimed = 0;
+        long writableCutoff = System.currentTimeMillis() - segmentMaxAgeMillis;
+
+        for (Path segment : segments) {
+            if (retiredSegments.containsKey(segment) || segment.equals(currentActivePath())
+                    || pendingEntries.containsKey(segment)) {
+                continue;
+            }
+            try {
+                if (Files.getLastModifiedTime(segment).toMillis() > writableCutoff) {
+                    continue; // may still be appended to
+                }
+
+                long size = Files.size(segment);
+                long live = fileMetadataRepository.getLivePackedBytes(segment.toString());
+                if (live > 0 && size - live < size * minGarbageRatio) {
+                    continue;
+                }
+
+                if (live > 0) {
+                    relocateEntries(segment);
+                }
+                retiredSegments.put(segment, System.currentTimeMillis());
+                reclaimed += size - live;
+                log.debug("Compacted packed segment {}: {} of {} bytes live", segment.getFileName(), live, size);
+            } catch (IOException | RuntimeException e) {
+                log.error("Failed to compact packed segment {}", segment, e);
+            }
+        }
+
+        return reclaimed;
+    }
+
+    @PreDestroy
+    public void close() {
+        synchronized (appendLock) {
+            closeActiveSegment();
+        }
+        readChannels.values().forEach(this::closeQuietly);
+        readChannels.clear();
+    }
+
+    /**
+     * Copy a segment's live entries into the active segment
+     */
+    private void relocateEntries(Path segment) throws IOException {
+        String segmentPath = segment.toString();
+        for (FileMetadata entry : fileMetadataRepository.findPackedEntries(segmentPath)) {
+            byte[] data = read(segmentPath, entry.getPackOffset(), entry.getPackLength());
+            PackedLocation location = append(data);
+            try {
+                // A concurrent delete leaves the copy as dead space in the new segment
+                fileMetadataRepository.relocatePackedEntry(entry.getId(), segmentPath, entry.getPackOffset(),
+                        location.getSegmentPath(), location.getOffset());
+            } finally {
+                release(location);
+            }
+        }
+    }
+
+    /**
+     * Delete segments retired at least one segment age ago, so readers that
+     * loaded their location before the relocation have finished
+     */
+    private void deleteRetiredSegments() {
+        long cutoff = System.currentTimeMillis() - segmentMaxAgeMillis;
+        retiredSegments.entrySet().removeIf(retired -> {
+            if (retired.getValue() > cutoff) {
+                return false;
+            }
+            Path segment = retired.getKey();
+            if (pendingEntries.containsKey(segment)) {
+                return false; // an upload appended to it before it was retired, check again next run
+            }
+            if (fileMetadataRepository.getLivePackedBytes(segment.toString()) > 0) {
+                log.warn("Retired packed segment {} is still referenced, keeping it", segment);
+                return true;
+            }
+            FileChannel channel = readChannels.remove(segment.toString());
+            if (channel != null) {
+                closeQuietly(channel);
+            }
+            try {
+                Files.deleteIfExists(segment);
+            } catch (IOException e) {
+                log.error("Failed to delete packed segment {}", segment, e);
+                return false;
+            }
+            return true;
+        });
+    }
+
+    private byte[] read(String segmentPath, long offset, int length) throws IOException {
+        FileChannel channel = readChannel(segmentPath);
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, offset + buffer.position()) < 0) {
+                throw new EOFException("Packed entry extends past the end of " + segmentPath);
+            }
+        }
+        return buffer.array();
+    }
+
+    private FileChannel readChannel(String segmentPath) throws IOException {
+        try {
+            return readChannels.compute(segmentPath, (path, channel) -> {
+                if (channel != null && channel.isOpen()) {
+                    return channel;
+                }
+                try {
+                    return FileChannel.open(Paths.get(path), StandardOpenOption.READ);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private void rollSegment() throws IOException {
+        closeActiveSegment();
+        Files.createDirectories(packDirectory);
+        activePath = packDirectory.resolve(UUID.randomUUID() + SEGMENT_SUFFIX);
+        activeChannel = FileChannel.open(activePath, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        activeCreatedAt = System.currentTimeMillis();
+        log.debug("Opened packed segment {}", activePath.getFileName());
+    }
+
+    private void closeActiveSegment() {
+        if (activeChannel != null) {
+            closeQuietly(activeChannel);
+            activeChannel = null;
+            activePath = null;
+        }
+    }
+
+    private Path currentActivePath() {
+        synchronized (appendLock) {
+            return activePath;
+        }
+    }
+
+    private void closeQuietly(FileChannel channel) {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            log.warn("Failed to close packed segment channel", e);
+        }
+    }
+
+    /**
+     * Location of an entry inside a packed segment
+     */
+    public static class PackedLocation {
+        private final String segmentPath;
+        private final long offset;
+        private final int length;
+
+        public PackedLocation(String segmentPath, long offset, int length) {
+            this.segmentPath = segmentPath;
+            this.offset = offset;
+            this.length = length;
+        }
+
+        public String getSegmentPath() {
+            return segmentPath;
+        }
+
+        public long getOffset() {
+            return offset;
+        }
+
+        public int getLength() {
+            return length;
+        }
+    }
+}
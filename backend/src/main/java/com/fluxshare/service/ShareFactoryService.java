@@ -3,14 +3,32 @@ package com.fluxshare.service;
 import com.fluxshare.dto.FileShareRequest;
 import com.fluxshare.entity.FileMetadata;
 import com.fluxshare.entity.Share;
+import com.fluxshare.entity.UploadSession;
 import com.fluxshare.enums.ShareType;
+import com.fluxshare.exception.FileStorageException;
+import com.fluxshare.exception.InvalidUploadException;
+import com.fluxshare.exception.UploadSessionNotFoundException;
+import com.fluxshare.repository.UploadSessionRepository;
+import jakarta.servlet.http.HttpServletRequest;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.fileupload2.core.FileItemInput;
+import org.apache.commons.fileupload2.core.FileItemInputIterator;
+import org.apache.commons.fileupload2.core.FileUploadException;
+import org.apache.commons.fileupload2.core.FileUploadSizeException;
+import org.apache.commons.fileupload2.jakarta.servlet6.JakartaServletFileUpload;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.multipart.MaxUploadSizeExceededException;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Factory service for creating different types of shares.
@@ -21,15 +39,21 @@ import java.util.List;
 @Slf4j
 public class ShareFactoryService {
 
+    private static final int MAX_FIELD_LENGTH = 10000;
+
     private final ShareService shareService;
     private final FileStorageService fileStorageService;
     private final TextContentService textContentService;
+    private final StorageUsageService storageUsageService;
+    private final UploadSessionRepository uploadSessionRepository;
 
     /**
      * Create a file share
      */
     @Transactional
     public Share createFileShare(List<MultipartFile> files, FileShareRequest request) {
+        storageUsageService.checkCapacity(files.stream().mapToLong(MultipartFile::getSize).sum());
+
         // Create share entity
         Share share = shareService.createShare(
                 ShareType.FILE,
@@ -38,7 +62,8 @@ public class ShareFactoryService {
                 request.getPassword(),
                 request.getNotes(),
                 request.getMaxDownloads(),
-                request.getMaxViews()
+                request.getMaxViews(),
+                Boolean.TRUE.equals(request.getClientDecryption())
         );
 
         // Get content key
@@ -52,10 +77,163 @@ public class ShareFactoryService {
         return share;
     }
 
+    /**
+     * Create a file share from a multipart request read as it arrives: each
+     * file part is encrypted straight into storage, never spooled to disk.
+     * Form fields set the share's options, so they have to precede the files;
+     * the share is created when the first file starts. No transaction is held
+     * while the files arrive: their metadata is saved in one short transaction
+     * at the end, and if the upload fails, the files written so far and the
+     * share are deleted again.
+     *
+     * @param upload Parser configured with the size limits
+     * @param httpRequest The multipart request
+     * @param options Options given outside the form, e.g. as query parameters
+     * @return The stored files, all of the same new share
+     */
+    public List<FileMetadata> createStreamedFileShare(JakartaServletFileUpload<?, ?> upload,
+                                                      HttpServletRequest httpRequest,
+                                                      Map<String, String> options) {
+        long contentLength = httpRequest.getContentLengthLong();
+        storageUsageService.checkCapacity(Math.max(contentLength, 0));
+
+        FileShareRequest request = new FileShareRequest();
+        options.forEach((name, value) -> applyField(request, name, value));
+
+        Share share = null;
+        List<FileStorageService.PreparedFile> prepared = new ArrayList<>();
+        try {
+            byte[] contentKey = null;
+            FileItemInputIterator items = upload.getItemIterator(httpRequest);
+            while (items.hasNext()) {
+                FileItemInput item = items.next();
+                if (item.isFormField()) {
+                    if (share != null) {
+                        throw new InvalidUploadException("Form field " + item.getFieldName()
+                                + " must be sent before the files");
+                    }
+                    applyField(request, item.getFieldName(), readField(item));
+                    continue;
+                }
+
+                // Like empty file inputs, files without a name or content are skipped
+                PushbackInputStream inputStream = new PushbackInputStream(item.getInputStream(), 1);
+                int first = inputStream.read();
+                if (item.getName() == null || item.getName().isEmpty() || first < 0) {
+                    continue;
+                }
+                inputStream.unread(first);
+
+                if (share == null) {
+                    share = shareService.createShare(
+                            ShareType.FILE,
+                            request.getExpiryHours(),
+                            request.getViewOnce(),
+                            request.getPassword(),
+                            request.getNotes(),
+                            request.getMaxDownloads(),
+                            request.getMaxViews(),
+                            Boolean.TRUE.equals(request.getClientDecryption())
+                    );
+                    contentKey = shareService.getContentKey(share);
+                }
+                prepared.add(fileStorageService.prepareStream(inputStream, item.getName(), contentLength, share,
+                        contentKey));
+            }
+
+            if (share == null) {
+                throw new InvalidUploadException("At least one file is required");
+            }
+            List<FileMetadata> metadata = fileStorageService.savePrepared(prepared, share);
+            log.info("Created file share: {} with {} streamed files", share.getShareId(), metadata.size());
+
+            return metadata;
+        } catch (IOException | RuntimeException e) {
+            fileStorageService.discard(prepared);
+            if (share != null) {
+                deleteQuietly(share);
+            }
+            throw translateSizeLimit(e);
+        }
+    }
+
+    /**
+     * Make a completed resumable upload, already copied into storage, the
+     * share's file. Closing the session and saving the file's metadata happen
+     * in one short transaction, so a failure leaves the session to be
+     * completed again.
+     *
+     * @param share The share created for the upload
+     * @param session The upload session
+     * @param storedPath Where the file is stored, as returned by FileStorageService.copyUploadedFile
+     * @return The stored file
+     */
+    @Transactional
+    public FileMetadata attachUploadedFile(Share share, UploadSession session, String storedPath) {
+        if (uploadSessionRepository.deleteSession(session.getId()) == 0) {
+            throw new UploadSessionNotFoundException(session.getId().toString()); // completed or aborted meanwhile
+        }
+        return fileStorageService.storeUploadedFile(share, session, storedPath);
+    }
+
     /**
      * Get share type
      */
     public ShareType getShareType(Share share) {
         return share.getType();
     }
+
+    private String readField(FileItemInput item) throws IOException {
+        try (InputStream inputStream = item.getInputStream()) {
+            byte[] value = inputStream.readNBytes(MAX_FIELD_LENGTH + 1);
+            if (value.length > MAX_FIELD_LENGTH) {
+                throw new InvalidUploadException("Form field " + item.getFieldName() + " is too long");
+            }
+            return new String(value, StandardCharsets.UTF_8);
+        }
+    }
+
+    private void applyField(FileShareRequest request, String name, String value) {
+        try {
+            switch (name) {
+                case "expiryHours" -> request.setExpiryHours(Integer.valueOf(value));
+                case "viewOnce" -> request.setViewOnce(Boolean.valueOf(value));
+                case "password" -> request.setPassword(value);
+                case "notes" -> request.setNotes(value);
+                case "maxDownloads" -> request.setMaxDownloads(Integer.valueOf(value));
+                case "maxViews" -> request.setMaxViews(Integer.valueOf(value));
+                case "clientDecryption" -> request.setClientDecryption(Boolean.valueOf(value));
+                default -> log.debug("Ignoring unknown form field {}", name);
+            }
+        } catch (NumberFormatException e) {
+            throw new InvalidUploadException("Form field " + name + " must be a number");
+        }
+    }
+
+    private void deleteQuietly(Share share) {
+        try {
+            shareService.deleteShare(share.getShareId());
+        } catch (RuntimeException e) {
+            log.warn("Failed to delete share {} of a failed upload", share.getShareId(), e);
+        }
+    }
+
+    /**
+     * Report an upload over the size limits like the regular multipart handling
+     * does; the limit may surface wrapped by the encryption or storage layer
+     */
+    private static RuntimeException translateSizeLimit(Exception e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof FileUploadSizeException sizeException) {
+                return new MaxUploadSizeExceededException(sizeException.getPermitted(), e);
+            }
+        }
+        if (e instanceof RuntimeException runtimeException) {
+            return runtimeException;
+        }
+        if (e instanceof FileUploadException) {
+            return new InvalidUploadException("Malformed multipart request: " + e.getMessage());
+        }
+        return new FileStorageException("Failed to read the upload", e);
+    }
 }
@@ -14,6 +14,7 @@ import com.fluxshare.repository.TextContentRepository;
 import com.fluxshare.util.DateTimeUtil;
 import com.fluxshare.util.IdGeneratorUtil;
 import com.fluxshare.util.PasswordHashUtil;
+import jakarta.servlet.http.HttpServletRequest;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
@@ -21,6 +22,7 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
+import java.util.Base64;
 import java.util.List;
 import java.util.stream.Collectors;
 
@@ -35,7 +37,10 @@ public class ShareService {
     private final ShareRepository shareRepository;
     private final FileMetadataRepository fileMetadataRepository;
     private final TextContentRepository textContentRepository;
-    private final EncryptionService encryptionService;
+    private final FileStorageService fileStorageService;
+    private final StorageUsageService storageUsageService;
+    private final ContentKeyCacheService contentKeyCacheService;
+    private final ContentKeyPoolService contentKeyPoolService;
     private final IdGeneratorUtil idGeneratorUtil;
     private final PasswordHashUtil passwordHashUtil;
     private final DateTimeUtil dateTimeUtil;
@@ -52,7 +57,21 @@ public class ShareService {
     @Transactional
     public Share createShare(ShareType type, Integer expiryHours, Boolean viewOnce, 
                             String password, String notes, Integer maxDownloads, 
-                            Integer maxViews) {
+                            Integer maxViews, boolean clientDecryption) {
+        // Take a pre-generated, already-wrapped content encryption key
+        return createShare(type, expiryHours, viewOnce, password, notes, maxDownloads, maxViews,
+                clientDecryption, contentKeyPoolService.take());
+    }
+
+    /**
+     * Create a new share entity for content already encrypted with the given
+     * key (e.g. a resumable upload); the key is destroyed afterwards
+     */
+    @Transactional
+    public Share createShare(ShareType type, Integer expiryHours, Boolean viewOnce,
+                            String password, String notes, Integer maxDownloads,
+                            Integer maxViews, boolean clientDecryption,
+                            ContentKeyPoolService.PooledKey pooledKey) {
         // Generate unique share ID
         String shareId = generateUniqueShareId();
 
@@ -63,9 +82,8 @@ public class ShareService {
         );
         LocalDateTime expiryTime = dateTimeUtil.calculateExpiryTime(validatedHours);
 
-        // Generate and wrap content encryption key
-        byte[] contentKey = encryptionService.generateContentKey();
-        byte[] wrappedKey = encryptionService.wrapContentKey(contentKey);
+        byte[] contentKey = pooledKey.getContentKey();
+        byte[] wrappedKey = pooledKey.getWrappedKey();
 
         // Hash password if provided
         String passwordHash = password != null && !password.isEmpty() 
@@ -83,9 +101,15 @@ public class ShareService {
                 .notes(notes)
                 .maxDownloads(maxDownloads)
                 .maxViews(maxViews)
+                .clientDecryption(clientDecryption)
                 .build();
 
         share = shareRepository.save(share);
+
+        // Content is stored right after creation, so seed the key cache
+        contentKeyCacheService.put(share, contentKey);
+        pooledKey.destroy();
+
         log.info("Created new share: {} of type {}", shareId, type);
 
         return share;
@@ -145,6 +169,7 @@ public class ShareService {
             log.info("Marking view-once share as expired: {}", share.getShareId());
             share.setHasExpired(true);
             shareRepository.save(share);
+            contentKeyCacheService.evict(share);
         }
     }
 
@@ -160,6 +185,7 @@ public class ShareService {
         if (share.getMaxViews() != null && share.getViewCount() >= share.getMaxViews()) {
             share.setHasExpired(true);
             shareRepository.save(share);
+            contentKeyCacheService.evict(share);
             log.info("Share {} reached max views and is now expired", share.getShareId());
         }
     }
@@ -176,6 +202,7 @@ public class ShareService {
         if (share.getMaxDownloads() != null && share.getDownloadCount() >= share.getMaxDownloads()) {
             share.setHasExpired(true);
             shareRepository.save(share);
+            contentKeyCacheService.evict(share);
             log.info("Share {} reached max downloads and is now expired", share.getShareId());
         }
     }
@@ -186,7 +213,15 @@ public class ShareService {
     @Transactional
     public void deleteShare(String shareId) {
         Share share = getShareByIdWithoutValidation(shareId);
+        if (share.getType() == ShareType.FILE) {
+            // Release stored files (and blob references) before the rows go
+            fileStorageService.deleteFilesForShare(share);
+        } else {
+            textContentRepository.findContentLengthByShare(share).ifPresent(length ->
+                    storageUsageService.recordDeleted(share.getType(), null, length));
+        }
         shareRepository.delete(share);
+        contentKeyCacheService.evict(share);
         log.info("Deleted share: {}", shareId);
     }
 
@@ -208,7 +243,8 @@ public class ShareService {
                 .viewCount(share.getViewCount())
                 .downloadCount(share.getDownloadCount())
                 .maxDownloads(share.getMaxDownloads())
-                .maxViews(share.getMaxViews());
+                .maxViews(share.getMaxViews())
+                .clientDecryption(share.isClientDecryption());
 
         // Add file information if file share
         if (share.getType() == ShareType.FILE) {
@@ -252,10 +288,33 @@ public class ShareService {
     }
 
     /**
-     * Get unwrapped content key for a share
+     * Get unwrapped content key for a share (cached per share)
      */
     public byte[] getContentKey(Share share) {
-        return encryptionService.unwrapContentKey(share.getEncryptedKey());
+        return contentKeyCacheService.getContentKey(share);
+    }
+
+    /**
+     * Build the complete share URL from the request context. For shares the
+     * recipient's client decrypts, the content key goes in the fragment, which
+     * never reaches the server.
+     */
+    public String buildShareUrl(HttpServletRequest request, Share share) {
+        String scheme = request.getScheme();
+        String serverName = request.getServerName();
+        int serverPort = request.getServerPort();
+
+        String portPart = "";
+        if ((scheme.equals("http") && serverPort != 80) ||
+            (scheme.equals("https") && serverPort != 443)) {
+            portPart = ":" + serverPort;
+        }
+
+        String shareUrl = scheme + "://" + serverName + portPart + "/share/" + share.getShareId();
+        if (share.isClientDecryption()) {
+            shareUrl += "#key=" + Base64.getUrlEncoder().withoutPadding().encodeToString(getContentKey(share));
+        }
+        return shareUrl;
     }
 
     /**
@@ -0,0 +1,135 @@
+package com.fluxshare.service;
+
+import com.fluxshare.entity.FileMetadata;
+import com.fluxshare.repository.FileMetadataRepository;
+import com.fluxshare.util.StoragePathUtil;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Service moving stored files into the configured storage layout while the
+ * application keeps serving them.
+ *
+ * Each file is first copied (hard-linked on local disk) to its new location,
+ * then its metadata is switched with a conditional update, and only then is
+ * the old path removed. Readers holding stale metadata find the file again through
+ * the database, and a concurrent delete makes the update fail, in which case
+ * the new copy is dropped. Files stay on their storage volume, and
+ * deduplicated blobs keep their paths.
+ */
+@Service
+@Slf4j
+public class StorageMigrationService {
+
+    private static final UUID FIRST_ID = new UUID(0L, 0L);
+
+    private final FileMetadataRepository fileMetadataRepository;
+    private final BlobStore blobStore;
+    private final StoragePathUtil storagePathUtil;
+    private final StorageVolumeService storageVolumeService;
+    private final int batchSize;
+
+    private UUID cursor = FIRST_ID;
+    private int movedInPass;
+    private volatile boolean complete;
+
+    public StorageMigrationService(
+            FileMetadataRepository fileMetadataRepository,
+            BlobStore blobStore,
+            StoragePathUtil storagePathUtil,
+            StorageVolumeService storageVolumeService,
+            @Value("${fluxshare.storage.migration.batch-size:500}") int batchSize) {
+        this.fileMetadataRepository = fileMetadataRepository;
+        this.blobStore = blobStore;
+        this.storagePathUtil = storagePathUtil;
+        this.storageVolumeService = storageVolumeService;
+        this.batchSize = Math.max(1, batchSize);
+    }
+
+    /**
+     * Check if a full pass found nothing left to move
+     */
+    public boolean isComplete() {
+        return complete;
+    }
+
+    /**
+     * Migrate the next batch of files, continuing where the previous batch stopped
+     *
+     * @return Number of files moved in this batch
+     */
+    public synchronized int migrateNextBatch() {
+        if (complete) {
+            return 0;
+        }
+
+        List<FileMetadata> batch = fileMetadataRepository.findStandaloneFilesAfter(cursor, PageRequest.ofSize(batchSize));
+        int moved = 0;
+
+        for (FileMetadata file : batch) {
+            try {
+                if (migrate(file)) {
+                    moved++;
+                }
+            } catch (RuntimeException e) {
+                log.error("Failed to migrate file {} at {}", file.getId(), file.getStoredPath(), e);
+            }
+        }
+        movedInPass += moved;
+
+        if (batch.size() < batchSize) {
+            // End of the table: stop once a whole pass had nothing to do
+            log.info("Storage migration pass finished, {} files moved", movedInPass);
+            complete = movedInPass == 0;
+            cursor = FIRST_ID;
+            movedInPass = 0;
+        } else {
+            cursor = batch.get(batch.size() - 1).getId();
+        }
+
+        return moved;
+    }
+
+    /**
+     * Move one file to its layout path
+     *
+     * @return true if the file was moved
+     */
+    private boolean migrate(FileMetadata file) {
+        String source = file.getStoredPath();
+        Path root = storageVolumeService.rootOf(file.getVolume());
+        if (root == null) {
+            return false; // volume no longer configured
+        }
+        String target = storagePathUtil.filePath(root, file.getShare().getShareId(),
+                Paths.get(source).getFileName().toString()).toString();
+        if (source.equals(target)) {
+            return false;
+        }
+        if (!blobStore.exists(source)) {
+            log.warn("Stored file for {} is missing, not migrating: {}", file.getId(), source);
+            return false;
+        }
+
+        blobStore.copy(source, target);
+
+        if (fileMetadataRepository.updateStoredPath(file.getId(), source, target) == 0) {
+            // Deleted or moved by someone else since the batch was read
+            if (!target.equals(fileMetadataRepository.findStoredPathById(file.getId()).orElse(null))) {
+                blobStore.delete(target);
+            }
+            return false;
+        }
+
+        blobStore.delete(source);
+        log.debug("Migrated file {} to {}", file.getId(), target);
+        return true;
+    }
+}
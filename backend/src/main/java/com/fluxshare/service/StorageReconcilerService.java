@@ -0,0 +1,581 @@
+package com.fluxshare.service;
+
+import com.fluxshare.entity.Blob;
+import com.fluxshare.entity.FileMetadata;
+import com.fluxshare.repository.BlobRepository;
+import com.fluxshare.repository.FileMetadataRepository;
+import com.fluxshare.repository.PendingDeletionRepository;
+import com.fluxshare.repository.UploadSessionRepository;
+import com.fluxshare.util.StoragePathUtil;
+import com.google.common.util.concurrent.RateLimiter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Service reconciling stored data with the metadata pointing at it.
+ *
+ * Two differences are looked for: orphans, stored files no row references
+ * (left behind by a crash between writing a file and committing its row),
+ * and dangling rows, files, packed segments or blobs whose data is gone.
+ * Orphans are found by walking the storage tree in parallel and looking the
+ * files up in batches; dangling rows by streaming the metadata tables with
+ * keyset pagination and checking that each row's data exists.
+ *
+ * Every file system entry visited and every existence check draws from an
+ * I/O budget (operations per second), so a run can happen while downloads
+ * are served. Files changed within the minimum orphan age are skipped, as
+ * an upload in progress or a migration copy has no row yet. In fix mode
+ * orphans are queued for deletion and dangling rows are deleted after a
+ * second check, unless so much of the store looks broken that a wrong
+ * base path or an unmounted volume is more likely than real damage.
+ */
+@Service
+@Slf4j
+public class StorageReconcilerService {
+
+    private static final UUID FIRST_ID = new UUID(0L, 0L);
+    private static final int MAX_LOGGED_ITEMS = 100;
+
+    private final FileMetadataRepository fileMetadataRepository;
+    private final BlobRepository blobRepository;
+    private final PendingDeletionRepository pendingDeletionRepository;
+    private final UploadSessionRepository uploadSessionRepository;
+    private final DeletionQueueService deletionQueueService;
+    private final BlobStore blobStore;
+    private final StoragePathUtil storagePathUtil;
+    private final StorageVolumeService storageVolumeService;
+    private final boolean localBackend;
+    private final Path tempPath;
+    private final int threads;
+    private final int batchSize;
+    private final double ioOpsPerSecond;
+    private final long orphanMinAgeMillis;
+    private final double maxFixRatio;
+    private final int maxFixes;
+
+    public StorageReconcilerService(
+            FileMetadataRepository fileMetadataRepository,
+            BlobRepository blobRepository,
+            PendingDeletionRepository pendingDeletionRepository,
+            UploadSessionRepository uploadSessionRepository,
+            DeletionQueueService deletionQueueService,
+            BlobStore blobStore,
+            StoragePathUtil storagePathUtil,
+            StorageVolumeService storageVolumeService,
+            @Value("${fluxshare.storage.backend:local}") String backend,
+            @Value("${fluxshare.storage.temp-path:./storage/temp}") String tempPath,
+            @Value("${fluxshare.storage.reconcile.threads:2}") int threads,
+            @Value("${fluxshare.storage.reconcile.batch-size:500}") int batchSize,
+            @Value("${fluxshare.storage.reconcile.io-ops-per-second:200}") double ioOpsPerSecond,
+            @Value("${fluxshare.storage.reconcile.orphan-min-age-ms:86400000}") long orphanMinAgeMillis,
+            @Value("${fluxshare.storage.reconcile.max-fix-ratio:0.5}") double maxFixRatio,
+            @Value("${fluxshare.storage.reconcile.max-fixes:10000}") int maxFixes) {
+        this.fileMetadataRepository = fileMetadataRepository;
+        this.blobRepository = blobRepository;
+        this.pendingDeletionRepository = pendingDeletionRepository;
+        this.uploadSessionRepository = uploadSessionRepository;
+        this.deletionQueueService = deletionQueueService;
+        this.blobStore = blobStore;
+        this.storagePathUtil = storagePathUtil;
+        this.storageVolumeService = storageVolumeService;
+        this.localBackend = "local".equalsIgnoreCase(backend);
+        this.tempPath = Paths.get(tempPath);
+        this.threads = Math.max(1, threads);
+        this.batchSize = Math.max(1, batchSize);
+        this.ioOpsPerSecond = ioOpsPerSecond;
+        this.orphanMinAgeMillis = orphanMinAgeMillis;
+        this.maxFixRatio = maxFixRatio;
+        this.maxFixes = maxFixes;
+    }
+
+    /**
+     * Compare storage with metadata and report, or fix, the differences
+     *
+     * @param fix Whether to delete orphans and dangling rows
+     * @return What was found and fixed
+     */
+    public synchronized ReconcileReport reconcile(boolean fix) {
+        long startedAt = System.currentTimeMillis();
+        ReconcileReport report = new ReconcileReport(maxFixes);
+        RateLimiter ioBudget = RateLimiter.create(ioOpsPerSecond);
+        ForkJoinPool pool = new ForkJoinPool(threads);
+
+        try {
+            if (localBackend) {
+                storageVolumeService.refresh();
+                findOrphans(report, ioBudget, pool);
+            } else {
+                log.info("Skipping orphan scan: the {} backend keeps no local storage tree", blobStore.getType());
+            }
+            findDanglingRows(report, ioBudget, pool);
+        } finally {
+            pool.shutdownNow();
+        }
+
+        if (fix) {
+            fixOrphans(report);
+            fixDanglingRows(report);
+        }
+
+        log.info("Storage reconciliation ({}) finished in {} ms: {} files scanned, {} orphans ({} bytes); "
+                        + "{} rows scanned, {} dangling; {} fixed, {} errors",
+                fix ? "fix" : "report", System.currentTimeMillis() - startedAt,
+                report.getFilesScanned(), report.getOrphanCount(), report.getOrphanBytes(),
+                report.getRowsScanned(), report.getDanglingCount(), report.getFixed(), report.getErrors());
+        return report;
+    }
+
+    /**
+     * Walk the storage tree of every available volume (packed segments
+     * excluded; compaction owns them) and the staging directory in parallel,
+     * looking up old files in batches
+     */
+    private void findOrphans(ReconcileReport report, RateLimiter ioBudget, ForkJoinPool pool) {
+        Path basePath = storagePathUtil.getBasePath();
+        OrphanCollector collector = new OrphanCollector(report);
+
+        List<DirectoryScan> roots = new ArrayList<>();
+        if (Files.isDirectory(basePath)) {
+            roots.add(new DirectoryScan(basePath, basePath.resolve(PackedStorageService.PACK_DIRECTORY),
+                    collector, ioBudget, report));
+        }
+        for (StorageVolumeService.Volume volume : storageVolumeService.getVolumes()) {
+            if (!volume.getRoot().equals(basePath) && volume.isAvailable() && Files.isDirectory(volume.getRoot())) {
+                roots.add(new DirectoryScan(volume.getRoot(), null, collector, ioBudget, report));
+            }
+        }
+        if (Files.isDirectory(tempPath) && !tempPath.toAbsolutePath().normalize()
+                .startsWith(basePath.toAbsolutePath().normalize())) {
+            roots.add(new DirectoryScan(tempPath, null, collector, ioBudget, report));
+        }
+
+        for (DirectoryScan root : roots) {
+            pool.invoke(root);
+        }
+        collector.flush();
+    }
+
+    /**
+     * Stream file rows, packed segments and blobs, checking that their data exists
+     */
+    private void findDanglingRows(ReconcileReport report, RateLimiter ioBudget, ForkJoinPool pool) {
+        UUID cursor = FIRST_ID;
+        List<FileMetadata> files;
+        do {
+            files = fileMetadataRepository.findStandaloneFilesAfter(cursor, PageRequest.ofSize(batchSize));
+            List<Boolean> present = checkExist(files.stream().map(FileMetadata::getStoredPath).toList(), ioBudget, pool);
+            for (int i = 0; i < files.size(); i++) {
+                report.rowScanned();
+                // Files on an unmounted volume are not gone; their rows must survive until it is back
+                if (!present.get(i) && storageVolumeService.isAvailable(files.get(i).getVolume())) {
+                    report.addDanglingFile(files.get(i).getId(), files.get(i).getStoredPath());
+                }
+            }
+            if (!files.isEmpty()) {
+                cursor = files.get(files.size() - 1).getId();
+            }
+        } while (files.size() == batchSize);
+
+        List<String> segments = fileMetadataRepository.findPackedSegmentPaths();
+        List<Boolean> segmentsPresent = checkExist(segments, ioBudget, pool);
+        for (int i = 0; i < segments.size(); i++) {
+            report.rowScanned();
+            if (!segmentsPresent.get(i)) {
+                report.addDanglingSegment(segments.get(i));
+            }
+        }
+
+        cursor = FIRST_ID;
+        List<Blob> blobs;
+        do {
+            blobs = blobRepository.findBlobsAfter(cursor, PageRequest.ofSize(batchSize));
+            List<Boolean> present = checkExist(blobs.stream().map(Blob::getStoredPath).toList(), ioBudget, pool);
+            for (int i = 0; i < blobs.size(); i++) {
+                report.rowScanned();
+                if (!present.get(i)) {
+                    report.addDanglingBlob(blobs.get(i).getId(), blobs.get(i).getStoredPath());
+                }
+            }
+            if (!blobs.isEmpty()) {
+                cursor = blobs.get(blobs.size() - 1).getId();
+            }
+        } while (blobs.size() == batchSize);
+    }
+
+    /**
+     * Check a page of storage keys in parallel; keys that cannot be checked count as present
+     */
+    private List<Boolean> checkExist(List<String> keys, RateLimiter ioBudget, ForkJoinPool pool) {
+        List<Callable<Boolean>> checks = new ArrayList<>(keys.size());
+        for (String key : keys) {
+            checks.add(() -> {
+                ioBudget.acquire();
+                return blobStore.exists(key);
+            });
+        }
+
+        List<Boolean> present = new ArrayList<>(keys.size());
+        for (Future<Boolean> check : pool.invokeAll(checks)) {
+            try {
+                present.add(check.get());
+            } catch (ExecutionException e) {
+                log.warn("Failed to check stored data", e.getCause());
+                present.add(true);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                present.add(true);
+            }
+        }
+        return present;
+    }
+
+    private void fixOrphans(ReconcileReport report) {
+        if (!fixAllowed("orphaned files", report.getOrphanCount(), report.getFilesScanned())) {
+            return;
+        }
+        for (String orphan : report.getOrphans()) {
+            deletionQueueService.enqueue(orphan);
+            report.fixedOne();
+        }
+    }
+
+    /**
+     * Delete dangling rows, checking again first: the data may have been
+     * moved or written since the scan
+     */
+    private void fixDanglingRows(ReconcileReport report) {
+        if (!fixAllowed("dangling rows", report.getDanglingCount(), report.getRowsScanned())) {
+            return;
+        }
+
+        for (Map.Entry<UUID, String> file : report.getDanglingFiles().entrySet()) {
+            if (!blobStore.exists(file.getValue())
+                    && fileMetadataRepository.deleteByIdAndStoredPath(file.getKey(), file.getValue()) > 0) {
+                log.warn("Deleted file {} whose data at {} is missing", file.getKey(), file.getValue());
+                report.fixedOne();
+            }
+        }
+
+        for (String segment : report.getDanglingSegments()) {
+            if (!blobStore.exists(segment)) {
+                int deleted = fileMetadataRepository.deletePackedEntries(segment);
+                log.warn("Deleted {} packed files whose segment {} is missing", deleted, segment);
+                report.fixedOne();
+            }
+        }
+
+        for (Map.Entry<UUID, String> blob : report.getDanglingBlobs().entrySet()) {
+            if (!blobStore.exists(blob.getValue())) {
+                int deleted = fileMetadataRepository.deleteByBlobId(blob.getKey());
+                blobRepository.deleteById(blob.getKey());
+                log.warn("Deleted blob {} and its {} files; its data at {} is missing",
+                        blob.getKey(), deleted, blob.getValue());
+                report.fixedOne();
+            }
+        }
+    }
+
+    private boolean fixAllowed(String what, long found, long scanned) {
+        if (found == 0) {
+            return false;
+        }
+        if (found > scanned * maxFixRatio) {
+            log.error("Not fixing {}: {} of {} scanned look broken, which points at a wrong base path "
+                    + "or missing volume rather than damage", what, found, scanned);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Get when a file was last changed: the later of its modification time
+     * and, where available, its inode change time (a hard link made by a
+     * storage migration keeps the old modification time)
+     */
+    private static long changedAt(Path file, BasicFileAttributes attributes) {
+        long changed = attributes.lastModifiedTime().toMillis();
+        try {
+            Object ctime = Files.getAttribute(file, "unix:ctime", LinkOption.NOFOLLOW_LINKS);
+            if (ctime instanceof FileTime fileTime) {
+                changed = Math.max(changed, fileTime.toMillis());
+            }
+        } catch (UnsupportedOperationException | IllegalArgumentException | IOException e) {
+            // no unix attribute view; the modification time has to do
+        }
+        return changed;
+    }
+
+    /**
+     * Lists one directory, forking a task per subdirectory
+     */
+    private class DirectoryScan extends RecursiveAction {
+        private final Path directory;
+        private final Path excluded;
+        private final OrphanCollector collector;
+        private final RateLimiter ioBudget;
+        private final ReconcileReport report;
+
+        DirectoryScan(Path directory, Path excluded, OrphanCollector collector, RateLimiter ioBudget,
+                      ReconcileReport report) {
+            this.directory = directory;
+            this.excluded = excluded;
+            this.collector = collector;
+            this.ioBudget = ioBudget;
+            this.report = report;
+        }
+
+        @Override
+        protected void compute() {
+            long cutoff = System.currentTimeMillis() - orphanMinAgeMillis;
+            List<DirectoryScan> subdirectories = new ArrayList<>();
+
+            try (DirectoryStream<Path> entries = Files.newDirectoryStream(directory)) {
+                for (Path entry : entries) {
+                    ioBudget.acquire();
+                    BasicFileAttributes attributes;
+                    try {
+                        attributes = Files.readAttributes(entry, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+                    } catch (IOException e) {
+                        continue; // deleted while listing
+                    }
+
+                    if (attributes.isDirectory()) {
+                        if (!entry.equals(excluded)) {
+                            subdirectories.add(new DirectoryScan(entry, excluded, collector, ioBudget, report));
+                        }
+                    } else if (attributes.isRegularFile()
+                            && !entry.getFileName().toString().equals(StorageVolumeService.MARKER_FILE)) {
+                        report.fileScanned();
+                        if (changedAt(entry, attributes) < cutoff) {
+                            collector.add(entry.toString(), attributes.size());
+                        }
+                    }
+                }
+            } catch (IOException e) {
+                log.warn("Failed to list directory {}", directory, e);
+                report.error();
+            }
+
+            invokeAll(subdirectories);
+        }
+    }
+
+    /**
+     * Gathers old files from all walker threads and looks them up a batch at a time
+     */
+    private class OrphanCollector {
+        private final Queue<Candidate> candidates = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger queued = new AtomicInteger();
+        private final ReconcileReport report;
+        private final Set<Path> queuedDirectories;
+
+        OrphanCollector(ReconcileReport report) {
+            this.report = report;
+            this.queuedDirectories = new HashSet<>();
+            for (String directory : pendingDeletionRepository.findDirectoryKeys()) {
+                queuedDirectories.add(Paths.get(directory));
+            }
+        }
+
+        void add(String key, long size) {
+            candidates.add(new Candidate(key, size));
+            if (queued.incrementAndGet() >= batchSize) {
+                check();
+            }
+        }
+
+        void flush() {
+            while (!candidates.isEmpty()) {
+                check();
+            }
+        }
+
+        private void check() {
+            List<Candidate> batch = new ArrayList<>(batchSize);
+            Candidate candidate;
+            while (batch.size() < batchSize && (candidate = candidates.poll()) != null) {
+                batch.add(candidate);
+            }
+            queued.addAndGet(-batch.size());
+            if (batch.isEmpty()) {
+                return;
+            }
+
+            List<String> keys = batch.stream().map(Candidate::key).toList();
+            Set<String> referenced = new HashSet<>(fileMetadataRepository.findStoredPathsIn(keys));
+            referenced.addAll(blobRepository.findStoredPathsIn(keys));
+            referenced.addAll(pendingDeletionRepository.findStorageKeysIn(keys));
+            referenced.addAll(uploadSessionRepository.findStagingPathsIn(keys)); // uploads still in progress
+
+            for (Candidate entry : batch) {
+                if (!referenced.contains(entry.key()) && !inQueuedDirectory(Paths.get(entry.key()))) {
+                    report.addOrphan(entry.key(), entry.size());
+                }
+            }
+        }
+
+        private boolean inQueuedDirectory(Path file) {
+            for (Path parent = file.getParent(); parent != null; parent = parent.getParent()) {
+                if (queuedDirectories.contains(parent)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    private record Candidate(String key, long size) {
+    }
+
+    /**
+     * Findings of a reconciliation run. Counts are complete; the lists kept
+     * for fixing are capped.
+     */
+    public static class ReconcileReport {
+        private final int maxItems;
+        private final AtomicLong filesScanned = new AtomicLong();
+        private final AtomicLong rowsScanned = new AtomicLong();
+        private final AtomicLong orphanCount = new AtomicLong();
+        private final AtomicLong orphanBytes = new AtomicLong();
+        private final AtomicLong danglingCount = new AtomicLong();
+        private final AtomicLong fixed = new AtomicLong();
+        private final AtomicLong errors = new AtomicLong();
+        private final List<String> orphans = Collections.synchronizedList(new ArrayList<>());
+        private final Map<UUID, String> danglingFiles = Collections.synchronizedMap(new LinkedHashMap<>());
+        private final List<String> danglingSegments = Collections.synchronizedList(new ArrayList<>());
+        private final Map<UUID, String> danglingBlobs = Collections.synchronizedMap(new LinkedHashMap<>());
+
+        public ReconcileReport(int maxItems) {
+            this.maxItems = maxItems;
+        }
+
+        void fileScanned() {
+            filesScanned.incrementAndGet();
+        }
+
+        void rowScanned() {
+            rowsScanned.incrementAndGet();
+        }
+
+        void fixedOne() {
+            fixed.incrementAndGet();
+        }
+
+        void error() {
+            errors.incrementAndGet();
+        }
+
+        void addOrphan(String key, long size) {
+            long count = orphanCount.incrementAndGet();
+            orphanBytes.addAndGet(size);
+            logItem(count, "Orphaned file {} ({} bytes) has no metadata", key, size);
+            if (count <= maxItems) {
+                orphans.add(key);
+            }
+        }
+
+        void addDanglingFile(UUID id, String storedPath) {
+            if (keep("File {} points at missing data {}", id, storedPath)) {
+                danglingFiles.put(id, storedPath);
+            }
+        }
+
+        void addDanglingSegment(String segmentPath) {
+            if (keep("Packed segment {} is referenced but missing", segmentPath)) {
+                danglingSegments.add(segmentPath);
+            }
+        }
+
+        void addDanglingBlob(UUID id, String storedPath) {
+            if (keep("Blob {} points at missing data {}", id, storedPath)) {
+                danglingBlobs.put(id, storedPath);
+            }
+        }
+
+        private boolean keep(String message, Object... arguments) {
+            long count = danglingCount.incrementAndGet();
+            logItem(count, message, arguments);
+            return count <= maxItems;
+        }
+
+        private static void logItem(long count, String message, Object... arguments) {
+            if (count <= MAX_LOGGED_ITEMS) {
+                log.warn(message, arguments);
+            } else if (count == MAX_LOGGED_ITEMS + 1) {
+                log.warn("More differences found, only counting them from now on");
+            }
+        }
+
+        public long getFilesScanned() {
+            return filesScanned.get();
+        }
+
+        public long getRowsScanned() {
+            return rowsScanned.get();
+        }
+
+        public long getOrphanCount() {
+            return orphanCount.get();
+        }
+
+        public long getOrphanBytes() {
+            return orphanBytes.get();
+        }
+
+        public long getDanglingCount() {
+            return danglingCount.get();
+        }
+
+        public long getFixed() {
+            return fixed.get();
+        }
+
+        public long getErrors() {
+            return errors.get();
+        }
+
+        public List<String> getOrphans() {
+            return orphans;
+        }
+
+        public Map<UUID, String> getDanglingFiles() {
+            return danglingFiles;
+        }
+
+        public List<String> getDanglingSegments() {
+            return danglingSegments;
+        }
+
+        public Map<UUID, String> getDanglingBlobs() {
+            return danglingBlobs;
+        }
+    }
+}
@@ -0,0 +1,427 @@
+package com.fluxshare.service;
+
+import com.fluxshare.entity.StorageUsage;
+import com.fluxshare.enums.ShareType;
+import com.fluxshare.exception.StorageQuotaExceededException;
+import com.fluxshare.repository.FileMetadataRepository;
+import com.fluxshare.repository.StorageUsageRepository;
+import com.fluxshare.repository.TextContentRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Service keeping storage usage counters in memory.
+ *
+ * Counters exist globally, per share type and per storage volume. Stores and
+ * deletes adjust them once their transaction commits, so reading usage never
+ * scans the metadata tables. Each node checkpoints its pending deltas by
+ * adding them to the storage_usage rows and reloads the rows as its baseline,
+ * which folds in the other nodes' checkpoints. A periodic recount from the
+ * metadata corrects any drift (e.g. rows removed by the reconciler).
+ * Text and code content lives in the database, so it has no volume counter.
+ *
+ * Recounts are safe with several nodes: the recount moves every row to a new
+ * generation (its start time) and adds the difference between the metadata
+ * totals and the row values at that moment, never overwriting. Pending deltas
+ * are kept by the time they were applied, and a checkpoint discards those
+ * older than the row's generation, as the recount has already counted them.
+ * Only deltas committed in the few milliseconds between the claim and the
+ * metadata scan can still be counted twice.
+ */
+@Service
+@Slf4j
+public class StorageUsageService {
+
+    private static final String GLOBAL = "global";
+    private static final String TYPE_PREFIX = "type:";
+    private static final String VOLUME_PREFIX = "volume:";
+
+    /** A recount started by another node this recently is not repeated (e.g. the same cron on every node) */
+    private static final long RECOUNT_MIN_SPACING_MILLIS = 10 * 60 * 1000L;
+
+    private final StorageUsageRepository storageUsageRepository;
+    private final FileMetadataRepository fileMetadataRepository;
+    private final TextContentRepository textContentRepository;
+    private final MeterRegistry meterRegistry;
+    private final long maxBytes;
+
+    private final Map<String, Usage> counters = new ConcurrentHashMap<>();
+
+    public StorageUsageService(
+            StorageUsageRepository storageUsageRepository,
+            FileMetadataRepository fileMetadataRepository,
+            TextContentRepository textContentRepository,
+            MeterRegistry meterRegistry,
+            @Value("${fluxshare.storage.usage.max-bytes:0}") long maxBytes) {
+        this.storageUsageRepository = storageUsageRepository;
+        this.fileMetadataRepository = fileMetadataRepository;
+        this.textContentRepository = textContentRepository;
+        this.meterRegistry = meterRegistry;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Load the checkpointed counters, counting from the metadata on first start
+     */
+    @PostConstruct
+    public void initialize() {
+        try {
+            if (storageUsageRepository.count() == 0) {
+                recount();
+            } else {
+                reloadBaseline();
+            }
+            log.info("Storage usage loaded: {} files, {} bytes", getFileCount(), getByteCount());
+        } catch (Exception e) {
+            log.warn("Failed to load storage usage, counters start at zero until the next recount", e);
+        }
+    }
+
+    /**
+     * Count stored content once the current transaction commits
+     *
+     * @param type Share type of the content
+     * @param volume Volume holding the data, or null for content kept in the database
+     * @param bytes Content size in bytes
+     */
+    public void recordStored(ShareType type, String volume, long bytes) {
+        afterCommit(type, volume, 1, bytes);
+    }
+
+    /**
+     * Uncount deleted content once the current transaction commits
+     *
+     * @param type Share type of the content
+     * @param volume Volume holding the data, or null for content kept in the database
+     * @param bytes Content size in bytes
+     */
+    public void recordDeleted(ShareType type, String volume, long bytes) {
+        afterCommit(type, volume, -1, -bytes);
+    }
+
+    /**
+     * Reject an upload that would exceed the configured capacity
+     *
+     * @param incomingBytes Size of the upload
+     */
+    public void checkCapacity(long incomingBytes) {
+        if (maxBytes > 0 && getByteCount() + incomingBytes > maxBytes) {
+            throw new StorageQuotaExceededException("Storage capacity exceeded. Please try again later.");
+        }
+    }
+
+    public long getFileCount() {
+        return usage(GLOBAL).files();
+    }
+
+    public long getByteCount() {
+        return usage(GLOBAL).bytes();
+    }
+
+    public long getByteCount(ShareType type) {
+        return usage(TYPE_PREFIX + type).bytes();
+    }
+
+    public long getVolumeFileCount(String volume) {
+        return usage(VOLUME_PREFIX + volume).files();
+    }
+
+    public long getVolumeByteCount(String volume) {
+        return usage(VOLUME_PREFIX + volume).bytes();
+    }
+
+    /**
+     * Add the pending deltas to the stored counters and reload them as the baseline
+     */
+    public synchronized void checkpoint() {
+        LocalDateTime now = LocalDateTime.now();
+        Map<String, StorageUsage> rows = rowsById(storageUsageRepository.findAll());
+        StorageUsage global = rows.get(GLOBAL);
+        long currentGeneration = global != null ? global.getGenerationOrZero() : 0L;
+
+        for (Map.Entry<String, Usage> entry : counters.entrySet()) {
+            Usage usage = entry.getValue();
+            NavigableMap<Long, long[]> pending = usage.drain();
+            if (pending.isEmpty()) {
+                continue;
+            }
+            try {
+                flush(entry.getKey(), pending, rows.get(entry.getKey()), currentGeneration, now);
+            } catch (RuntimeException e) {
+                usage.restore(pending);
+                throw e;
+            }
+        }
+        reloadBaseline();
+    }
+
+    /**
+     * Recount all counters from the metadata and correct the stored checkpoints.
+     * Skipped when another node has just recounted.
+     */
+    public synchronized void recount() {
+        checkpoint();
+
+        long generation = System.currentTimeMillis();
+        Map<String, StorageUsage> claimed = Map.of();
+        if (storageUsageRepository.count() > 0) {
+            List<StorageUsage> rows = storageUsageRepository.claimRecount(generation,
+                    generation - RECOUNT_MIN_SPACING_MILLIS);
+            if (rows.isEmpty()) {
+                log.info("Storage usage was just recounted by another node, skipping");
+                reloadBaseline();
+                return;
+            }
+            claimed = rowsById(rows);
+        }
+
+        Map<String, long[]> totals = new HashMap<>();
+        totals.put(GLOBAL, new long[2]);
+        for (ShareType type : ShareType.values()) {
+            totals.put(TYPE_PREFIX + type, new long[2]);
+        }
+        for (String key : claimed.keySet()) {
+            totals.put(key, new long[2]); // counters nothing is stored under any more drop to zero
+        }
+        for (String key : counters.keySet()) {
+            totals.put(key, new long[2]);
+        }
+
+        for (Object[] row : fileMetadataRepository.sumUsage()) {
+            String volume = row[0] != null ? (String) row[0] : StorageVolumeService.DEFAULT_VOLUME;
+            long files = ((Number) row[1]).longValue();
+            long bytes = ((Number) row[2]).longValue();
+            add(totals, TYPE_PREFIX + ShareType.FILE, files, bytes);
+            add(totals, VOLUME_PREFIX + volume, files, bytes);
+            add(totals, GLOBAL, files, bytes);
+        }
+        for (Object[] row : textContentRepository.sumUsage()) {
+            ShareType type = Boolean.TRUE.equals(row[0]) ? ShareType.CODE : ShareType.TEXT;
+            long files = ((Number) row[1]).longValue();
+            long bytes = ((Number) row[2]).longValue();
+            add(totals, TYPE_PREFIX + type, files, bytes);
+            add(totals, GLOBAL, files, bytes);
+        }
+
+        // Correct by the difference to the claimed values, so deltas other nodes
+        // checkpoint meanwhile (all of the new generation) are kept
+        LocalDateTime now = LocalDateTime.now();
+        for (Map.Entry<String, long[]> entry : totals.entrySet()) {
+            StorageUsage row = claimed.get(entry.getKey());
+            long[] total = entry.getValue();
+            long files = total[0] - (row != null ? row.getFileCount() : 0);
+            long bytes = total[1] - (row != null ? row.getByteCount() : 0);
+            if (storageUsageRepository.addDelta(entry.getKey(), files, bytes, now, generation) == 0) {
+                if (storageUsageRepository.existsById(entry.getKey())) {
+                    log.warn("Storage usage counter {} was moved on by another recount", entry.getKey());
+                    continue;
+                }
+                storageUsageRepository.save(StorageUsage.builder()
+                        .id(entry.getKey())
+                        .fileCount(total[0])
+                        .byteCount(total[1])
+                        .updatedAt(now)
+                        .generation(generation)
+                        .build());
+            }
+        }
+        reloadBaseline();
+        log.info("Recounted storage usage: {} files, {} bytes", getFileCount(), getByteCount());
+    }
+
+    /**
+     * Checkpoint pending deltas on shutdown
+     */
+    @PreDestroy
+    public void shutdown() {
+        try {
+            checkpoint();
+        } catch (Exception e) {
+            log.warn("Failed to checkpoint storage usage on shutdown", e);
+        }
+    }
+
+    /**
+     * Add the deltas of a counter that no recount has counted yet, retrying
+     * when a recount moves the row to a new generation meanwhile
+     *
+     * @param pending Deltas by the time they were applied
+     * @param row The stored counter as last read, or null if it had no row
+     * @param currentGeneration Generation for a counter that has no row yet
+     */
+    private void flush(String key, NavigableMap<Long, long[]> pending, StorageUsage row,
+                       long currentGeneration, LocalDateTime now) {
+        while (true) {
+            long generation = row != null ? row.getGenerationOrZero() : currentGeneration;
+            long files = 0;
+            long bytes = 0;
+            for (long[] delta : pending.tailMap(generation, true).values()) {
+                files += delta[0];
+                bytes += delta[1];
+            }
+            if (files == 0 && bytes == 0) {
+                return;
+            }
+            if (storageUsageRepository.addDelta(key, files, bytes, now, generation) > 0) {
+                return;
+            }
+
+            StorageUsage current = storageUsageRepository.findById(key).orElse(null);
+            if (current == null) {
+                storageUsageRepository.save(StorageUsage.builder()
+                        .id(key)
+                        .fileCount(files)
+                        .byteCount(bytes)
+                        .updatedAt(now)
+                        .generation(generation)
+                        .build());
+                return;
+            }
+            row = current;
+        }
+    }
+
+    private static Map<String, StorageUsage> rowsById(List<StorageUsage> rows) {
+        return rows.stream().collect(Collectors.toMap(StorageUsage::getId, Function.identity()));
+    }
+
+    private void reloadBaseline() {
+        for (StorageUsage row : storageUsageRepository.findAll()) {
+            Usage usage = usage(row.getId());
+            usage.baseFiles.set(row.getFileCount());
+            usage.baseBytes.set(row.getByteCount());
+        }
+    }
+
+    private void afterCommit(ShareType type, String volume, long files, long bytes) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            apply(type, volume, files, bytes);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                apply(type, volume, files, bytes);
+            }
+        });
+    }
+
+    private void apply(ShareType type, String volume, long files, long bytes) {
+        usage(GLOBAL).add(files, bytes);
+        usage(TYPE_PREFIX + type).add(files, bytes);
+        if (volume != null) {
+            usage(VOLUME_PREFIX + volume).add(files, bytes);
+        }
+    }
+
+    private Usage usage(String key) {
+        return counters.computeIfAbsent(key, this::register);
+    }
+
+    private Usage register(String key) {
+        Usage usage = new Usage();
+        int separator = key.indexOf(':');
+        String scope = separator < 0 ? key : key.substring(0, separator);
+        String name = separator < 0 ? "all" : key.substring(separator + 1);
+
+        Gauge.builder("fluxshare.storage.usage.files", usage, Usage::files)
+                .description("Stored files and text shares")
+                .tag("scope", scope)
+                .tag("name", name)
+                .register(meterRegistry);
+        Gauge.builder("fluxshare.storage.usage.bytes", usage, Usage::bytes)
+                .description("Stored content size in bytes (before compression and encryption)")
+                .tag("scope", scope)
+                .tag("name", name)
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        return usage;
+    }
+
+    private static void add(Map<String, long[]> totals, String key, long files, long bytes) {
+        long[] total = totals.computeIfAbsent(key, k -> new long[2]);
+        total[0] += files;
+        total[1] += bytes;
+    }
+
+    /**
+     * One counter: the last checkpoint plus this node's deltas since
+     */
+    private static class Usage {
+        private final AtomicLong baseFiles = new AtomicLong();
+        private final AtomicLong baseBytes = new AtomicLong();
+        private final AtomicLong pendingFiles = new AtomicLong();
+        private final AtomicLong pendingBytes = new AtomicLong();
+        // Pending deltas by the epoch millis they were applied at, to tell which a recount has counted
+        private final Map<Long, long[]> pendingByTime = new ConcurrentHashMap<>();
+
+        void add(long files, long bytes) {
+            pendingByTime.merge(System.currentTimeMillis(), new long[] {files, bytes}, Usage::sum);
+            pendingFiles.addAndGet(files);
+            pendingBytes.addAndGet(bytes);
+        }
+
+        /**
+         * Take the pending deltas out for a checkpoint, moving them into the
+         * baseline until it is reloaded
+         */
+        NavigableMap<Long, long[]> drain() {
+            NavigableMap<Long, long[]> drained = new TreeMap<>();
+            for (Long time : pendingByTime.keySet()) {
+                long[] delta = pendingByTime.remove(time);
+                if (delta != null) {
+                    drained.put(time, delta);
+                    move(delta[0], delta[1]);
+                }
+            }
+            return drained;
+        }
+
+        /**
+         * Put back deltas a failed checkpoint could not store
+         */
+        void restore(NavigableMap<Long, long[]> drained) {
+            drained.forEach((time, delta) -> {
+                pendingByTime.merge(time, delta, Usage::sum);
+                move(-delta[0], -delta[1]);
+            });
+        }
+
+        long files() {
+            return baseFiles.get() + pendingFiles.get();
+        }
+
+        long bytes() {
+            return baseBytes.get() + pendingBytes.get();
+        }
+
+        private void move(long files, long bytes) {
+            baseFiles.addAndGet(files);
+            pendingFiles.addAndGet(-files);
+            baseBytes.addAndGet(bytes);
+            pendingBytes.addAndGet(-bytes);
+        }
+
+        private static long[] sum(long[] a, long[] b) {
+            return new long[] {a[0] + b[0], a[1] + b[1]};
+        }
+    }
+}
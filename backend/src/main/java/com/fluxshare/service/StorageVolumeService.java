@@ -0,0 +1,293 @@
+package com.fluxshare.service;
+
+import com.fluxshare.exception.FileStorageException;
+import com.fluxshare.exception.StorageQuotaExceededException;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Service placing stored files on local storage volumes.
+ *
+ * The base path is the {@code default} volume; further roots (e.g. one per
+ * NVMe drive) are configured as {@code name=path} pairs. Each new file goes
+ * to the volume with the most free space per write in flight, so concurrent
+ * uploads stripe over the drives and fill them evenly. A volume whose root
+ * is missing, read-only or lacks its marker file (an unmounted drive) takes
+ * no new files; only the shares stored on it are affected. The volume's
+ * root is part of every stored path, so reads need no lookup.
+ *
+ * Packed small files and deduplicated blobs stay on the default volume, and
+ * other backends than local storage have the default volume only.
+ */
+@Service
+@Slf4j
+public class StorageVolumeService {
+
+    /** Volume at the base path */
+    public static final String DEFAULT_VOLUME = "default";
+
+    /** File identifying a volume's root, absent when the drive is not mounted */
+    static final String MARKER_FILE = ".fluxshare-volume";
+
+    private final StorageUsageService storageUsageService;
+    private final boolean localBackend;
+    private final long minFreeBytes;
+    private final long refreshMillis;
+    private final Map<String, Volume> volumes = new LinkedHashMap<>();
+
+    private volatile long refreshedAt;
+
+    public StorageVolumeService(
+            StorageUsageService storageUsageService,
+            MeterRegistry meterRegistry,
+            @Value("${fluxshare.storage.backend:local}") String backend,
+            @Value("${fluxshare.storage.base-path:./storage/encrypted}") String basePath,
+            @Value("${fluxshare.storage.volume.roots:}") String roots,
+            @Value("${fluxshare.storage.volume.min-free-bytes:1073741824}") long minFreeBytes,
+            @Value("${fluxshare.storage.volume.refresh-ms:5000}") long refreshMillis) {
+        this.storageUsageService = storageUsageService;
+        this.localBackend = "local".equalsIgnoreCase(backend);
+        this.minFreeBytes = minFreeBytes;
+        this.refreshMillis = refreshMillis;
+
+        volumes.put(DEFAULT_VOLUME, new Volume(DEFAULT_VOLUME, Paths.get(basePath)));
+        if (localBackend) {
+            for (String entry : roots.split(",")) {
+                if (entry.isBlank()) {
+                    continue;
+                }
+                int separator = entry.indexOf('=');
+                if (separator <= 0) {
+                    throw new IllegalArgumentException("Storage volume must be given as name=path: " + entry);
+                }
+                String name = entry.substring(0, separator).trim();
+                if (volumes.containsKey(name)) {
+                    throw new IllegalArgumentException("Duplicate storage volume: " + name);
+                }
+                volumes.put(name, new Volume(name, Paths.get(entry.substring(separator + 1).trim())));
+            }
+        } else if (!roots.isBlank()) {
+            log.warn("Ignoring storage volumes: the {} backend has no local volumes", backend);
+        }
+
+        for (Volume volume : volumes.values()) {
+            Gauge.builder("fluxshare.storage.volume.usable", volume, Volume::getUsableSpace)
+                    .description("Usable space on the storage volume")
+                    .tag("volume", volume.getName())
+                    .baseUnit("bytes")
+                    .register(meterRegistry);
+            Gauge.builder("fluxshare.storage.volume.writes", volume, Volume::getWritesInFlight)
+                    .description("Files being written to the storage volume")
+                    .tag("volume", volume.getName())
+                    .register(meterRegistry);
+            Gauge.builder("fluxshare.storage.volume.available", volume, v -> v.isAvailable() ? 1 : 0)
+                    .description("Whether the storage volume accepts new files")
+                    .tag("volume", volume.getName())
+                    .register(meterRegistry);
+        }
+    }
+
+    /**
+     * Create the volume roots and their markers. A root without its marker
+     * that already holds files according to the usage counters is left alone:
+     * that is a drive that failed to mount, not a new volume.
+     */
+    public void initialize() {
+        if (!localBackend) {
+            return;
+        }
+
+        for (Volume volume : volumes.values()) {
+            Path marker = volume.getRoot().resolve(MARKER_FILE);
+            try {
+                if (Files.exists(marker)) {
+                    continue;
+                }
+                if (!DEFAULT_VOLUME.equals(volume.getName())
+                        && storageUsageService.getVolumeFileCount(volume.getName()) > 0) {
+                    log.error("Storage volume {} has files but no marker at {}; is the drive mounted?",
+                            volume.getName(), volume.getRoot());
+                    continue;
+                }
+                Files.createDirectories(volume.getRoot());
+                Files.writeString(marker, volume.getName());
+            } catch (IOException e) {
+                log.error("Failed to initialize storage volume {} at {}", volume.getName(), volume.getRoot(), e);
+            }
+        }
+        refresh();
+        log.info("Storage volumes initialized: {}", volumes.values());
+    }
+
+    /**
+     * Pick the volume for a new file and count the write against it.
+     * Every call must be paired with {@link #release}.
+     *
+     * @param size Expected size of the stored file
+     * @return The chosen volume
+     */
+    public Volume acquire(long size) {
+        Volume chosen = volumes.get(DEFAULT_VOLUME);
+        if (localBackend && volumes.size() > 1) {
+            if (System.currentTimeMillis() - refreshedAt > refreshMillis) {
+                refresh();
+            }
+
+            chosen = null;
+            double bestScore = -1;
+            for (Volume volume : volumes.values()) {
+                long free = volume.getUsableSpace() - volume.reserved.get() - minFreeBytes;
+                if (!volume.isAvailable() || free < size) {
+                    continue;
+                }
+                // Prefer free space, divided among the writes already queued on the drive
+                double score = (double) free / (volume.writesInFlight.get() + 1);
+                if (score > bestScore) {
+                    bestScore = score;
+                    chosen = volume;
+                }
+            }
+            if (chosen == null) {
+                throw new StorageQuotaExceededException("No storage volume has room for the upload.");
+            }
+        }
+
+        chosen.writesInFlight.incrementAndGet();
+        chosen.reserved.addAndGet(size);
+        return chosen;
+    }
+
+    /**
+     * End a write counted by {@link #acquire}
+     */
+    public void release(Volume volume, long size) {
+        volume.writesInFlight.decrementAndGet();
+        volume.reserved.addAndGet(-size);
+    }
+
+    /**
+     * Get the root directory of a volume
+     *
+     * @param name The volume name; null for files stored before volumes existed
+     * @return The root, or null when the volume is no longer configured
+     */
+    public Path rootOf(String name) {
+        Volume volume = volumes.get(name != null ? name : DEFAULT_VOLUME);
+        return volume != null ? volume.getRoot() : null;
+    }
+
+    /**
+     * Check if a volume's data can be read
+     *
+     * @param name The volume name; null for files stored before volumes existed
+     */
+    public boolean isAvailable(String name) {
+        Volume volume = volumes.get(name != null ? name : DEFAULT_VOLUME);
+        return volume != null && (!localBackend || volume.isAvailable());
+    }
+
+    /**
+     * Fail with a clear message when a file's volume is unavailable
+     *
+     * @param name The volume name; null for files stored before volumes existed
+     */
+    public void checkAvailable(String name) {
+        if (!isAvailable(name)) {
+            throw new FileStorageException("Storage volume " + (name != null ? name : DEFAULT_VOLUME)
+                    + " is unavailable");
+        }
+    }
+
+    /**
+     * Get all configured volumes, the default volume first
+     */
+    public List<Volume> getVolumes() {
+        return Collections.unmodifiableList(new ArrayList<>(volumes.values()));
+    }
+
+    /**
+     * Re-read free space and availability of every volume
+     */
+    public synchronized void refresh() {
+        for (Volume volume : volumes.values()) {
+            boolean available;
+            long usableSpace;
+            try {
+                available = Files.isRegularFile(volume.getRoot().resolve(MARKER_FILE))
+                        && Files.isWritable(volume.getRoot());
+                usableSpace = available ? Files.getFileStore(volume.getRoot()).getUsableSpace() : 0;
+            } catch (IOException e) {
+                available = false;
+                usableSpace = 0;
+            }
+
+            if (volume.available != available && refreshedAt != 0) {
+                if (available) {
+                    log.info("Storage volume {} is available again", volume.getName());
+                } else {
+                    log.warn("Storage volume {} at {} became unavailable", volume.getName(), volume.getRoot());
+                }
+            }
+            volume.available = available;
+            volume.usableSpace.set(usableSpace);
+        }
+        refreshedAt = System.currentTimeMillis();
+    }
+
+    /**
+     * A storage root with its current free space and load
+     */
+    public static class Volume {
+        private final String name;
+        private final Path root;
+        private final AtomicLong usableSpace = new AtomicLong();
+        private final AtomicLong reserved = new AtomicLong(); // expected size of the writes in flight
+        private final AtomicInteger writesInFlight = new AtomicInteger();
+        private volatile boolean available = true;
+
+        Volume(String name, Path root) {
+            this.name = name;
+            this.root = root;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public Path getRoot() {
+            return root;
+        }
+
+        public long getUsableSpace() {
+            return usableSpace.get();
+        }
+
+        public int getWritesInFlight() {
+            return writesInFlight.get();
+        }
+
+        public boolean isAvailable() {
+            return available;
+        }
+
+        @Override
+        public String toString() {
+            return name + "=" + root;
+        }
+    }
+}
@@ -4,6 +4,7 @@ import com.fluxshare.dto.CodeShareRequest;
 import com.fluxshare.dto.TextShareRequest;
 import com.fluxshare.entity.Share;
 import com.fluxshare.entity.TextContent;
+import com.fluxshare.enums.Compression;
 import com.fluxshare.enums.ShareType;
 import com.fluxshare.exception.FileStorageException;
 import com.fluxshare.repository.TextContentRepository;
@@ -22,7 +23,9 @@ public class TextContentService {
 
     private final TextContentRepository textContentRepository;
     private final EncryptionService encryptionService;
+    private final CompressionService compressionService;
     private final ShareService shareService;
+    private final StorageUsageService storageUsageService;
 
     /**
      * Create text share
@@ -37,23 +40,22 @@ public class TextContentService {
                 request.getPassword(),
                 request.getNotes(),
                 null,
-                request.getMaxViews()
+                request.getMaxViews(),
+                false
         );
 
         // Get content key
         byte[] contentKey = shareService.getContentKey(share);
 
-        // Encrypt and store text content
-        byte[] encryptedContent = encryptionService.encryptString(request.getText(), contentKey);
-
-        TextContent textContent = TextContent.builder()
+        // Compress, encrypt and store text content
+        TextContent textContent = encryptContent(request.getText(), contentKey)
                 .share(share)
-                .contentEncrypted(encryptedContent)
                 .contentLength(request.getText().length())
                 .isCode(false)
                 .build();
 
         textContentRepository.save(textContent);
+        storageUsageService.recordStored(ShareType.TEXT, null, textContent.getContentLength());
         log.info("Created text share: {}", share.getShareId());
 
         return share;
@@ -72,24 +74,23 @@ public class TextContentService {
                 request.getPassword(),
                 request.getNotes(),
                 null,
-                request.getMaxViews()
+                request.getMaxViews(),
+                false
         );
 
         // Get content key
         byte[] contentKey = shareService.getContentKey(share);
 
-        // Encrypt and store code content
-        byte[] encryptedContent = encryptionService.encryptString(request.getCode(), contentKey);
-
-        TextContent textContent = TextContent.builder()
+        // Compress, encrypt and store code content
+        TextContent textContent = encryptContent(request.getCode(), contentKey)
                 .share(share)
-                .contentEncrypted(encryptedContent)
                 .language(request.getLanguage())
                 .contentLength(request.getCode().length())
                 .isCode(true)
                 .build();
 
         textContentRepository.save(textContent);
+        storageUsageService.recordStored(ShareType.CODE, null, textContent.getContentLength());
         log.info("Created code share: {} with language {}", share.getShareId(), request.getLanguage());
 
         return share;
@@ -102,7 +103,29 @@ public class TextContentService {
         TextContent textContent = textContentRepository.findByShare(share)
                 .orElseThrow(() -> new FileStorageException("Text content not found for share: " + share.getShareId()));
 
-        return encryptionService.decryptToString(textContent.getContentEncrypted(), contentKey);
+        byte[] content = encryptionService.decrypt(textContent.getContentEncrypted(), contentKey,
+                textContent.getEncryptionAlgorithm());
+        if (textContent.getCompression() != null) {
+            content = compressionService.decompress(textContent.getCompression(), content);
+        }
+        return new String(content);
+    }
+
+    /**
+     * Compress (when it pays off) and encrypt text, filling the content fields of a builder
+     */
+    private TextContent.TextContentBuilder encryptContent(String text, byte[] contentKey) {
+        byte[] content = text.getBytes();
+        Compression compression = compressionService.select("text/plain", content, content.length);
+        if (compression != null) {
+            content = compressionService.compress(compression, content);
+        }
+
+        String algorithm = encryptionService.getAlgorithmName();
+        return TextContent.builder()
+                .contentEncrypted(encryptionService.encrypt(content, contentKey, algorithm))
+                .compression(compression)
+                .encryptionAlgorithm(algorithm);
     }
 
     /**
@@ -118,6 +141,8 @@ public class TextContentService {
      */
     @Transactional
     public void deleteTextContent(Share share) {
+        textContentRepository.findContentLengthByShare(share).ifPresent(length ->
+                storageUsageService.recordDeleted(share.getType(), null, length));
         textContentRepository.deleteByShare(share);
         log.info("Deleted text content for share: {}", share.getShareId());
     }
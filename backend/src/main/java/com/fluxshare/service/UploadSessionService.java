@@ -0,0 +1,596 @@
+package com.fluxshare.service;
+
+import com.fluxshare.dto.FileShareRequest;
+import com.fluxshare.entity.Share;
+import com.fluxshare.entity.UploadPart;
+import com.fluxshare.entity.UploadSession;
+import com.fluxshare.enums.ShareType;
+import com.fluxshare.exception.EncryptionException;
+import com.fluxshare.exception.FileStorageException;
+import com.fluxshare.exception.InvalidUploadException;
+import com.fluxshare.exception.UploadConflictException;
+import com.fluxshare.exception.UploadSessionNotFoundException;
+import com.fluxshare.repository.UploadPartRepository;
+import com.fluxshare.repository.UploadSessionRepository;
+import com.fluxshare.util.MimeTypeUtil;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.SequenceInputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Service for resumable uploads.
+ *
+ * A session is opened with the file's name and size and gets its own content
+ * key, which becomes the share's key on completion. Chunks are sent in order,
+ * each starting at the session's current offset and covering whole
+ * encryption segments (except the last), so every chunk is encrypted straight
+ * into the staging file as it arrives: no plaintext is buffered beyond one
+ * segment or written to disk. A chunk only counts once it is on disk and the
+ * offset is advanced; an interrupted chunk is cut off and sent again. The
+ * staging file lives on the storage volume the finished file will stay on,
+ * so completion is a rename.
+ *
+ * Multipart uploads instead split the file into numbered parts of a fixed
+ * size (a multiple of the segment size) that are sent in parallel, e.g. over
+ * several connections on a high-latency link. Every part covers whole
+ * segments with known indexes, so it is encrypted on its own straight into
+ * its place in the staging file; completion checks that all parts arrived
+ * and assembles nothing.
+ */
+@Service
+@Slf4j
+public class UploadSessionService {
+
+    private static final String UPLOAD_DIRECTORY = "uploads";
+    private static final int WRITE_BUFFER_SIZE = 256 * 1024;
+
+    private final UploadSessionRepository uploadSessionRepository;
+    private final UploadPartRepository uploadPartRepository;
+    private final EncryptionService encryptionService;
+    private final ContentKeyPoolService contentKeyPoolService;
+    private final ShareService shareService;
+    private final FileStorageService fileStorageService;
+    private final ShareFactoryService shareFactoryService;
+    private final StorageVolumeService storageVolumeService;
+    private final StorageUsageService storageUsageService;
+    private final MimeTypeUtil mimeTypeUtil;
+    private final boolean localBackend;
+    private final Path tempPath;
+    private final long maxSize;
+    private final long chunkSize;
+    private final long sessionTtlMinutes;
+    private final long partSize;
+    private final long minPartSize;
+    private final long maxPartSize;
+    private final int maxParts;
+
+    public UploadSessionService(
+            UploadSessionRepository uploadSessionRepository,
+            UploadPartRepository uploadPartRepository,
+            EncryptionService encryptionService,
+            ContentKeyPoolService contentKeyPoolService,
+            ShareService shareService,
+            FileStorageService fileStorageService,
+            ShareFactoryService shareFactoryService,
+            StorageVolumeService storageVolumeService,
+            StorageUsageService storageUsageService,
+            MimeTypeUtil mimeTypeUtil,
+            @Value("${fluxshare.storage.backend:local}") String backend,
+            @Value("${fluxshare.storage.temp-path:./storage/temp}") String tempPath,
+            @Value("${fluxshare.upload.resumable.max-size:53687091200}") long maxSize,
+            @Value("${fluxshare.upload.resumable.chunk-size:8388608}") long chunkSize,
+            @Value("${fluxshare.upload.resumable.session-ttl-minutes:1440}") long sessionTtlMinutes,
+            @Value("${fluxshare.upload.multipart.part-size:16777216}") long partSize,
+            @Value("${fluxshare.upload.multipart.min-part-size:5242880}") long minPartSize,
+            @Value("${fluxshare.upload.multipart.max-part-size:1073741824}") long maxPartSize,
+            @Value("${fluxshare.upload.multipart.max-parts:10000}") int maxParts) {
+        this.uploadSessionRepository = uploadSessionRepository;
+        this.uploadPartRepository = uploadPartRepository;
+        this.encryptionService = encryptionService;
+        this.contentKeyPoolService = contentKeyPoolService;
+        this.shareService = shareService;
+        this.fileStorageService = fileStorageService;
+        this.shareFactoryService = shareFactoryService;
+        this.storageVolumeService = storageVolumeService;
+        this.storageUsageService = storageUsageService;
+        this.mimeTypeUtil = mimeTypeUtil;
+        this.localBackend = "local".equalsIgnoreCase(backend);
+        this.tempPath = Paths.get(tempPath);
+        this.maxSize = maxSize;
+        this.chunkSize = chunkSize;
+        this.sessionTtlMinutes = sessionTtlMinutes;
+        this.partSize = partSize;
+        this.minPartSize = minPartSize;
+        this.maxPartSize = maxPartSize;
+        this.maxParts = maxParts;
+    }
+
+    /**
+     * Open an upload session
+     *
+     * @param filename Original name of the file
+     * @param size Plaintext size of the file
+     * @param clientDecryption Whether the share will be decrypted by its recipients' clients
+     * @param multipart Whether the file is sent as parts in parallel instead of chunks in order
+     * @param requestedPartSize Part size of a multipart upload, or null for the default
+     * @return The new session
+     */
+    @Transactional
+    public UploadSession createSession(String filename, long size, boolean clientDecryption,
+                                       boolean multipart, Long requestedPartSize) {
+        if (size < 0 || size > maxSize) {
+            throw new InvalidUploadException("File size must be between 0 and " + maxSize + " bytes");
+        }
+        String algorithm = clientDecryption
+                ? EncryptionService.CLIENT_DECRYPTION_ALGORITHM
+                : encryptionService.getAlgorithmName();
+        Long sessionPartSize = multipart
+                ? choosePartSize(size, requestedPartSize, encryptionService.getSegmentSize(algorithm))
+                : null;
+        storageUsageService.checkCapacity(size);
+
+        // Only the placement is needed here; the session's writes are too spread out to count as load
+        StorageVolumeService.Volume volume = storageVolumeService.acquire(size);
+        storageVolumeService.release(volume, size);
+
+        Path stagingDirectory = (localBackend ? volume.getRoot() : tempPath).resolve(UPLOAD_DIRECTORY);
+
+        ContentKeyPoolService.PooledKey pooledKey = contentKeyPoolService.take();
+        try {
+            Files.createDirectories(stagingDirectory);
+            // Created up front so that a chunk arriving after the session is gone cannot recreate it
+            Path staging = Files.createFile(stagingDirectory.resolve(UUID.randomUUID() + ".part"));
+            UploadSession session = UploadSession.builder()
+                    .filename(filename)
+                    .totalSize(size)
+                    .partSize(sessionPartSize)
+                    .stagingPath(staging.toString())
+                    .volume(volume.getName())
+                    .encryptedKey(pooledKey.getWrappedKey())
+                    .encryptionAlgorithm(algorithm)
+                    .clientDecryption(clientDecryption)
+                    .expiresAt(LocalDateTime.now().plusMinutes(sessionTtlMinutes))
+                    .build();
+            session = uploadSessionRepository.save(session);
+            log.info("Opened {} upload session {} for {} ({} bytes)", multipart ? "multipart" : "resumable",
+                    session.getId(), filename, size);
+            return session;
+        } catch (IOException e) {
+            throw new FileStorageException("Failed to create upload directory: " + stagingDirectory, e);
+        } finally {
+            pooledKey.destroy();
+        }
+    }
+
+    /**
+     * Get an open session
+     *
+     * @param uploadId The session ID
+     * @return The session
+     */
+    public UploadSession getSession(UUID uploadId) {
+        return uploadSessionRepository.findById(uploadId)
+                .filter(session -> session.getExpiresAt().isAfter(LocalDateTime.now()))
+                .orElseThrow(() -> new UploadSessionNotFoundException(uploadId.toString()));
+    }
+
+    /**
+     * Encrypt a chunk into the session's staging file
+     *
+     * @param uploadId The session ID
+     * @param offset Plaintext offset the chunk starts at; must be the session's current offset
+     * @param length Plaintext length of the chunk
+     * @param inputStream The chunk's bytes
+     * @return The new offset
+     */
+    public long appendChunk(UUID uploadId, long offset, long length, InputStream inputStream) {
+        UploadSession session = getSession(uploadId);
+        long totalSize = session.getTotalSize();
+        int segmentSize = encryptionService.getSegmentSize(session.getEncryptionAlgorithm());
+
+        if (session.isMultipart()) {
+            throw new InvalidUploadException("Multipart uploads are sent as numbered parts");
+        }
+        if (offset != session.getReceivedBytes()) {
+            throw new UploadConflictException("Upload continues at offset " + session.getReceivedBytes(),
+                    session.getReceivedBytes());
+        }
+        if (length < 0 || offset + length > totalSize || (length == 0 && totalSize != 0)) {
+            throw new InvalidUploadException("Chunk must hold between 1 and " + (totalSize - offset) + " bytes");
+        }
+        if (offset + length < totalSize && length % segmentSize != 0) {
+            throw new InvalidUploadException("Chunks other than the last must be a multiple of "
+                    + segmentSize + " bytes");
+        }
+
+        Path staging = Paths.get(session.getStagingPath());
+        byte[] contentKey = encryptionService.unwrapContentKey(session.getEncryptedKey());
+        try (FileChannel channel = FileChannel.open(staging, StandardOpenOption.WRITE);
+             FileLock lock = channel.tryLock()) {
+            if (lock == null) {
+                throw new UploadConflictException("Another chunk of this upload is in progress", offset);
+            }
+            // The chunk holding the lock before us may have moved the offset
+            long current = uploadSessionRepository.findReceivedBytes(uploadId)
+                    .orElseThrow(() -> new UploadSessionNotFoundException(uploadId.toString()));
+            if (current != offset) {
+                throw new UploadConflictException("Upload continues at offset " + current, current);
+            }
+
+            // Cut off whatever an interrupted chunk left behind, then append
+            long start = offset == 0 ? 0 : encryptionService.encryptedLength(session.getEncryptionAlgorithm(), offset);
+            channel.truncate(start);
+            channel.position(start);
+            OutputStream outputStream = new BufferedOutputStream(Channels.newOutputStream(channel), WRITE_BUFFER_SIZE);
+            encryptionService.encryptSegments(sniffing(session, offset, length, inputStream), outputStream, contentKey,
+                    session.getEncryptionAlgorithm(), offset, length, totalSize);
+            channel.force(false);
+
+            long newOffset = offset + length;
+            if (uploadSessionRepository.advance(uploadId, offset, newOffset,
+                    LocalDateTime.now().plusMinutes(sessionTtlMinutes)) == 0) {
+                throw new UploadSessionNotFoundException(uploadId.toString());
+            }
+            return newOffset;
+        } catch (OverlappingFileLockException e) {
+            throw new UploadConflictException("Another chunk of this upload is in progress", offset);
+        } catch (EncryptionException e) {
+            throw new FileStorageException("Chunk at offset " + offset + " of upload " + uploadId
+                    + " was not received completely", e);
+        } catch (NoSuchFileException e) {
+            throw new UploadSessionNotFoundException(uploadId.toString()); // aborted or cleaned up meanwhile
+        } catch (IOException e) {
+            throw new FileStorageException("Failed to write chunk of upload " + uploadId, e);
+        } finally {
+            Arrays.fill(contentKey, (byte) 0);
+        }
+    }
+
+    /**
+     * Encrypt a part of a multipart upload into its place in the staging file.
+     * Parts may arrive in any order and in parallel; sending a part again
+     * replaces it, and the part counts as missing until the new copy is on
+     * disk.
+     *
+     * @param uploadId The session ID
+     * @param partNumber 1-based part number
+     * @param length Plaintext length of the part
+     * @param inputStream The part's bytes
+     */
+    public void uploadPart(UUID uploadId, int partNumber, long length, InputStream inputStream) {
+        UploadSession session = getSession(uploadId);
+        if (!session.isMultipart()) {
+            throw new InvalidUploadException("Resumable uploads are sent as chunks in order");
+        }
+        int partCount = session.getPartCount();
+        if (partNumber < 1 || partNumber > partCount) {
+            throw new InvalidUploadException("Part number must be between 1 and " + partCount);
+        }
+        long offset = (partNumber - 1) * session.getPartSize();
+        long expectedLength = Math.min(session.getPartSize(), session.getTotalSize() - offset);
+        if (length != expectedLength) {
+            throw new InvalidUploadException("Part " + partNumber + " must hold " + expectedLength + " bytes");
+        }
+
+        String algorithm = session.getEncryptionAlgorithm();
+        long start = offset == 0 ? 0 : encryptionService.encryptedLength(algorithm, offset);
+        long end = encryptionService.encryptedLength(algorithm, offset + length);
+
+        Path staging = Paths.get(session.getStagingPath());
+        byte[] contentKey = encryptionService.unwrapContentKey(session.getEncryptedKey());
+        try (FileChannel channel = FileChannel.open(staging, StandardOpenOption.WRITE);
+             FileLock lock = channel.tryLock(start, end - start, false)) {
+            if (lock == null) {
+                throw new UploadConflictException("Part " + partNumber + " is already being uploaded", offset);
+            }
+            // Completion may have taken the file over while we waited to open it
+            if (!uploadSessionRepository.existsById(uploadId)) {
+                throw new UploadSessionNotFoundException(uploadId.toString());
+            }
+            // A part sent again only counts once it is completely rewritten
+            uploadPartRepository.deletePart(uploadId, partNumber);
+
+            channel.position(start);
+            OutputStream outputStream = new BufferedOutputStream(Channels.newOutputStream(channel), WRITE_BUFFER_SIZE);
+            encryptionService.encryptSegments(sniffing(session, offset, length, inputStream), outputStream,
+                    contentKey, algorithm, offset, length, session.getTotalSize());
+            channel.force(false);
+            recordPart(session, partNumber, length);
+        } catch (OverlappingFileLockException e) {
+            throw new UploadConflictException("Part " + partNumber + " is already being uploaded", offset);
+        } catch (EncryptionException e) {
+            throw new FileStorageException("Part " + partNumber + " of upload " + uploadId
+                    + " was not received completely", e);
+        } catch (NoSuchFileException e) {
+            throw new UploadSessionNotFoundException(uploadId.toString()); // aborted or cleaned up meanwhile
+        } catch (IOException e) {
+            throw new FileStorageException("Failed to write part " + partNumber + " of upload " + uploadId, e);
+        } finally {
+            Arrays.fill(contentKey, (byte) 0);
+        }
+    }
+
+    /**
+     * Get the numbers of the parts of a multipart upload received so far
+     *
+     * @param session The session
+     * @return Part numbers in ascending order; empty for other uploads
+     */
+    public List<Integer> getReceivedParts(UploadSession session) {
+        return session.isMultipart() ? uploadPartRepository.findPartNumbers(session.getId()) : List.of();
+    }
+
+    /**
+     * Get the plaintext bytes received so far
+     */
+    public long getReceivedBytes(UploadSession session) {
+        return session.isMultipart() ? uploadPartRepository.sumSizes(session.getId()) : session.getReceivedBytes();
+    }
+
+    /**
+     * Turn a fully received upload into a file share
+     *
+     * @param uploadId The session ID
+     * @param request Options of the share to create
+     * @return The new share
+     */
+    public Share completeSession(UUID uploadId, FileShareRequest request) {
+        UploadSession session = getSession(uploadId);
+        if (session.isMultipart()) {
+            int received = uploadPartRepository.findPartNumbers(uploadId).size();
+            if (received != session.getPartCount()) {
+                throw new InvalidUploadException("Upload is incomplete: " + received + " of "
+                        + session.getPartCount() + " parts received");
+            }
+        } else if (!session.isComplete()) {
+            throw new UploadConflictException("Upload is incomplete, it continues at offset "
+                    + session.getReceivedBytes(), session.getReceivedBytes());
+        }
+
+        // Copying to another backend can take long, so only saving the result is transactional
+        try (FileChannel channel = lockStagingFile(session)) {
+            channel.truncate(encryptionService.encryptedLength(session.getEncryptionAlgorithm(),
+                    session.getTotalSize()));
+
+            byte[] contentKey = encryptionService.unwrapContentKey(session.getEncryptedKey());
+            Share share = shareService.createShare(
+                    ShareType.FILE,
+                    request.getExpiryHours(),
+                    request.getViewOnce(),
+                    request.getPassword(),
+                    request.getNotes(),
+                    request.getMaxDownloads(),
+                    request.getMaxViews(),
+                    session.getClientDecryption(),
+                    new ContentKeyPoolService.PooledKey(contentKey, session.getEncryptedKey())
+            );
+
+            String storedPath = null;
+            try {
+                storedPath = fileStorageService.copyUploadedFile(share, session);
+                shareFactoryService.attachUploadedFile(share, session, storedPath);
+            } catch (RuntimeException e) {
+                fileStorageService.discardUploadedFile(storedPath);
+                deleteShareQuietly(share);
+                throw e;
+            }
+            log.info("Completed upload session {} as share {}", uploadId, share.getShareId());
+
+            return share;
+        } catch (IOException e) {
+            throw new FileStorageException("Failed to finish upload " + uploadId, e);
+        }
+    }
+
+    /**
+     * Abort an upload and remove what was received
+     *
+     * @param uploadId The session ID
+     */
+    @Transactional
+    public void abortSession(UUID uploadId) {
+        UploadSession session = getSession(uploadId);
+        if (uploadSessionRepository.deleteSession(uploadId) > 0) {
+            deleteStagingFileAfterCommit(session.getStagingPath());
+            log.info("Aborted upload session {}", uploadId);
+        }
+    }
+
+    /**
+     * Remove sessions nobody has sent a chunk to within the session lifetime
+     *
+     * @param limit Maximum number of sessions to remove
+     * @return Number of sessions removed
+     */
+    public int cleanupExpiredSessions(int limit) {
+        List<UploadSession> expired = uploadSessionRepository.findExpired(LocalDateTime.now(),
+                PageRequest.ofSize(limit));
+        int removed = 0;
+        for (UploadSession session : expired) {
+            if (uploadSessionRepository.deleteSession(session.getId()) > 0) {
+                deleteStagingFile(session.getStagingPath());
+                removed++;
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * Get the chunk size clients should use; a multiple of the segment size.
+     * For multipart uploads, this is the part size.
+     */
+    public long getChunkSize(UploadSession session) {
+        if (session.isMultipart()) {
+            return session.getPartSize();
+        }
+        int segmentSize = getSegmentSize(session);
+        return Math.max(segmentSize, chunkSize / segmentSize * segmentSize);
+    }
+
+    /**
+     * Get the size every chunk but the last must be a multiple of
+     */
+    public int getSegmentSize(UploadSession session) {
+        return encryptionService.getSegmentSize(session.getEncryptionAlgorithm());
+    }
+
+    /**
+     * Sniff the MIME type from the leading bytes of the chunk or part that
+     * starts the file, on its way to the encryption
+     */
+    private InputStream sniffing(UploadSession session, long offset, long length, InputStream inputStream)
+            throws IOException {
+        if (offset != 0) {
+            return inputStream;
+        }
+        byte[] head = inputStream.readNBytes((int) Math.min(CompressionService.SAMPLE_SIZE, length));
+        uploadSessionRepository.updateMimeType(session.getId(),
+                mimeTypeUtil.detectMimeType(head, session.getFilename()));
+        return new SequenceInputStream(new ByteArrayInputStream(head), inputStream);
+    }
+
+    /**
+     * Validate a requested part size, or pick the default one, grown until the
+     * file fits into the maximum number of parts
+     */
+    private long choosePartSize(long size, Long requested, int segmentSize) {
+        long min = (minPartSize + segmentSize - 1) / segmentSize * segmentSize;
+        long max = Math.max(min, maxPartSize / segmentSize * segmentSize);
+        long chosen;
+        if (requested != null) {
+            if (requested < min || requested > max || requested % segmentSize != 0) {
+                throw new InvalidUploadException("Part size must be a multiple of " + segmentSize
+                        + " bytes between " + min + " and " + max);
+            }
+            chosen = requested;
+        } else {
+            long needed = (size + maxParts - 1) / maxParts;
+            chosen = Math.max(Math.max(min, partSize / segmentSize * segmentSize),
+                    (needed + segmentSize - 1) / segmentSize * segmentSize);
+        }
+        if ((size + chosen - 1) / chosen > maxParts) {
+            throw new InvalidUploadException("A multipart upload has at most " + maxParts + " parts");
+        }
+        return chosen;
+    }
+
+    /**
+     * Record a part once it is on disk; a part sent again is already recorded
+     */
+    private void recordPart(UploadSession session, int partNumber, long length) {
+        UUID uploadId = session.getId();
+        if (uploadSessionRepository.touch(uploadId, LocalDateTime.now().plusMinutes(sessionTtlMinutes)) == 0) {
+            throw new UploadSessionNotFoundException(uploadId.toString());
+        }
+        if (uploadPartRepository.existsPart(uploadId, partNumber)) {
+            return;
+        }
+        try {
+            uploadPartRepository.save(UploadPart.builder()
+                    .session(session)
+                    .partNumber(partNumber)
+                    .size(length)
+                    .build());
+        } catch (DataIntegrityViolationException e) {
+            // Recorded by a concurrent upload of the same part, or the session is gone
+            if (!uploadSessionRepository.existsById(uploadId)) {
+                throw new UploadSessionNotFoundException(uploadId.toString());
+            }
+        }
+    }
+
+    /**
+     * Lock the whole staging file, so no chunk or part can still be writing
+     * to it while the upload is completed
+     *
+     * @return The locked channel; closing it releases the lock
+     */
+    private FileChannel lockStagingFile(UploadSession session) {
+        FileChannel channel;
+        try {
+            channel = FileChannel.open(Paths.get(session.getStagingPath()), StandardOpenOption.WRITE);
+        } catch (NoSuchFileException e) {
+            throw new UploadSessionNotFoundException(session.getId().toString()); // aborted or cleaned up meanwhile
+        } catch (IOException e) {
+            throw new FileStorageException("Failed to finish upload " + session.getId(), e);
+        }
+
+        FileLock lock = null;
+        try {
+            lock = channel.tryLock();
+        } catch (OverlappingFileLockException e) {
+            // A chunk or part is being written by this node
+        } catch (IOException e) {
+            closeQuietly(channel);
+            throw new FileStorageException("Failed to finish upload " + session.getId(), e);
+        }
+        if (lock == null) {
+            closeQuietly(channel);
+            throw new UploadConflictException("A chunk of this upload is still in progress",
+                    session.getReceivedBytes());
+        }
+        return channel;
+    }
+
+    private void deleteShareQuietly(Share share) {
+        try {
+            shareService.deleteShare(share.getShareId());
+        } catch (RuntimeException e) {
+            log.warn("Failed to delete share {} of a failed upload", share.getShareId(), e);
+        }
+    }
+
+    private void closeQuietly(FileChannel channel) {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            log.warn("Failed to close upload staging file", e);
+        }
+    }
+
+    private void deleteStagingFileAfterCommit(String stagingPath) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            deleteStagingFile(stagingPath);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                deleteStagingFile(stagingPath);
+            }
+        });
+    }
+
+    private void deleteStagingFile(String stagingPath) {
+        try {
+            Files.deleteIfExists(Paths.get(stagingPath));
+        } catch (IOException e) {
+            log.warn("Failed to delete upload staging file: {}", stagingPath, e);
+        }
+    }
+}
@@ -0,0 +1,661 @@
+package com.fluxshare.service.impl;
+
+import com.fluxshare.exception.EncryptionException;
+import com.fluxshare.service.EncryptionStrategy;
+import com.fluxshare.util.BufferPool;
+import com.fluxshare.util.RandomSource;
+
+import javax.crypto.Cipher;
+import javax.crypto.KeyGenerator;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PushbackInputStream;
+import java.io.SequenceInputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.security.GeneralSecurityException;
+import java.security.spec.AlgorithmParameterSpec;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Base class for AEAD encryption strategies with 96-bit nonces and 128-bit tags.
+ * Subclasses supply the cipher transformation and its parameter spec.
+ *
+ * Streams are written in a segmented format so that any plaintext range can be
+ * decrypted without touching the rest of the file:
+ * <pre>
+ * header:  magic "FXSG" | version (1 byte) | segment size (4 bytes)
+ * segment: nonce (12 bytes) | ciphertext (up to segment size) | tag (16 bytes)
+ * </pre>
+ * Files written before segmentation (IV followed by a single AEAD stream)
+ * are still decrypted by {@link #decryptStream}.
+ */
+public abstract class AbstractAeadEncryptionStrategy implements EncryptionStrategy {
+
+    protected static final int KEY_SIZE = 256;
+    protected static final int IV_SIZE = 12; // 96 bits
+    protected static final int TAG_SIZE = 128; // 128 bits
+    private static final int TAG_BYTES = TAG_SIZE / 8;
+
+    // Segmented stream format
+    private static final byte[] SEGMENTED_MAGIC = {'F', 'X', 'S', 'G'};
+    private static final byte SEGMENTED_VERSION = 2;
+    private static final int HEADER_SIZE = SEGMENTED_MAGIC.length + 1 + Integer.BYTES;
+    private static final int SEGMENT_SIZE = 64 * 1024; // plaintext bytes per segment
+    private static final int MAX_SEGMENT_SIZE = 16 * 1024 * 1024;
+    private static final int SEGMENT_AAD_SUFFIX = Long.BYTES + 1;
+
+    private final String transformation;
+    private final String keyAlgorithm;
+    private final RandomSource randomSource;
+    private final CipherPool cipherPool;
+    private final BufferPool bufferPool;
+
+    protected AbstractAeadEncryptionStrategy(String transformation, String keyAlgorithm,
+                                             RandomSource randomSource, CipherPool cipherPool,
+                                             BufferPool bufferPool) {
+        this.transformation = transformation;
+        this.keyAlgorithm = keyAlgorithm;
+        this.randomSource = randomSource;
+        this.cipherPool = cipherPool;
+        this.bufferPool = bufferPool;
+    }
+
+    /**
+     * Build the cipher parameters for a nonce
+     *
+     * @param nonce Buffer holding the nonce
+     * @param offset Offset of the nonce in the buffer
+     * @param length Nonce length in bytes
+     * @return Parameter spec for Cipher.init
+     */
+    protected abstract AlgorithmParameterSpec parameterSpec(byte[] nonce, int offset, int length);
+
+    /**
+     * Initialize a (possibly pooled) cipher for one message or segment
+     *
+     * @param cipher The cipher to initialize
+     * @param mode Cipher.ENCRYPT_MODE or Cipher.DECRYPT_MODE
+     * @param keySpec The key
+     * @param nonce Buffer holding the nonce at {@code offset}
+     * @param offset Offset of the nonce in the buffer
+     */
+    protected void initCipher(Cipher cipher, int mode, SecretKeySpec keySpec, byte[] nonce, int offset)
+            throws GeneralSecurityException {
+        cipher.init(mode, keySpec, parameterSpec(nonce, offset, IV_SIZE));
+    }
+
+    @Override
+    public byte[] encrypt(byte[] plainData, byte[] key) {
+        try (CipherPool.Lease lease = cipherPool.borrow(transformation, keyAlgorithm, key)) {
+            // Generate IV
+            byte[] iv = new byte[IV_SIZE];
+            randomSource.nextNonce(iv);
+
+            Cipher cipher = lease.cipher();
+            initCipher(cipher, Cipher.ENCRYPT_MODE, lease.keySpec(), iv, 0);
+
+            // Encrypt directly behind the IV in the result array
+            byte[] result = new byte[IV_SIZE + cipher.getOutputSize(plainData.length)];
+            System.arraycopy(iv, 0, result, 0, IV_SIZE);
+            cipher.doFinal(plainData, 0, plainData.length, result, IV_SIZE);
+
+            return result;
+        } catch (Exception e) {
+            throw new EncryptionException("Failed to encrypt data", e);
+        }
+    }
+
+    @Override
+    public byte[] decrypt(byte[] encryptedData, byte[] key) {
+        try (CipherPool.Lease lease = cipherPool.borrow(transformation, keyAlgorithm, key)) {
+            if (encryptedData.length < IV_SIZE) {
+                throw new EncryptionException("Invalid encrypted data: too short");
+            }
+
+            // IV and ciphertext are read in place, without copying them out
+            Cipher cipher = lease.cipher();
+            initCipher(cipher, Cipher.DECRYPT_MODE, lease.keySpec(), encryptedData, 0);
+
+            return cipher.doFinal(encryptedData, IV_SIZE, encryptedData.length - IV_SIZE);
+        } catch (Exception e) {
+            throw new EncryptionException("Failed to decrypt data", e);
+        }
+    }
+
+    @Override
+    public void encryptStream(InputStream inputStream, OutputStream outputStream, byte[] key) {
+        ByteBuffer plainSegment = bufferPool.acquire(SEGMENT_SIZE);
+        ByteBuffer sealedSegment = bufferPool.acquire(SEGMENT_SIZE + TAG_BYTES);
+
+        try (CipherPool.Lease lease = cipherPool.borrow(transformation, keyAlgorithm, key)) {
+            // Write versioned header; it is bound into every segment's AAD
+            byte[] header = buildHeader(SEGMENT_SIZE);
+            outputStream.write(header);
+
+            Cipher cipher = lease.cipher();
+            PushbackInputStream input = new PushbackInputStream(inputStream, 1);
+            byte[] iv = new byte[IV_SIZE];
+            byte[] aad = new byte[header.length + SEGMENT_AAD_SUFFIX];
+
+            // Encrypt each segment independently; the last one is flagged in its AAD
+            long segmentIndex = 0;
+            boolean lastSegment;
+            do {
+                int plainLength = input.readNBytes(plainSegment.array(), 0, SEGMENT_SIZE);
+                lastSegment = plainLength < SEGMENT_SIZE || isAtEnd(input);
+
+                randomSource.nextNonce(iv);
+                initCipher(cipher, Cipher.ENCRYPT_MODE, lease.keySpec(), iv, 0);
+                cipher.updateAAD(segmentAad(aad, header, segmentIndex, lastSegment));
+
+                plainSegment.clear().limit(plainLength);
+                sealedSegment.clear();
+                cipher.doFinal(plainSegment, sealedSegment);
+
+                outputStream.write(iv);
+                outputStream.write(sealedSegment.array(), 0, sealedSegment.position());
+                segmentIndex++;
+            } while (!lastSegment);
+
+            outputStream.flush();
+        } catch (Exception e) {
+            throw new EncryptionException("Failed to encrypt stream", e);
+        } finally {
+            bufferPool.release(sealedSegment);
+            bufferPool.release(plainSegment);
+        }
+    }
+
+    @Override
+    public void encryptStreamParallel(InputStream inputStream, OutputStream outputStream, byte[] key,
+                                      Executor executor, int maxInFlight) {
+        int inFlightLimit = Math.max(maxInFlight, 1);
+        Deque<Future<SealedSegment>> inFlight = new ArrayDeque<>(inFlightLimit);
+        Deque<SealedSegment> idleSegments = new ArrayDeque<>(inFlightLimit + 1);
+
+        try {
+            // Write versioned header; it is bound into every segment's AAD
+            byte[] header = buildHeader(SEGMENT_SIZE);
+            outputStream.write(header);
+
+            // Segments are read in order on this thread, one ahead so the last can be flagged,
+            // sealed on the executor, and written back in submission order
+            SealedSegment current = new SealedSegment();
+            current.read(inputStream);
+            long segmentIndex = 0;
+            boolean lastSegment;
+            do {
+                SealedSegment next = null;
+                lastSegment = current.plainLength < SEGMENT_SIZE;
+                if (!lastSegment) {
+                    next = idleSegments.isEmpty() ? new SealedSegment() : idleSegments.poll();
+                    next.read(inputStream);
+                    lastSegment = next.plainLength == 0;
+                }
+
+                SealedSegment segment = current;
+                long index = segmentIndex++;
+                boolean last = lastSegment;
+                FutureTask<SealedSegment> task = new FutureTask<>(() -> seal(segment, key, header, index, last));
+                executor.execute(task);
+                inFlight.add(task);
+
+                // Bound memory: wait for the oldest segment before reading further
+                while (inFlight.size() >= inFlightLimit || (lastSegment && !inFlight.isEmpty())) {
+                    SealedSegment sealed = inFlight.poll().get();
+                    outputStream.write(sealed.iv);
+                    outputStream.write(sealed.sealed.array(), 0, sealed.sealedLength);
+                    idleSegments.add(sealed);
+                }
+
+                current = next;
+            } while (!lastSegment);
+
+            outputStream.flush();
+        } catch (ExecutionException e) {
+            throw new EncryptionException("Failed to encrypt stream", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new EncryptionException("Interrupted while encrypting stream", e);
+        } catch (Exception e) {
+            throw new EncryptionException("Failed to encrypt stream", e);
+        } finally {
+            for (Future<SealedSegment> pending : inFlight) {
+                pending.cancel(false);
+            }
+        }
+    }
+
+    @Override
+    public void encryptSegments(InputStream inputStream, OutputStream outputStream, byte[] key,
+                                long offset, long length, long totalSize) {
+        boolean endsStream = offset + length == totalSize;
+        if (offset < 0 || length < 0 || offset + length > totalSize || offset % SEGMENT_SIZE != 0
+                || (!endsStream && length % SEGMENT_SIZE != 0) || (length == 0 && totalSize != 0)) {
+            throw new EncryptionException("Piece at " + offset + " of length " + length
+                    + " does not cover whole segments of a " + totalSize + " byte stream");
+        }
+
+        ByteBuffer plainSegment = bufferPool.acquire(SEGMENT_SIZE);
+        ByteBuffer sealedSegment = bufferPool.acquire(SEGMENT_SIZE + TAG_BYTES);
+
+        try (CipherPool.Lease lease = cipherPool.borrow(transformation, keyAlgorithm, key)) {
+            byte[] header = buildHeader(SEGMENT_SIZE);
+            if (offset == 0) {
+                outputStream.write(header);
+            }
+
+            Cipher cipher = lease.cipher();
+            byte[] iv = new byte[IV_SIZE];
+            byte[] aad = new byte[header.length + SEGMENT_AAD_SUFFIX];
+            long segmentIndex = offset / SEGMENT_SIZE;
+            long remaining = length;
+            do {
+                int plainLength = (int) Math.min(remaining, SEGMENT_SIZE);
+                if (inputStream.readNBytes(plainSegment.array(), 0, plainLength) < plainLength) {
+                    throw new EOFException("Stream ended " + remaining + " bytes before the end of the piece");
+                }
+                remaining -= plainLength;
+                boolean lastSegment = (segmentIndex + 1) * SEGMENT_SIZE >= totalSize;
+
+                randomSource.nextNonce(iv);
+                initCipher(cipher, Cipher.ENCRYPT_MODE, lease.keySpec(), iv, 0);
+                cipher.updateAAD(segmentAad(aad, header, segmentIndex, lastSegment));
+
+                plainSegment.clear().limit(plainLength);
+                sealedSegment.clear();
+                cipher.doFinal(plainSegment, sealedSegment);
+
+                outputStream.write(iv);
+                outputStream.write(sealedSegment.array(), 0, sealedSegment.position());
+                segmentIndex++;
+            } while (remaining > 0);
+
+            outputStream.flush();
+        } catch (Exception e) {
+            throw new EncryptionException("Failed to encrypt stream", e);
+        } finally {
+            bufferPool.release(sealedSegment);
+            bufferPool.release(plainSegment);
+        }
+    }
+
+    @Override
+    public long encryptedLength(long plaintextLength) {
+        long segments = Math.max(1, (plaintextLength + SEGMENT_SIZE - 1) / SEGMENT_SIZE);
+        return HEADER_SIZE + segments * (IV_SIZE + TAG_BYTES) + plaintextLength;
+    }
+
+    @Override
+    public int getSegmentSize() {
+        return SEGMENT_SIZE;
+    }
+
+    /**
+     * Encrypt one segment of a parallel stream on a worker thread
+     */
+    private SealedSegment seal(SealedSegment segment, byte[] key, byte[] header, long segmentIndex,
+                               boolean lastSegment) throws Exception {
+        try (CipherPool.Lease lease = cipherPool.borrow(transformation, keyAlgorithm, key)) {
+            Cipher cipher = lease.cipher();
+            randomSource.nextNonce(segment.iv);
+            initCipher(cipher, Cipher.ENCRYPT_MODE, lease.keySpec(), segment.iv, 0);
+            cipher.updateAAD(segmentAad(new byte[header.length + SEGMENT_AAD_SUFFIX], header,
+                    segmentIndex, lastSegment));
+
+            segment.plain.clear().limit(segment.plainLength);
+            segment.sealed.clear();
+            segment.sealedLength = cipher.doFinal(segment.plain, segment.sealed);
+            return segment;
+        }
+    }
+
+    @Override
+    public void decryptStream(InputStream inputStream, OutputStream outputStream, byte[] key) {
+        try {
+            byte[] header = inputStream.readNBytes(HEADER_SIZE);
+
+            if (!isSegmentedHeader(header)) {
+                // Legacy single-stream file: the bytes read so far are the start of the IV
+                InputStream legacyStream = new SequenceInputStream(
+                        new ByteArrayInputStream(header), inputStream);
+                decryptLegacyStream(legacyStream, outputStream, key);
+                return;
+            }
+
+            decryptSegments(inputStream, outputStream, key, header, 0, 0, Long.MAX_VALUE);
+            outputStream.flush();
+        } catch (EncryptionException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new EncryptionException("Failed to decrypt stream", e);
+        }
+    }
+
+    @Override
+    public void decryptStreamRange(InputStream inputStream, OutputStream outputStream, byte[] key,
+                                   long offset, long length) {
+        try {
+            byte[] header = inputStream.readNBytes(HEADER_SIZE);
+            if (!isSegmentedHeader(header)) {
+                throw new EncryptionException("Range decryption requires the segmented format");
+            }
+
+            // Seek straight to the first segment covering the range
+            int segmentSize = readSegmentSize(header);
+            long firstSegment = offset / segmentSize;
+            inputStream.skipNBytes(firstSegment * (IV_SIZE + segmentSize + TAG_BYTES));
+
+            decryptSegments(inputStream, outputStream, key, header,
+                    firstSegment, (int) (offset % segmentSize), length);
+            outputStream.flush();
+        } catch (EncryptionException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new EncryptionException("Failed to decrypt stream range", e);
+        }
+    }
+
+    @Override
+    public void decryptChannel(FileChannel channel, OutputStream outputStream, byte[] key,
+                               long offset, long length, int windowSize) {
+        try {
+            long fileSize = channel.size();
+            byte[] header = new byte[HEADER_SIZE];
+            readFully(channel, ByteBuffer.wrap(header), 0);
+
+            if (!isSegmentedHeader(header)) {
+                if (offset != 0 || length != Long.MAX_VALUE) {
+                    throw new EncryptionException("Range decryption requires the segmented format");
+                }
+                decryptLegacyStream(Channels.newInputStream(channel.position(0)), outputStream, key);
+                return;
+            }
+
+            int segmentSize = readSegmentSize(header);
+            int sealedSize = IV_SIZE + segmentSize + TAG_BYTES;
+            // An empty plaintext still has one (tag-only) segment
+            long segmentCount = Math.max(1, (fileSize - HEADER_SIZE + sealedSize - 1) / sealedSize);
+            long endSegment = length == Long.MAX_VALUE
+                    ? segmentCount
+                    : Math.min(segmentCount, (offset + length - 1) / segmentSize + 1);
+            int windowSegments = Math.max(1, windowSize / sealedSize);
+
+            decryptChannelSegments(channel, outputStream, key, header, fileSize, segmentCount,
+                    offset / segmentSize, endSegment, (int) (offset % segmentSize), length, windowSegments);
+            outputStream.flush();
+        } catch (EncryptionException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new EncryptionException("Failed to decrypt file", e);
+        }
+    }
+
+    /**
+     * Decrypt segments {@code [firstSegment, endSegment)} window by window.
+     * The segment count is known from the file size, so the last segment is
+     * identified without reading past it.
+     */
+    private void decryptChannelSegments(FileChannel channel, OutputStream outputStream, byte[] key,
+                                        byte[] header, long fileSize, long segmentCount,
+                                        long firstSegment, long endSegment, int skip, long length,
+                                        int windowSegments) throws Exception {
+        int segmentSize = readSegmentSize(header);
+        int sealedSize = IV_SIZE + segmentSize + TAG_BYTES;
+        ByteBuffer plainSegment = bufferPool.acquire(segmentSize);
+        // Direct, so positional reads land in it without an intermediate copy
+        ByteBuffer window = bufferPool.acquireDirect(windowSegments * sealedSize);
+
+        try (CipherPool.Lease lease = cipherPool.borrow(transformation, keyAlgorithm, key)) {
+            Cipher cipher = lease.cipher();
+            byte[] iv = new byte[IV_SIZE];
+            byte[] aad = new byte[header.length + SEGMENT_AAD_SUFFIX];
+
+            long segmentIndex = firstSegment;
+            long remaining = length;
+
+            while (remaining > 0 && segmentIndex < endSegment) {
+                long windowStart = HEADER_SIZE + segmentIndex * sealedSize;
+                long windowEnd = Math.min(fileSize,
+                        HEADER_SIZE + Math.min(endSegment, segmentIndex + windowSegments) * sealedSize);
+                int windowLength = (int) (windowEnd - windowStart);
+
+                window.clear().limit(windowLength);
+                readFully(channel, window, windowStart);
+
+                int position = 0;
+                while (position < windowLength && remaining > 0) {
+                    int sealedLength = Math.min(sealedSize, windowLength - position) - IV_SIZE;
+                    if (sealedLength < TAG_BYTES) {
+                        throw new EncryptionException("Encrypted stream is truncated");
+                    }
+                    window.get(position, iv);
+
+                    initCipher(cipher, Cipher.DECRYPT_MODE, lease.keySpec(), iv, 0);
+                    cipher.updateAAD(segmentAad(aad, header, segmentIndex, segmentIndex == segmentCount - 1));
+
+                    plainSegment.clear();
+                    int plainLength = cipher.doFinal(window.slice(position + IV_SIZE, sealedLength), plainSegment);
+
+                    int toWrite = (int) Math.min(plainLength - skip, remaining);
+                    if (toWrite > 0) {
+                        outputStream.write(plainSegment.array(), skip, toWrite);
+                        remaining -= toWrite;
+                    }
+                    skip = 0;
+                    position += IV_SIZE + sealedLength;
+                    segmentIndex++;
+                }
+            }
+
+            if (remaining > 0 && length != Long.MAX_VALUE) {
+                throw new EncryptionException("Requested range exceeds encrypted stream");
+            }
+        } finally {
+            bufferPool.release(plainSegment);
+            bufferPool.release(window);
+        }
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        int start = buffer.position();
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position() - start) < 0) {
+                break; // short file; callers detect truncation from the bytes present
+            }
+        }
+        buffer.flip();
+    }
+
+    /**
+     * Decrypt consecutive segments starting at the current stream position,
+     * writing at most {@code length} plaintext bytes beginning {@code skip}
+     * bytes into the first segment.
+     */
+    private void decryptSegments(InputStream inputStream, OutputStream outputStream, byte[] key,
+                                 byte[] header, long firstSegment, int skip, long length)
+            throws Exception {
+        int segmentSize = readSegmentSize(header);
+        ByteBuffer sealedSegment = bufferPool.acquire(segmentSize + TAG_BYTES);
+        ByteBuffer plainSegment = bufferPool.acquire(segmentSize);
+
+        try (CipherPool.Lease lease = cipherPool.borrow(transformation, keyAlgorithm, key)) {
+            Cipher cipher = lease.cipher();
+            PushbackInputStream input = new PushbackInputStream(inputStream, 1);
+            byte[] iv = new byte[IV_SIZE];
+            byte[] aad = new byte[header.length + SEGMENT_AAD_SUFFIX];
+
+            long segmentIndex = firstSegment;
+            long remaining = length;
+            boolean lastSegment = false;
+
+            while (remaining > 0 && !lastSegment) {
+                if (input.readNBytes(iv, 0, IV_SIZE) != IV_SIZE) {
+                    throw new EncryptionException("Encrypted stream is truncated");
+                }
+                int sealedLength = input.readNBytes(sealedSegment.array(), 0, sealedSegment.capacity());
+                if (sealedLength < TAG_BYTES) {
+                    throw new EncryptionException("Encrypted stream is truncated");
+                }
+                lastSegment = sealedLength < sealedSegment.capacity() || isAtEnd(input);
+
+                initCipher(cipher, Cipher.DECRYPT_MODE, lease.keySpec(), iv, 0);
+                cipher.updateAAD(segmentAad(aad, header, segmentIndex, lastSegment));
+
+                sealedSegment.clear().limit(sealedLength);
+                plainSegment.clear();
+                int plainLength = cipher.doFinal(sealedSegment, plainSegment);
+
+                int toWrite = (int) Math.min(plainLength - skip, remaining);
+                if (toWrite > 0) {
+                    outputStream.write(plainSegment.array(), skip, toWrite);
+                    remaining -= toWrite;
+                }
+                skip = 0;
+                segmentIndex++;
+            }
+
+            if (remaining > 0 && length != Long.MAX_VALUE) {
+                throw new EncryptionException("Requested range exceeds encrypted stream");
+            }
+        } finally {
+            bufferPool.release(plainSegment);
+            bufferPool.release(sealedSegment);
+        }
+    }
+
+    /**
+     * Decrypt a file written before segmentation: one IV followed by a single AEAD stream
+     */
+    private void decryptLegacyStream(InputStream inputStream, OutputStream outputStream, byte[] key)
+            throws Exception {
+        // Read IV
+        byte[] iv = new byte[IV_SIZE];
+        int ivBytesRead = inputStream.readNBytes(iv, 0, IV_SIZE);
+        if (ivBytesRead != IV_SIZE) {
+            throw new EncryptionException("Failed to read IV from encrypted stream");
+        }
+
+        ByteBuffer buffer = bufferPool.acquire();
+        try (CipherPool.Lease lease = cipherPool.borrow(transformation, keyAlgorithm, key)) {
+            Cipher cipher = lease.cipher();
+            initCipher(cipher, Cipher.DECRYPT_MODE, lease.keySpec(), iv, 0);
+
+            // Decrypt and write data
+            byte[] readBuffer = buffer.array();
+            int bytesRead;
+            while ((bytesRead = inputStream.read(readBuffer)) != -1) {
+                byte[] output = cipher.update(readBuffer, 0, bytesRead);
+                if (output != null) {
+                    outputStream.write(output);
+                }
+            }
+
+            // Write final block
+            byte[] finalBlock = cipher.doFinal();
+            if (finalBlock != null) {
+                outputStream.write(finalBlock);
+            }
+
+            outputStream.flush();
+        } finally {
+            bufferPool.release(buffer);
+        }
+    }
+
+    /**
+     * Build the segmented format header: magic, version and plaintext segment size
+     */
+    private static byte[] buildHeader(int segmentSize) {
+        return ByteBuffer.allocate(HEADER_SIZE)
+                .put(SEGMENTED_MAGIC)
+                .put(SEGMENTED_VERSION)
+                .putInt(segmentSize)
+                .array();
+    }
+
+    private static boolean isSegmentedHeader(byte[] header) {
+        if (header.length != HEADER_SIZE || header[SEGMENTED_MAGIC.length] != SEGMENTED_VERSION) {
+            return false;
+        }
+        for (int i = 0; i < SEGMENTED_MAGIC.length; i++) {
+            if (header[i] != SEGMENTED_MAGIC[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int readSegmentSize(byte[] header) {
+        int segmentSize = ByteBuffer.wrap(header, SEGMENTED_MAGIC.length + 1, Integer.BYTES).getInt();
+        if (segmentSize <= 0 || segmentSize > MAX_SEGMENT_SIZE) {
+            throw new EncryptionException("Invalid segment size in encrypted stream: " + segmentSize);
+        }
+        return segmentSize;
+    }
+
+    /**
+     * Fill the AAD for a segment: header || segment index || last-segment flag.
+     * Binding the index and flag prevents reordering and truncation at a segment boundary.
+     */
+    private static byte[] segmentAad(byte[] aad, byte[] header, long segmentIndex, boolean lastSegment) {
+        ByteBuffer.wrap(aad)
+                .put(header)
+                .putLong(segmentIndex)
+                .put(lastSegment ? (byte) 1 : (byte) 0);
+        return aad;
+    }
+
+    private static boolean isAtEnd(PushbackInputStream input) throws IOException {
+        int next = input.read();
+        if (next == -1) {
+            return true;
+        }
+        input.unread(next);
+        return false;
+    }
+
+    @Override
+    public byte[] generateKey() {
+        try {
+            KeyGenerator keyGenerator = KeyGenerator.getInstance(keyAlgorithm);
+            keyGenerator.init(KEY_SIZE, randomSource.current());
+            SecretKey secretKey = keyGenerator.generateKey();
+            return secretKey.getEncoded();
+        } catch (Exception e) {
+            throw new EncryptionException("Failed to generate encryption key", e);
+        }
+    }
+
+    @Override
+    public String getAlgorithmName() {
+        return transformation;
+    }
+
+    /**
+     * Buffers for one segment of a parallel stream; recycled within a single call
+     */
+    private static final class SealedSegment {
+        private final byte[] iv = new byte[IV_SIZE];
+        private final ByteBuffer plain = ByteBuffer.allocate(SEGMENT_SIZE);
+        private final ByteBuffer sealed = ByteBuffer.allocate(SEGMENT_SIZE + TAG_BYTES);
+        private int plainLength;
+        private int sealedLength;
+
+        private void read(InputStream inputStream) throws IOException {
+            plainLength = inputStream.readNBytes(plain.array(), 0, SEGMENT_SIZE);
+        }
+    }
+}
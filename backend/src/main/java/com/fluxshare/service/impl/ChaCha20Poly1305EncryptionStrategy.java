@@ -0,0 +1,54 @@
+package com.fluxshare.service.impl;
+
+import com.fluxshare.util.BufferPool;
+import com.fluxshare.util.RandomSource;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.security.GeneralSecurityException;
+import java.security.InvalidKeyException;
+import java.security.spec.AlgorithmParameterSpec;
+
+/**
+ * ChaCha20-Poly1305 encryption strategy implementation.
+ * Provides authenticated encryption with associated data (AEAD).
+ * Outperforms AES-GCM on hosts without AES hardware acceleration.
+ */
+@Component
+public class ChaCha20Poly1305EncryptionStrategy extends AbstractAeadEncryptionStrategy {
+
+    public static final String TRANSFORMATION = "ChaCha20-Poly1305";
+    private static final String ALGORITHM = "ChaCha20";
+
+    public ChaCha20Poly1305EncryptionStrategy(RandomSource randomSource, CipherPool cipherPool,
+                                              BufferPool bufferPool) {
+        super(TRANSFORMATION, ALGORITHM, randomSource, cipherPool, bufferPool);
+    }
+
+    @Override
+    protected AlgorithmParameterSpec parameterSpec(byte[] nonce, int offset, int length) {
+        return new IvParameterSpec(nonce, offset, length);
+    }
+
+    @Override
+    protected void initCipher(Cipher cipher, int mode, SecretKeySpec keySpec, byte[] nonce, int offset)
+            throws GeneralSecurityException {
+        try {
+            super.initCipher(cipher, mode, keySpec, nonce, offset);
+        } catch (InvalidKeyException e) {
+            // The JDK rejects re-initialization with the key and nonce it last used. Encryption
+            // always draws a fresh nonce, but a pooled cipher legitimately hits this when the
+            // same segment is decrypted twice; reset it with a different nonce and retry.
+            if (mode != Cipher.DECRYPT_MODE) {
+                throw e;
+            }
+            byte[] resetNonce = new byte[IV_SIZE];
+            System.arraycopy(nonce, offset, resetNonce, 0, IV_SIZE);
+            resetNonce[0] ^= 1;
+            cipher.init(Cipher.DECRYPT_MODE, keySpec, new IvParameterSpec(resetNonce));
+            super.initCipher(cipher, mode, keySpec, nonce, offset);
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package com.fluxshare.service.impl;
+
+import com.fluxshare.exception.EncryptionException;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.security.spec.AlgorithmParameterSpec;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Per-thread pool of {@link Cipher} instances.
+ * Avoids a provider lookup on every stream or message. Leases are returned
+ * by closing them; nested borrows on the same thread receive distinct
+ * ciphers. No key material outlives a lease: closing it drops the key spec
+ * and re-keys the cipher with zeros, overwriting its key schedule.
+ */
+@Component
+public class CipherPool {
+
+    private static final int MAX_IDLE_PER_THREAD = 4;
+    private static final int SCRUB_NONCE_SIZE = 12;
+    private static final int SCRUB_TAG_BITS = 128;
+
+    private final ThreadLocal<List<Lease>> idleLeases = ThreadLocal.withInitial(ArrayList::new);
+
+    /**
+     * Borrow a cipher for the given transformation with a key spec for {@code key}
+     *
+     * @param transformation The cipher transformation, e.g. AES/GCM/NoPadding
+     * @param keyAlgorithm The key algorithm, e.g. AES
+     * @param key The raw key bytes
+     * @return A lease to be closed when done
+     */
+    public Lease borrow(String transformation, String keyAlgorithm, byte[] key) {
+        List<Lease> idle = idleLeases.get();
+        Lease lease = null;
+        for (int i = idle.size() - 1; i >= 0; i--) {
+            if (idle.get(i).transformation.equals(transformation)) {
+                lease = idle.remove(i);
+                break;
+            }
+        }
+
+        if (lease == null) {
+            try {
+                lease = new Lease(transformation, Cipher.getInstance(transformation));
+            } catch (Exception e) {
+                throw new EncryptionException("Failed to create cipher: " + transformation, e);
+            }
+        }
+
+        lease.bindKey(keyAlgorithm, key);
+        return lease;
+    }
+
+    private void release(Lease lease) {
+        List<Lease> idle = idleLeases.get();
+        if (lease.scrub() && idle.size() < MAX_IDLE_PER_THREAD) {
+            idle.add(lease);
+        }
+    }
+
+    /**
+     * A borrowed cipher and the key spec bound to it
+     */
+    public final class Lease implements AutoCloseable {
+        private final String transformation;
+        private final Cipher cipher;
+        private SecretKeySpec keySpec;
+        private int keyLength;
+
+        private Lease(String transformation, Cipher cipher) {
+            this.transformation = transformation;
+            this.cipher = cipher;
+        }
+
+        private void bindKey(String keyAlgorithm, byte[] key) {
+            keySpec = new SecretKeySpec(key, keyAlgorithm);
+            keyLength = key.length;
+        }
+
+        /**
+         * Forget the bound key and re-init the cipher with an all-zero key of
+         * the same size, so the pooled instance holds no usable key schedule
+         *
+         * @return false if the cipher could not be re-keyed and must not be pooled
+         */
+        private boolean scrub() {
+            SecretKeySpec zeroKey = new SecretKeySpec(new byte[keyLength], keySpec.getAlgorithm());
+            keySpec = null;
+
+            // A fresh nonce each time; ChaCha20 refuses a repeated key/nonce pair
+            byte[] nonce = new byte[SCRUB_NONCE_SIZE];
+            ThreadLocalRandom.current().nextBytes(nonce);
+            AlgorithmParameterSpec params = transformation.contains("/GCM/")
+                    ? new GCMParameterSpec(SCRUB_TAG_BITS, nonce)
+                    : new IvParameterSpec(nonce);
+            try {
+                cipher.init(Cipher.ENCRYPT_MODE, zeroKey, params);
+                return true;
+            } catch (Exception e) {
+                return false;
+            }
+        }
+
+        public Cipher cipher() {
+            return cipher;
+        }
+
+        public SecretKeySpec keySpec() {
+            return keySpec;
+        }
+
+        @Override
+        public void close() {
+            release(this);
+        }
+    }
+}
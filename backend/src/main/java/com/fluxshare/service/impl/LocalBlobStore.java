@@ -0,0 +1,194 @@
+package com.fluxshare.service.impl;
+
+import com.fluxshare.exception.FileStorageException;
+import com.fluxshare.service.BlobStore;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.io.FileUtils;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileSystemException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.UUID;
+
+/**
+ * Blob store keeping objects as files on the local file system; storage keys
+ * are file paths. Writes go to a temporary sibling that is renamed into place,
+ * so readers never see a partial file.
+ */
+@Component
+@ConditionalOnProperty(name = "fluxshare.storage.backend", havingValue = "local", matchIfMissing = true)
+@Slf4j
+public class LocalBlobStore implements BlobStore {
+
+    @Value("${fluxshare.storage.base-path:./storage/encrypted}")
+    private String basePath;
+
+    @Value("${fluxshare.storage.temp-path:./storage/temp}")
+    private String tempPath;
+
+    @Override
+    public void initialize() {
+        try {
+            Files.createDirectories(Paths.get(basePath));
+            Files.createDirectories(Paths.get(tempPath));
+            log.info("Storage directories initialized: {} and {}", basePath, tempPath);
+        } catch (IOException e) {
+            throw new FileStorageException("Failed to initialize storage directories", e);
+        }
+    }
+
+    @Override
+    public void write(String key, ContentWriter writer) {
+        Path target = Paths.get(key);
+        Path partial = partialPath(target);
+
+        try {
+            Files.createDirectories(target.getParent());
+            try (OutputStream outputStream = new FileOutputStream(partial.toFile())) {
+                writer.writeTo(outputStream);
+            }
+            moveAtomically(partial, target);
+        } catch (IOException e) {
+            deleteQuietly(partial);
+            throw new FileStorageException("Failed to write file: " + key, e);
+        } catch (RuntimeException e) {
+            deleteQuietly(partial);
+            throw e;
+        }
+    }
+
+    @Override
+    public InputStream openStream(String key) {
+        try {
+            // FileInputStream.skip seeks, so ranges are read without scanning the prefix
+            return new FileInputStream(key);
+        } catch (IOException e) {
+            throw new FileStorageException("Failed to open file: " + key, e);
+        }
+    }
+
+    @Override
+    public FileChannel openChannel(String key) {
+        try {
+            return FileChannel.open(Paths.get(key), StandardOpenOption.READ);
+        } catch (IOException e) {
+            throw new FileStorageException("Failed to open file: " + key, e);
+        }
+    }
+
+    @Override
+    public Path localPath(String key) {
+        return Paths.get(key);
+    }
+
+    @Override
+    public long size(String key) {
+        try {
+            return Files.size(Paths.get(key));
+        } catch (IOException e) {
+            throw new FileStorageException("Failed to read size of file: " + key, e);
+        }
+    }
+
+    @Override
+    public boolean exists(String key) {
+        return Files.exists(Paths.get(key));
+    }
+
+    @Override
+    public void delete(String key) {
+        try {
+            Files.deleteIfExists(Paths.get(key));
+        } catch (IOException e) {
+            throw new FileStorageException("Failed to delete file: " + key, e);
+        }
+    }
+
+    @Override
+    public void deleteDirectory(String prefix) {
+        try {
+            FileUtils.deleteDirectory(Paths.get(prefix).toFile());
+        } catch (IOException e) {
+            throw new FileStorageException("Failed to delete directory: " + prefix, e);
+        }
+    }
+
+    /**
+     * Hard-links the file where possible (no data is copied), falling back to a
+     * copy across file systems. The target is replaced atomically.
+     */
+    @Override
+    public void copy(String sourceKey, String targetKey) {
+        Path source = Paths.get(sourceKey);
+        Path target = Paths.get(targetKey);
+        Path partial = partialPath(target);
+
+        try {
+            if (Files.exists(target) && Files.isSameFile(source, target)) {
+                return;
+            }
+            Files.createDirectories(target.getParent());
+            try {
+                Files.createLink(partial, source);
+            } catch (NoSuchFileException e) {
+                throw e;
+            } catch (UnsupportedOperationException | FileSystemException e) {
+                Files.copy(source, partial, StandardCopyOption.REPLACE_EXISTING);
+            }
+            moveAtomically(partial, target);
+        } catch (IOException e) {
+            deleteQuietly(partial);
+            throw new FileStorageException("Failed to copy file " + sourceKey + " to " + targetKey, e);
+        }
+    }
+
+    @Override
+    public void move(String sourceKey, String targetKey) {
+        Path target = Paths.get(targetKey);
+        try {
+            Files.createDirectories(target.getParent());
+            moveAtomically(Paths.get(sourceKey), target);
+        } catch (IOException e) {
+            throw new FileStorageException("Failed to move file " + sourceKey + " to " + targetKey, e);
+        }
+    }
+
+    @Override
+    public String getType() {
+        return "local";
+    }
+
+    private Path partialPath(Path target) {
+        return target.resolveSibling(target.getFileName() + "." + UUID.randomUUID() + ".part");
+    }
+
+    private void moveAtomically(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            log.warn("Failed to delete partial file: {}", path, e);
+        }
+    }
+}
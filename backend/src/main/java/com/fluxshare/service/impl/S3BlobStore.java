@@ -0,0 +1,689 @@
+package com.fluxshare.service.impl;
+
+import com.fluxshare.exception.FileStorageException;
+import com.fluxshare.service.BlobStore;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.w3c.dom.Document;
+import org.w3c.dom.NodeList;
+import org.xml.sax.InputSource;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import javax.xml.XMLConstants;
+import javax.xml.parsers.DocumentBuilderFactory;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.StringReader;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Blob store keeping objects in an S3-compatible bucket (AWS S3, MinIO, Ceph, ...).
+ * Talks to the REST API directly with Signature Version 4 over the JDK HTTP client.
+ *
+ * Storage keys map to object keys with leading "./" and "/" removed. Large
+ * objects are written with multipart upload, sending one part while the next
+ * is filled; reads use ranged GETs, and skipping ahead reopens the object at
+ * the new offset instead of downloading the skipped bytes.
+ */
+@Component
+@ConditionalOnProperty(name = "fluxshare.storage.backend", havingValue = "s3")
+@Slf4j
+public class S3BlobStore implements BlobStore {
+
+    /** S3 rejects non-final parts smaller than this */
+    private static final int MIN_PART_SIZE = 5 * 1024 * 1024;
+
+    /** S3 copies at most this much with one CopyObject or UploadPartCopy request */
+    private static final long MAX_COPY_SIZE = 5L * 1024 * 1024 * 1024;
+
+    /** Skips up to this size read through the open response instead of issuing a new GET */
+    private static final long SKIP_READ_THRESHOLD = 256 * 1024;
+
+    private static final DateTimeFormatter AMZ_DATE = DateTimeFormatter.ofPattern("yyyyMMdd'T'HHmmss'Z'");
+    private static final byte[] EMPTY = new byte[0];
+
+    private final HttpClient httpClient;
+    private final URI endpoint;
+    private final String region;
+    private final String bucket;
+    private final String accessKey;
+    private final String secretKey;
+    private final boolean pathStyle;
+    private final int partSize;
+    private final long maxCopySize;
+    private final Clock clock;
+
+    @Autowired
+    public S3BlobStore(
+            @Value("${fluxshare.storage.s3.endpoint:https://s3.amazonaws.com}") String endpoint,
+            @Value("${fluxshare.storage.s3.region:us-east-1}") String region,
+            @Value("${fluxshare.storage.s3.bucket}") String bucket,
+            @Value("${fluxshare.storage.s3.access-key}") String accessKey,
+            @Value("${fluxshare.storage.s3.secret-key}") String secretKey,
+            @Value("${fluxshare.storage.s3.path-style:true}") boolean pathStyle,
+            @Value("${fluxshare.storage.s3.part-size:8388608}") int partSize) {
+        this(endpoint, region, bucket, accessKey, secretKey, pathStyle, partSize, MAX_COPY_SIZE, Clock.systemUTC());
+    }
+
+    /**
+     * Create a store signing requests with the time of {@code clock} and
+     * copying objects larger than {@code maxCopySize} in parts of that size
+     */
+    S3BlobStore(String endpoint, String region, String bucket, String accessKey, String secretKey,
+                boolean pathStyle, int partSize, long maxCopySize, Clock clock) {
+        this.httpClient = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(10)).build();
+        this.endpoint = URI.create(endpoint);
+        this.region = region;
+        this.bucket = bucket;
+        this.accessKey = accessKey;
+        this.secretKey = secretKey;
+        this.pathStyle = pathStyle;
+        this.partSize = Math.max(partSize, MIN_PART_SIZE);
+        this.maxCopySize = maxCopySize;
+        this.clock = clock;
+    }
+
+    @Override
+    public void initialize() {
+        HttpResponse<String> response = send("HEAD", "", Map.of(), Map.of(), null);
+        if (response.statusCode() / 100 != 2) {
+            throw new FileStorageException("S3 bucket " + bucket + " is not accessible (HTTP "
+                    + response.statusCode() + ")");
+        }
+        log.info("Using S3 bucket {} at {}", bucket, endpoint);
+    }
+
+    @Override
+    public void write(String key, ContentWriter writer) {
+        MultipartUploadStream outputStream = new MultipartUploadStream(objectKey(key));
+        try {
+            writer.writeTo(outputStream);
+            outputStream.finish();
+        } catch (IOException e) {
+            outputStream.abort();
+            throw new FileStorageException("Failed to write object: " + key, e);
+        } catch (RuntimeException e) {
+            outputStream.abort();
+            throw e;
+        }
+    }
+
+    @Override
+    public InputStream openStream(String key) {
+        RangedObjectStream stream = new RangedObjectStream(objectKey(key));
+        try {
+            stream.open(); // a missing object fails here, before the caller has read anything
+        } catch (IOException e) {
+            throw new FileStorageException("Failed to open object: " + key, e);
+        }
+        return stream;
+    }
+
+    @Override
+    public FileChannel openChannel(String key) {
+        return null; // objects are only reachable over HTTP
+    }
+
+    @Override
+    public Path localPath(String key) {
+        return null;
+    }
+
+    @Override
+    public long size(String key) {
+        HttpResponse<String> response = send("HEAD", objectKey(key), Map.of(), Map.of(), null);
+        if (response.statusCode() == 404) {
+            throw new FileStorageException("Object not found: " + key, new NoSuchFileException(key));
+        }
+        check(response, "HEAD " + key);
+        return response.headers().firstValueAsLong("Content-Length")
+                .orElseThrow(() -> new FileStorageException("No content length for object: " + key));
+    }
+
+    @Override
+    public boolean exists(String key) {
+        HttpResponse<String> response = send("HEAD", objectKey(key), Map.of(), Map.of(), null);
+        if (response.statusCode() == 404) {
+            return false;
+        }
+        check(response, "HEAD " + key);
+        return true;
+    }
+
+    @Override
+    public void delete(String key) {
+        HttpResponse<String> response = send("DELETE", objectKey(key), Map.of(), Map.of(), null);
+        if (response.statusCode() != 404) {
+            check(response, "DELETE " + key);
+        }
+    }
+
+    @Override
+    public void deleteDirectory(String prefix) {
+        String objectPrefix = objectKey(prefix) + "/";
+        String continuationToken = null;
+
+        do {
+            Map<String, String> query = new TreeMap<>();
+            query.put("list-type", "2");
+            query.put("prefix", objectPrefix);
+            if (continuationToken != null) {
+                query.put("continuation-token", continuationToken);
+            }
+
+            HttpResponse<String> response = send("GET", "", query, Map.of(), null);
+            check(response, "LIST " + prefix);
+
+            for (String objectKey : xmlValues(response.body(), "Key")) {
+                HttpResponse<String> deleted = send("DELETE", objectKey, Map.of(), Map.of(), null);
+                if (deleted.statusCode() != 404) {
+                    check(deleted, "DELETE " + objectKey);
+                }
+            }
+
+            List<String> tokens = xmlValues(response.body(), "NextContinuationToken");
+            continuationToken = tokens.isEmpty() ? null : tokens.get(0);
+        } while (continuationToken != null);
+    }
+
+    /**
+     * Server-side copy. A single copy request takes objects of up to 5 GB;
+     * larger ones, e.g. big resumable uploads, are copied as a multipart
+     * upload of ranged part copies.
+     */
+    @Override
+    public void copy(String sourceKey, String targetKey) {
+        String copySource = "/" + bucket + "/" + encodePath(objectKey(sourceKey));
+        long size = size(sourceKey);
+        if (size <= maxCopySize) {
+            HttpResponse<String> response = send("PUT", objectKey(targetKey), Map.of(),
+                    Map.of("x-amz-copy-source", copySource), null);
+            check(response, "COPY " + sourceKey);
+            return;
+        }
+
+        String objectKey = objectKey(targetKey);
+        String uploadId = initiateMultipartUpload(objectKey);
+        try {
+            List<String> etags = new ArrayList<>();
+            for (long start = 0; start < size; start += maxCopySize) {
+                long end = Math.min(start + maxCopySize, size) - 1;
+                Map<String, String> query = new LinkedHashMap<>();
+                query.put("partNumber", String.valueOf(etags.size() + 1));
+                query.put("uploadId", uploadId);
+                Map<String, String> headers = new LinkedHashMap<>();
+                headers.put("x-amz-copy-source", copySource);
+                headers.put("x-amz-copy-source-range", "bytes=" + start + "-" + end);
+
+                HttpResponse<String> response = send("PUT", objectKey, query, headers, null);
+                check(response, "COPY PART " + (etags.size() + 1) + " of " + sourceKey);
+                List<String> etag = xmlValues(response.body(), "ETag");
+                if (etag.isEmpty()) {
+                    throw new FileStorageException("S3 returned no ETag for copied part of " + sourceKey);
+                }
+                etags.add(etag.get(0));
+            }
+            completeMultipartUpload(objectKey, uploadId, etags);
+        } catch (RuntimeException e) {
+            abortMultipartUpload(objectKey, uploadId);
+            throw e;
+        }
+    }
+
+    @Override
+    public void move(String sourceKey, String targetKey) {
+        copy(sourceKey, targetKey);
+        delete(sourceKey);
+    }
+
+    @Override
+    public String getType() {
+        return "s3";
+    }
+
+    /**
+     * Map a storage key to an object key
+     */
+    private String objectKey(String key) {
+        String normalized = Paths.get(key).normalize().toString().replace('\\', '/');
+        while (normalized.startsWith("/")) {
+            normalized = normalized.substring(1);
+        }
+        return normalized;
+    }
+
+    private HttpResponse<String> send(String method, String objectKey, Map<String, String> query,
+                                      Map<String, String> headers, byte[] body) {
+        try {
+            return httpClient.send(request(method, objectKey, query, headers, body),
+                    HttpResponse.BodyHandlers.ofString());
+        } catch (IOException e) {
+            throw new FileStorageException("S3 request failed: " + method + " " + objectKey, e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new FileStorageException("S3 request interrupted: " + method + " " + objectKey, e);
+        }
+    }
+
+    private void check(HttpResponse<String> response, String action) {
+        // Copy and complete-upload can report errors in the body of a 200 response
+        boolean failed = response.statusCode() / 100 != 2
+                || (response.body() != null && response.body().contains("<Error>"));
+        if (failed) {
+            List<String> codes = xmlValues(response.body(), "Code");
+            throw new FileStorageException(action + " failed with HTTP " + response.statusCode()
+                    + (codes.isEmpty() ? "" : " (" + codes.get(0) + ")"));
+        }
+    }
+
+    /**
+     * Build a request signed with AWS Signature Version 4
+     */
+    HttpRequest request(String method, String objectKey, Map<String, String> query,
+                                Map<String, String> headers, byte[] body) {
+        String canonicalQuery = canonicalQuery(query);
+        String path = pathStyle
+                ? "/" + bucket + (objectKey.isEmpty() ? "" : "/" + encodePath(objectKey))
+                : "/" + encodePath(objectKey);
+        String authority = pathStyle ? endpoint.getRawAuthority() : bucket + "." + endpoint.getRawAuthority();
+        URI uri = URI.create(endpoint.getScheme() + "://" + authority + path
+                + (canonicalQuery.isEmpty() ? "" : "?" + canonicalQuery));
+
+        String amzDate = AMZ_DATE.format(ZonedDateTime.now(clock.withZone(ZoneOffset.UTC)));
+        String payloadHash = HexFormat.of().formatHex(sha256(body != null ? body : EMPTY));
+
+        TreeMap<String, String> signedHeaders = new TreeMap<>();
+        headers.forEach((name, value) -> signedHeaders.put(name.toLowerCase(Locale.ROOT), value.trim()));
+        signedHeaders.put("host", uri.getPort() == -1 ? uri.getHost() : uri.getHost() + ":" + uri.getPort());
+        signedHeaders.put("x-amz-content-sha256", payloadHash);
+        signedHeaders.put("x-amz-date", amzDate);
+
+        HttpRequest.Builder builder = HttpRequest.newBuilder(uri)
+                .timeout(Duration.ofMinutes(5))
+                .method(method, body != null
+                        ? HttpRequest.BodyPublishers.ofByteArray(body)
+                        : HttpRequest.BodyPublishers.noBody());
+        signedHeaders.forEach((name, value) -> {
+            if (!name.equals("host")) {
+                builder.header(name, value); // host is set by the client from the URI
+            }
+        });
+        builder.header("Authorization",
+                authorization(method, uri.getRawPath(), canonicalQuery, signedHeaders, payloadHash, amzDate));
+        return builder.build();
+    }
+
+    private String authorization(String method, String rawPath, String canonicalQuery,
+                                 TreeMap<String, String> signedHeaders, String payloadHash, String amzDate) {
+        StringBuilder canonicalHeaders = new StringBuilder();
+        signedHeaders.forEach((name, value) -> canonicalHeaders.append(name).append(':').append(value).append('\n'));
+        String signedHeaderNames = String.join(";", signedHeaders.keySet());
+
+        String canonicalRequest = method + "\n" + rawPath + "\n" + canonicalQuery + "\n"
+                + canonicalHeaders + "\n" + signedHeaderNames + "\n" + payloadHash;
+
+        String date = amzDate.substring(0, 8);
+        String scope = date + "/" + region + "/s3/aws4_request";
+        String stringToSign = "AWS4-HMAC-SHA256\n" + amzDate + "\n" + scope + "\n"
+                + HexFormat.of().formatHex(sha256(canonicalRequest.getBytes(StandardCharsets.UTF_8)));
+
+        byte[] signingKey = hmac(("AWS4" + secretKey).getBytes(StandardCharsets.UTF_8), date);
+        signingKey = hmac(signingKey, region);
+        signingKey = hmac(signingKey, "s3");
+        signingKey = hmac(signingKey, "aws4_request");
+        String signature = HexFormat.of().formatHex(hmac(signingKey, stringToSign));
+
+        return "AWS4-HMAC-SHA256 Credential=" + accessKey + "/" + scope
+                + ", SignedHeaders=" + signedHeaderNames + ", Signature=" + signature;
+    }
+
+    private static String canonicalQuery(Map<String, String> query) {
+        StringBuilder result = new StringBuilder();
+        new TreeMap<>(query).forEach((name, value) -> {
+            if (result.length() > 0) {
+                result.append('&');
+            }
+            result.append(encode(name)).append('=').append(encode(value));
+        });
+        return result.toString();
+    }
+
+    private static String encodePath(String objectKey) {
+        StringBuilder result = new StringBuilder();
+        for (String segment : objectKey.split("/", -1)) {
+            if (result.length() > 0) {
+                result.append('/');
+            }
+            result.append(encode(segment));
+        }
+        return result.toString();
+    }
+
+    /**
+     * RFC 3986 percent-encoding as required by SigV4
+     */
+    private static String encode(String value) {
+        return URLEncoder.encode(value, StandardCharsets.UTF_8)
+                .replace("+", "%20")
+                .replace("*", "%2A")
+                .replace("%7E", "~");
+    }
+
+    private static byte[] sha256(byte[] data) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(data);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    private static byte[] hmac(byte[] key, String data) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(key, "HmacSHA256"));
+            return mac.doFinal(data.getBytes(StandardCharsets.UTF_8));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HmacSHA256 not available", e);
+        }
+    }
+
+    private String initiateMultipartUpload(String objectKey) {
+        HttpResponse<String> response = send("POST", objectKey, Map.of("uploads", ""), Map.of(), null);
+        check(response, "INITIATE " + objectKey);
+        return xmlValues(response.body(), "UploadId").get(0);
+    }
+
+    private void completeMultipartUpload(String objectKey, String uploadId, List<String> etags) {
+        StringBuilder xml = new StringBuilder("<CompleteMultipartUpload>");
+        for (int i = 0; i < etags.size(); i++) {
+            xml.append("<Part><PartNumber>").append(i + 1).append("</PartNumber><ETag>")
+                    .append(etags.get(i).replace("&", "&amp;").replace("\"", "&quot;"))
+                    .append("</ETag></Part>");
+        }
+        xml.append("</CompleteMultipartUpload>");
+
+        check(send("POST", objectKey, Map.of("uploadId", uploadId), Map.of("content-type", "application/xml"),
+                xml.toString().getBytes(StandardCharsets.UTF_8)), "COMPLETE " + objectKey);
+        log.debug("Uploaded {} in {} parts", objectKey, etags.size());
+    }
+
+    /**
+     * Discard an unfinished upload so its parts do not linger in the bucket
+     */
+    private void abortMultipartUpload(String objectKey, String uploadId) {
+        try {
+            send("DELETE", objectKey, Map.of("uploadId", uploadId), Map.of(), null);
+        } catch (RuntimeException e) {
+            log.warn("Failed to abort multipart upload {} for {}", uploadId, objectKey, e);
+        }
+    }
+
+    private static List<String> xmlValues(String xml, String tagName) {
+        List<String> values = new ArrayList<>();
+        if (xml == null || xml.isBlank()) {
+            return values;
+        }
+        try {
+            DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+            factory.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, true);
+            factory.setFeature("http://apache.org/xml/features/disallow-doctype-decl", true);
+            Document document = factory.newDocumentBuilder().parse(new InputSource(new StringReader(xml)));
+            NodeList nodes = document.getElementsByTagName(tagName);
+            for (int i = 0; i < nodes.getLength(); i++) {
+                values.add(nodes.item(i).getTextContent());
+            }
+        } catch (Exception e) {
+            log.warn("Unparseable S3 response: {}", xml.length() > 200 ? xml.substring(0, 200) : xml);
+        }
+        return values;
+    }
+
+    /**
+     * Output stream buffering one part at a time. Objects smaller than a part
+     * are sent with a single PUT; larger ones become a multipart upload with
+     * one part in flight while the next is filled.
+     */
+    private final class MultipartUploadStream extends OutputStream {
+
+        private final String objectKey;
+        private final List<String> etags = new ArrayList<>();
+        private byte[] buffer = new byte[partSize];
+        private byte[] spareBuffer;
+        private int count;
+        private String uploadId;
+        private CompletableFuture<HttpResponse<String>> pendingPart;
+        private byte[] pendingBuffer;
+
+        MultipartUploadStream(String objectKey) {
+            this.objectKey = objectKey;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            if (count == buffer.length) {
+                sendPart();
+            }
+            buffer[count++] = (byte) b;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            while (len > 0) {
+                if (count == buffer.length) {
+                    sendPart();
+                }
+                int n = Math.min(len, buffer.length - count);
+                System.arraycopy(b, off, buffer, count, n);
+                count += n;
+                off += n;
+                len -= n;
+            }
+        }
+
+        /**
+         * Upload what is buffered and make the object visible
+         */
+        void finish() throws IOException {
+            if (uploadId == null) {
+                check(send("PUT", objectKey, Map.of(), Map.of(), Arrays.copyOf(buffer, count)), "PUT " + objectKey);
+                return;
+            }
+
+            if (count > 0) {
+                sendPart();
+            }
+            awaitPendingPart();
+            completeMultipartUpload(objectKey, uploadId, etags);
+        }
+
+        /**
+         * Discard an unfinished upload so its parts do not linger in the bucket
+         */
+        void abort() {
+            if (uploadId == null) {
+                return;
+            }
+            if (pendingPart != null) {
+                pendingPart.cancel(true);
+            }
+            abortMultipartUpload(objectKey, uploadId);
+        }
+
+        private void sendPart() throws IOException {
+            if (uploadId == null) {
+                uploadId = initiateMultipartUpload(objectKey);
+            }
+            awaitPendingPart();
+
+            byte[] part = count == buffer.length ? buffer : Arrays.copyOf(buffer, count);
+            Map<String, String> query = new LinkedHashMap<>();
+            query.put("partNumber", String.valueOf(etags.size() + 1));
+            query.put("uploadId", uploadId);
+            pendingPart = httpClient.sendAsync(request("PUT", objectKey, query, Map.of(), part),
+                    HttpResponse.BodyHandlers.ofString());
+            pendingBuffer = buffer;
+
+            buffer = spareBuffer != null ? spareBuffer : new byte[partSize];
+            spareBuffer = null;
+            count = 0;
+        }
+
+        private void awaitPendingPart() throws IOException {
+            if (pendingPart == null) {
+                return;
+            }
+            try {
+                HttpResponse<String> response = pendingPart.get();
+                check(response, "UPLOAD PART " + (etags.size() + 1) + " of " + objectKey);
+                etags.add(response.headers().firstValue("ETag")
+                        .orElseThrow(() -> new FileStorageException("S3 returned no ETag for part")));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted uploading " + objectKey);
+            } catch (ExecutionException e) {
+                throw new IOException("Failed to upload part of " + objectKey, e.getCause());
+            } finally {
+                pendingPart = null;
+                spareBuffer = pendingBuffer;
+                pendingBuffer = null;
+            }
+        }
+    }
+
+    /**
+     * Input stream over an object that is fetched with ranged GETs from the
+     * current position, so large skips become a new request
+     */
+    private final class RangedObjectStream extends InputStream {
+
+        private final String objectKey;
+        private long position;
+        private InputStream body;
+        private boolean endOfObject;
+
+        RangedObjectStream(String objectKey) {
+            this.objectKey = objectKey;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] single = new byte[1];
+            int n = read(single, 0, 1);
+            return n == -1 ? -1 : single[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            if (body == null && !endOfObject) {
+                open();
+            }
+            if (endOfObject) {
+                return -1;
+            }
+
+            int n = body.read(b, off, len);
+            if (n == -1) {
+                endOfObject = true;
+            } else {
+                position += n;
+            }
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            if (n <= 0 || endOfObject) {
+                return 0;
+            }
+            if (body != null && n <= SKIP_READ_THRESHOLD) {
+                long skipped = body.skip(n);
+                position += skipped;
+                return skipped;
+            }
+
+            // Reposition; the next read issues a GET from the new offset
+            closeBody();
+            position += n;
+            return n;
+        }
+
+        @Override
+        public void close() throws IOException {
+            closeBody();
+            endOfObject = true;
+        }
+
+        private void open() throws IOException {
+            HttpRequest request = request("GET", objectKey, Map.of(), Map.of("range", "bytes=" + position + "-"), null);
+            HttpResponse<InputStream> response;
+            try {
+                response = httpClient.send(request, HttpResponse.BodyHandlers.ofInputStream());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted reading " + objectKey);
+            }
+
+            int status = response.statusCode();
+            if (status == 416) {
+                response.body().close();
+                endOfObject = true; // positioned at or past the end
+                return;
+            }
+            if (status == 404) {
+                response.body().close();
+                throw new NoSuchFileException(objectKey);
+            }
+            if (status != 200 && status != 206) {
+                response.body().close();
+                throw new IOException("GET " + objectKey + " failed with HTTP " + status);
+            }
+
+            body = response.body();
+            if (status == 200 && position > 0) {
+                body.skipNBytes(position); // server ignored the range
+            }
+        }
+
+        private void closeBody() throws IOException {
+            if (body != null) {
+                body.close();
+                body = null;
+            }
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package com.fluxshare.util;
+
+import org.springframework.stereotype.Component;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Per-thread pool of reusable heap buffers for streaming I/O and crypto.
+ * Keeps steady-state upload and download paths from allocating a fresh
+ * buffer for every request. Buffers must be released on the thread that
+ * acquired them; nested acquisitions receive distinct buffers.
+ * Direct buffers, whose native memory is only freed by GC, are pooled too,
+ * but at most one per thread.
+ * Implements Singleton pattern.
+ */
+@Component
+public class BufferPool {
+
+    /** Standard buffer size for plain stream copies */
+    public static final int DEFAULT_BUFFER_SIZE = 8192;
+
+    private static final int MAX_IDLE_PER_THREAD = 8;
+
+    private final ThreadLocal<List<ByteBuffer>> idleBuffers = ThreadLocal.withInitial(ArrayList::new);
+    private final ThreadLocal<ByteBuffer> idleDirectBuffer = new ThreadLocal<>();
+
+    /**
+     * Acquire a cleared buffer with exactly the given capacity
+     *
+     * @param capacity The buffer capacity in bytes
+     * @return A heap buffer backed by an accessible array
+     */
+    public ByteBuffer acquire(int capacity) {
+        List<ByteBuffer> idle = idleBuffers.get();
+        for (int i = idle.size() - 1; i >= 0; i--) {
+            if (idle.get(i).capacity() == capacity) {
+                ByteBuffer buffer = idle.remove(i);
+                buffer.clear();
+                return buffer;
+            }
+        }
+        return ByteBuffer.allocate(capacity);
+    }
+
+    /**
+     * Acquire a buffer of the default stream copy size
+     *
+     * @return A cleared heap buffer
+     */
+    public ByteBuffer acquire() {
+        return acquire(DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * Acquire a cleared direct buffer with exactly the given capacity, for
+     * channel reads that should not be copied through a heap array
+     *
+     * @param capacity The buffer capacity in bytes
+     * @return A direct buffer
+     */
+    public ByteBuffer acquireDirect(int capacity) {
+        ByteBuffer buffer = idleDirectBuffer.get();
+        if (buffer != null && buffer.capacity() == capacity) {
+            idleDirectBuffer.remove();
+            return buffer.clear();
+        }
+        return ByteBuffer.allocateDirect(capacity);
+    }
+
+    /**
+     * Return a buffer to the calling thread's pool
+     *
+     * @param buffer The buffer to release (ignored if null)
+     */
+    public void release(ByteBuffer buffer) {
+        if (buffer == null) {
+            return;
+        }
+        if (buffer.isDirect()) {
+            idleDirectBuffer.set(buffer);
+            return;
+        }
+        if (!buffer.hasArray()) {
+            return;
+        }
+        List<ByteBuffer> idle = idleBuffers.get();
+        if (idle.size() < MAX_IDLE_PER_THREAD) {
+            idle.add(buffer);
+        }
+    }
+}
@@ -1,19 +1,20 @@
 package com.fluxshare.util;
 
+import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Component;
 
-import java.security.SecureRandom;
-import java.util.Random;
-
 /**
  * Utility class for generating unique share IDs.
  * Implements Singleton pattern.
  */
 @Component
+@RequiredArgsConstructor
 public class IdGeneratorUtil {
 
     private static final String CHARACTERS = "abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789";
-    private static final Random RANDOM = new SecureRandom();
+    private static final String URL_SAFE_CHARACTERS = "abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789-_";
+
+    private final RandomSource randomSource;
 
     /**
      * Generate a random alphanumeric ID of specified length
@@ -22,11 +23,7 @@ public class IdGeneratorUtil {
      * @return A random alphanumeric string
      */
     public String generateId(int length) {
-        StringBuilder sb = new StringBuilder(length);
-        for (int i = 0; i < length; i++) {
-            sb.append(CHARACTERS.charAt(RANDOM.nextInt(CHARACTERS.length())));
-        }
-        return sb.toString();
+        return randomSource.nextString(CHARACTERS, length);
     }
 
     /**
@@ -45,11 +42,6 @@ public class IdGeneratorUtil {
      * @return A URL-safe random string
      */
     public String generateUrlSafeId(int length) {
-        String urlSafeChars = "abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789-_";
-        StringBuilder sb = new StringBuilder(length);
-        for (int i = 0; i < length; i++) {
-            sb.append(urlSafeChars.charAt(RANDOM.nextInt(urlSafeChars.length())));
-        }
-        return sb.toString();
+        return randomSource.nextString(URL_SAFE_CHARACTERS, length);
     }
 }
@@ -46,6 +46,18 @@ public class MimeTypeUtil {
         }
     }
 
+    /**
+     * Detect MIME type from the leading bytes of a file, already read for
+     * other purposes; magic bytes take precedence over the extension
+     *
+     * @param head The first bytes of the file (Tika needs up to 64 KB)
+     * @param filename The filename (for extension-based detection)
+     * @return The detected MIME type
+     */
+    public String detectMimeType(byte[] head, String filename) {
+        return tika.detect(head, filename);
+    }
+
     /**
      * Detect MIME type from filename extension
      * 
@@ -149,6 +161,25 @@ public class MimeTypeUtil {
         return isImage(mimeType) || isText(mimeType) || isPdf(mimeType);
     }
 
+    /**
+     * Check if content of this type is worth compressing.
+     * Media, archives and office formats that are already compressed are excluded;
+     * unknown binary types are sampled before compression is applied.
+     *
+     * @param mimeType The MIME type to check
+     * @return true if compression may pay off
+     */
+    public boolean isCompressible(String mimeType) {
+        return isText(mimeType) || (mimeType != null && (
+            mimeType.equals("image/svg+xml") ||
+            mimeType.equals("image/bmp") ||
+            mimeType.equals("application/x-tar") ||
+            mimeType.equals("application/msword") ||
+            mimeType.equals("application/vnd.ms-excel") ||
+            mimeType.equals("application/octet-stream")
+        ));
+    }
+
     /**
      * Get file extension from filename
      * 
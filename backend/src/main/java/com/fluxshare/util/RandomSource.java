@@ -0,0 +1,112 @@
+package com.fluxshare.util;
+
+import org.springframework.stereotype.Component;
+
+import java.security.DrbgParameters;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+
+/**
+ * Contention-free source of cryptographic randomness.
+ * Each thread owns its own DRBG instance, so IV, key and ID generation never
+ * serialize on a shared {@link SecureRandom}. AEAD nonces are built from a
+ * per-thread random prefix plus a counter, which cannot repeat within a prefix.
+ * RandomSourceBenchmark (src/test) compares it with a shared SecureRandom.
+ * Implements Singleton pattern.
+ */
+@Component
+public class RandomSource {
+
+    private static final int NONCE_PREFIX_BYTES = 8;
+
+    private final ThreadLocal<SecureRandom> drbg = ThreadLocal.withInitial(RandomSource::newDrbg);
+    private final ThreadLocal<NonceSequence> nonces = ThreadLocal.withInitial(NonceSequence::new);
+
+    /**
+     * Get the calling thread's DRBG (for KeyGenerator and similar APIs)
+     *
+     * @return A SecureRandom owned by the current thread
+     */
+    public SecureRandom current() {
+        return drbg.get();
+    }
+
+    /**
+     * Fill a byte array with random bytes
+     *
+     * @param bytes The array to fill
+     */
+    public void nextBytes(byte[] bytes) {
+        drbg.get().nextBytes(bytes);
+    }
+
+    /**
+     * Fill a 12-byte AEAD nonce: 8-byte random per-thread prefix followed by
+     * a 4-byte counter. A new prefix is drawn before the counter wraps.
+     *
+     * @param nonce The nonce array to fill (at least 12 bytes)
+     */
+    public void nextNonce(byte[] nonce) {
+        nonces.get().next(nonce);
+    }
+
+    /**
+     * Build a random string over an alphabet from a single bulk draw.
+     * Bytes that would bias the result are rejected; the rare shortfall is
+     * covered by another draw.
+     *
+     * @param alphabet Allowed characters (at most 256)
+     * @param length Length of the string
+     * @return A uniformly random string
+     */
+    public String nextString(String alphabet, int length) {
+        int size = alphabet.length();
+        int limit = 256 - (256 % size); // largest multiple of size that fits in a byte
+        SecureRandom random = drbg.get();
+
+        StringBuilder sb = new StringBuilder(length);
+        byte[] bytes = new byte[length * 2];
+        while (sb.length() < length) {
+            random.nextBytes(bytes);
+            for (int i = 0; i < bytes.length && sb.length() < length; i++) {
+                int value = bytes[i] & 0xFF;
+                if (value < limit) {
+                    sb.append(alphabet.charAt(value % size));
+                }
+            }
+        }
+        return sb.toString();
+    }
+
+    private static SecureRandom newDrbg() {
+        try {
+            return SecureRandom.getInstance("DRBG",
+                    DrbgParameters.instantiation(256, DrbgParameters.Capability.RESEED_ONLY, null));
+        } catch (NoSuchAlgorithmException e) {
+            return new SecureRandom();
+        }
+    }
+
+    /**
+     * Per-thread nonce prefix and counter
+     */
+    private final class NonceSequence {
+        private final byte[] prefix = new byte[NONCE_PREFIX_BYTES];
+        private int counter;
+        private boolean exhausted = true;
+
+        private void next(byte[] nonce) {
+            if (exhausted) {
+                drbg.get().nextBytes(prefix);
+                counter = 0;
+                exhausted = false;
+            }
+            System.arraycopy(prefix, 0, nonce, 0, NONCE_PREFIX_BYTES);
+            nonce[NONCE_PREFIX_BYTES] = (byte) (counter >>> 24);
+            nonce[NONCE_PREFIX_BYTES + 1] = (byte) (counter >>> 16);
+            nonce[NONCE_PREFIX_BYTES + 2] = (byte) (counter >>> 8);
+            nonce[NONCE_PREFIX_BYTES + 3] = (byte) counter;
+            exhausted = ++counter == 0;
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package com.fluxshare.util;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.UUID;
+
+/**
+ * Utility class mapping stored files to their on-disk location.
+ * The {@code sharded} layout fans files out over hash-prefixed directories
+ * (e.g. {@code ab/cd/}) so no directory grows to millions of entries; with
+ * {@code per-share-directory} each share gets its own leaf directory that can
+ * be removed in one go. The {@code flat} layout keeps everything in the base path.
+ * Implements Singleton pattern.
+ */
+@Component
+public class StoragePathUtil {
+
+    /** Layout with every file directly under the base path */
+    public static final String LAYOUT_FLAT = "flat";
+
+    /** Layout with hash-prefixed fan-out directories */
+    public static final String LAYOUT_SHARDED = "sharded";
+
+    /** Directory under the base path holding deduplicated blobs */
+    public static final String BLOB_DIRECTORY = "blobs";
+
+    private static final int SHARD_WIDTH = 2; // hex chars per level: 256 directories
+
+    private final Path basePath;
+    private final boolean sharded;
+    private final int shardDepth;
+    private final boolean perShareDirectory;
+
+    public StoragePathUtil(
+            @Value("${fluxshare.storage.base-path:./storage/encrypted}") String basePath,
+            @Value("${fluxshare.storage.layout:sharded}") String layout,
+            @Value("${fluxshare.storage.shard-depth:2}") int shardDepth,
+            @Value("${fluxshare.storage.per-share-directory:true}") boolean perShareDirectory) {
+        this.basePath = Paths.get(basePath);
+        this.sharded = !LAYOUT_FLAT.equalsIgnoreCase(layout);
+        this.shardDepth = Math.max(1, Math.min(shardDepth, 4));
+        this.perShareDirectory = sharded && perShareDirectory;
+    }
+
+    /**
+     * Get the directory all stored files live under
+     */
+    public Path getBasePath() {
+        return basePath;
+    }
+
+    /**
+     * Get the location for a share's file
+     *
+     * @param shareId The public share ID
+     * @param storedFilename The generated stored filename
+     * @return Path under the base path
+     */
+    public Path filePath(String shareId, String storedFilename) {
+        return filePath(basePath, shareId, storedFilename);
+    }
+
+    /**
+     * Get the location for a share's file on a storage volume
+     *
+     * @param root The volume's root directory
+     * @param shareId The public share ID
+     * @param storedFilename The generated stored filename
+     * @return Path under the volume root
+     */
+    public Path filePath(Path root, String shareId, String storedFilename) {
+        if (!sharded) {
+            return root.resolve(storedFilename);
+        }
+        if (perShareDirectory) {
+            return shareDirectory(root, shareId).resolve(storedFilename);
+        }
+        return shard(root, storedFilename).resolve(storedFilename);
+    }
+
+    /**
+     * Get the directory holding all of a share's files
+     *
+     * @param shareId The public share ID
+     * @return The share's directory, or null when files are not grouped per share
+     */
+    public Path shareDirectory(String shareId) {
+        return shareDirectory(basePath, shareId);
+    }
+
+    /**
+     * Get the directory holding a share's files on a storage volume
+     *
+     * @param root The volume's root directory
+     * @param shareId The public share ID
+     * @return The share's directory, or null when files are not grouped per share
+     */
+    public Path shareDirectory(Path root, String shareId) {
+        return perShareDirectory ? shard(root, shareId).resolve(shareId) : null;
+    }
+
+    /**
+     * Get the location for a deduplicated blob
+     *
+     * @param blobId The blob ID
+     * @return Path under the blob directory
+     */
+    public Path blobPath(UUID blobId) {
+        Path blobDirectory = basePath.resolve(BLOB_DIRECTORY);
+        String name = blobId.toString();
+        return sharded ? shard(blobDirectory, name).resolve(name) : blobDirectory.resolve(name);
+    }
+
+    /**
+     * Nest a name under hash-prefixed directories, e.g. {@code parent/ab/cd}
+     */
+    private Path shard(Path parent, String name) {
+        String hash = HexFormat.of().formatHex(sha256(name));
+        Path directory = parent;
+        for (int level = 0; level < shardDepth; level++) {
+            directory = directory.resolve(hash.substring(level * SHARD_WIDTH, (level + 1) * SHARD_WIDTH));
+        }
+        return directory;
+    }
+
+    private static byte[] sha256(String value) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(value.getBytes(StandardCharsets.UTF_8));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
@@ -1,9 +1,12 @@
 package com.fluxshare.util;
 
 import com.fluxshare.exception.FileStorageException;
+import lombok.RequiredArgsConstructor;
+import org.apache.commons.io.output.CloseShieldOutputStream;
 import org.springframework.stereotype.Component;
 
 import java.io.*;
+import java.nio.ByteBuffer;
 import java.nio.file.Path;
 import java.util.List;
 import java.util.zip.ZipEntry;
@@ -14,9 +17,10 @@ import java.util.zip.ZipOutputStream;
  * Implements Singleton pattern.
  */
 @Component
+@RequiredArgsConstructor
 public class ZipUtil {
 
-    private static final int BUFFER_SIZE = 8192;
+    private final BufferPool bufferPool;
 
     /**
      * Create a ZIP file from multiple files
@@ -46,13 +50,14 @@ public class ZipUtil {
      * @throws IOException if writing fails
      */
     public void createZipFromStreams(List<FileData> fileData, OutputStream zipOutputStream) throws IOException {
+        ByteBuffer pooled = bufferPool.acquire();
         try (ZipOutputStream zos = new ZipOutputStream(zipOutputStream)) {
+            byte[] buffer = pooled.array();
             
             for (FileData data : fileData) {
                 ZipEntry zipEntry = new ZipEntry(data.getName());
                 zos.putNextEntry(zipEntry);
                 
-                byte[] buffer = new byte[BUFFER_SIZE];
                 int length;
                 while ((length = data.getInputStream().read(buffer)) > 0) {
                     zos.write(buffer, 0, length);
@@ -62,6 +67,32 @@ public class ZipUtil {
                 data.getInputStream().close();
             }
             
+            zos.finish();
+        } finally {
+            bufferPool.release(pooled);
+        }
+    }
+
+    /**
+     * Create a ZIP by pulling each entry's content lazily, one entry at a time.
+     * Content is written directly into the ZIP stream, so memory use does not
+     * depend on the number or size of entries.
+     * 
+     * @param entries List of entries whose content is produced on demand
+     * @param zipOutputStream The output stream to write ZIP data to
+     * @throws IOException if writing fails
+     */
+    public void createZipStreaming(List<StreamingEntry> entries, OutputStream zipOutputStream) throws IOException {
+        try (ZipOutputStream zos = new ZipOutputStream(zipOutputStream)) {
+            // Entry writers must not be able to close the ZIP stream
+            OutputStream entryStream = CloseShieldOutputStream.wrap(zos);
+
+            for (StreamingEntry entry : entries) {
+                zos.putNextEntry(new ZipEntry(entry.getName()));
+                entry.getContent().writeTo(entryStream);
+                zos.closeEntry();
+            }
+            
             zos.finish();
         }
     }
@@ -75,17 +106,20 @@ public class ZipUtil {
      * @throws IOException if adding file fails
      */
     private void addToZip(File file, String fileName, ZipOutputStream zos) throws IOException {
+        ByteBuffer pooled = bufferPool.acquire();
         try (FileInputStream fis = new FileInputStream(file)) {
             ZipEntry zipEntry = new ZipEntry(fileName);
             zos.putNextEntry(zipEntry);
             
-            byte[] buffer = new byte[BUFFER_SIZE];
+            byte[] buffer = pooled.array();
             int length;
             while ((length = fis.read(buffer)) > 0) {
                 zos.write(buffer, 0, length);
             }
             
             zos.closeEntry();
+        } finally {
+            bufferPool.release(pooled);
         }
     }
 
@@ -125,4 +159,33 @@ public class ZipUtil {
             return inputStream;
         }
     }
+
+    /**
+     * Producer of an entry's content, invoked only when the entry is written
+     */
+    @FunctionalInterface
+    public interface EntryContent {
+        void writeTo(OutputStream outputStream) throws IOException;
+    }
+
+    /**
+     * Data class for a ZIP entry whose content is written lazily
+     */
+    public static class StreamingEntry {
+        private final String name;
+        private final EntryContent content;
+
+        public StreamingEntry(String name, EntryContent content) {
+            this.name = name;
+            this.content = content;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public EntryContent getContent() {
+            return content;
+        }
+    }
 }
@@ -0,0 +1,103 @@
+package com.fluxshare.service.impl;
+
+import com.fluxshare.config.CryptoExecutorConfig;
+import com.fluxshare.service.EncryptionStrategy;
+import com.fluxshare.util.BufferPool;
+import com.fluxshare.util.RandomSource;
+
+import java.io.ByteArrayInputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Upload encryption throughput, sequential vs. parallel segments on the
+ * cryptoExecutor, for deciding whether fluxshare.encryption.parallel should
+ * be enabled on a host. Encrypts a random payload into a null sink and
+ * reports the best of several runs after warmup.
+ *
+ * <p>Not a unit test; run it on the target hardware after {@code mvn test-compile}:
+ * <pre>
+ * mvn -q dependency:build-classpath -Dmdep.outputFile=target/cp.txt
+ * java -cp target/classes:target/test-classes:$(cat target/cp.txt) \
+ *     com.fluxshare.service.impl.ParallelEncryptionBenchmark [size-mb] [threads,...]
+ * </pre>
+ * Defaults: 64 MB, and 1, 2, 4, ... up to the number of cores. Each thread
+ * count uses two segments in flight per thread, as the service does by default.
+ */
+public final class ParallelEncryptionBenchmark {
+
+    private static final int WARMUP_RUNS = 10;
+    private static final int MEASURED_RUNS = 5;
+
+    private ParallelEncryptionBenchmark() {
+    }
+
+    public static void main(String[] args) {
+        int sizeMb = args.length > 0 ? Integer.parseInt(args[0]) : 64;
+        int[] threadCounts = args.length > 1
+                ? Arrays.stream(args[1].split(",")).mapToInt(Integer::parseInt).toArray()
+                : defaultThreadCounts();
+
+        byte[] payload = new byte[sizeMb * 1024 * 1024];
+        new Random(42).nextBytes(payload);
+
+        RandomSource randomSource = new RandomSource();
+        CipherPool cipherPool = new CipherPool();
+        BufferPool bufferPool = new BufferPool();
+        List<EncryptionStrategy> strategies = List.of(
+                new AesGcmEncryptionStrategy(randomSource, cipherPool, bufferPool),
+                new ChaCha20Poly1305EncryptionStrategy(randomSource, cipherPool, bufferPool));
+
+        System.out.printf("%d MB payload, %d cores, best of %d runs (MB/s)%n",
+                sizeMb, Runtime.getRuntime().availableProcessors(), MEASURED_RUNS);
+        for (EncryptionStrategy strategy : strategies) {
+            byte[] key = new byte[32];
+            randomSource.nextBytes(key);
+
+            StringBuilder line = new StringBuilder(String.format("%-18s sequential %6.0f",
+                    strategy.getAlgorithmName(),
+                    measure(payload, () -> strategy.encryptStream(
+                            new ByteArrayInputStream(payload), OutputStream.nullOutputStream(), key))));
+
+            for (int threads : threadCounts) {
+                ExecutorService executor = new CryptoExecutorConfig().cryptoExecutor(threads);
+                try {
+                    double throughput = measure(payload, () -> strategy.encryptStreamParallel(
+                            new ByteArrayInputStream(payload), OutputStream.nullOutputStream(), key,
+                            executor, 2 * threads));
+                    line.append(String.format(" | %d thr %6.0f", threads, throughput));
+                } finally {
+                    executor.shutdown();
+                }
+            }
+            System.out.println(line);
+        }
+    }
+
+    private static double measure(byte[] payload, Runnable run) {
+        for (int i = 0; i < WARMUP_RUNS; i++) {
+            run.run();
+        }
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < MEASURED_RUNS; i++) {
+            long start = System.nanoTime();
+            run.run();
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        return payload.length / (1024.0 * 1024.0) / (best / 1e9);
+    }
+
+    private static int[] defaultThreadCounts() {
+        int cores = Runtime.getRuntime().availableProcessors();
+        List<Integer> counts = new ArrayList<>();
+        for (int threads = 1; threads < cores; threads *= 2) {
+            counts.add(threads);
+        }
+        counts.add(cores);
+        return counts.stream().mapToInt(Integer::intValue).toArray();
+    }
+}
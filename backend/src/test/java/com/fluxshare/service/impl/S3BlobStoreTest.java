@@ -0,0 +1,403 @@
+package com.fluxshare.service.impl;
+
+import com.fluxshare.exception.FileStorageException;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.NoSuchFileException;
+import java.security.MessageDigest;
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Runs the S3 blob store against a minimal in-memory S3 endpoint: multipart
+ * writes with one part in flight, aborts, reads through ranged GETs, and
+ * server-side copies in one request or in ranged parts.
+ */
+class S3BlobStoreTest {
+
+    private static final String BUCKET = "fluxshare";
+    private static final int PART_SIZE = 5 * 1024 * 1024;
+    private static final long MAX_COPY_SIZE = 1024 * 1024;
+
+    private StubS3 s3;
+    private S3BlobStore store;
+
+    @BeforeEach
+    void startStub() throws IOException {
+        s3 = new StubS3();
+        store = new S3BlobStore("http://127.0.0.1:" + s3.port(), "us-east-1", BUCKET,
+                "test-access-key", "test-secret-key", true, PART_SIZE, MAX_COPY_SIZE, Clock.systemUTC());
+    }
+
+    @AfterEach
+    void stopStub() {
+        s3.stop();
+    }
+
+    @Test
+    void writesLargeObjectAsMultipartUpload() {
+        byte[] content = randomBytes(2 * PART_SIZE + 123_457);
+
+        store.write("./shares/abc/file.enc", outputStream -> {
+            for (int off = 0; off < content.length; off += 100_000) {
+                outputStream.write(content, off, Math.min(100_000, content.length - off));
+            }
+        });
+
+        assertThat(s3.objects.get("shares/abc/file.enc")).isEqualTo(content);
+        assertThat(s3.requests).containsExactly(
+                "POST uploads",
+                "PUT partNumber=1",
+                "PUT partNumber=2",
+                "PUT partNumber=3",
+                "POST complete");
+        assertThat(s3.completedParts).containsExactly(1, 2, 3);
+    }
+
+    @Test
+    void writesSmallObjectWithSinglePut() {
+        byte[] content = randomBytes(1000);
+
+        store.write("small.enc", outputStream -> outputStream.write(content));
+
+        assertThat(s3.objects.get("small.enc")).isEqualTo(content);
+        assertThat(s3.requests).containsExactly("PUT object");
+    }
+
+    @Test
+    void abortsMultipartUploadWhenWriterFails() {
+        byte[] content = randomBytes(PART_SIZE + 1);
+
+        assertThatThrownBy(() -> store.write("failed.enc", outputStream -> {
+            outputStream.write(content);
+            throw new IOException("client disconnected");
+        })).isInstanceOf(FileStorageException.class);
+
+        assertThat(s3.objects).doesNotContainKey("failed.enc");
+        assertThat(s3.requests).contains("POST uploads", "DELETE abort").doesNotContain("POST complete");
+        assertThat(s3.uploads).isEmpty();
+    }
+
+    @Test
+    void readsWithRangedGetsAndReopensOnLargeSkips() throws IOException {
+        byte[] content = randomBytes(1024 * 1024);
+        s3.objects.put("read.enc", content);
+
+        try (InputStream inputStream = store.openStream("read.enc")) {
+            assertThat(inputStream.readNBytes(10)).isEqualTo(Arrays.copyOfRange(content, 0, 10));
+
+            // A short skip reads through the open response
+            assertThat(inputStream.skip(1000)).isEqualTo(1000);
+            assertThat(inputStream.readNBytes(10)).isEqualTo(Arrays.copyOfRange(content, 1010, 1020));
+
+            // A long skip issues a new GET from the new position
+            assertThat(inputStream.skip(500_000)).isEqualTo(500_000);
+            assertThat(inputStream.readAllBytes()).isEqualTo(Arrays.copyOfRange(content, 501_020, content.length));
+            assertThat(inputStream.read()).isEqualTo(-1);
+        }
+
+        assertThat(s3.ranges).containsExactly("bytes=0-", "bytes=501020-");
+    }
+
+    @Test
+    void readsNothingPastTheEnd() throws IOException {
+        s3.objects.put("short.enc", randomBytes(100));
+
+        try (InputStream inputStream = store.openStream("short.enc")) {
+            inputStream.skip(1_000_000);
+            assertThat(inputStream.read(new byte[10])).isEqualTo(-1);
+        }
+
+        assertThat(s3.ranges).containsExactly("bytes=0-", "bytes=1000000-");
+    }
+
+    @Test
+    void reportsMissingObjectWhenOpened() {
+        assertThatThrownBy(() -> store.openStream("missing.enc"))
+                .isInstanceOf(FileStorageException.class)
+                .hasCauseInstanceOf(NoSuchFileException.class);
+        assertThatThrownBy(() -> store.size("missing.enc"))
+                .isInstanceOf(FileStorageException.class)
+                .hasCauseInstanceOf(NoSuchFileException.class);
+    }
+
+    @Test
+    void copiesSmallObjectWithSingleRequest() {
+        byte[] content = randomBytes(1000);
+        s3.objects.put("shares/a.enc", content);
+
+        store.copy("shares/a.enc", "ab/shares/a.enc");
+
+        assertThat(s3.objects.get("ab/shares/a.enc")).isEqualTo(content);
+        assertThat(s3.requests).containsExactly("HEAD", "PUT copy");
+    }
+
+    @Test
+    void copiesLargeObjectInRangedParts() {
+        byte[] content = randomBytes((int) (2 * MAX_COPY_SIZE + 4321));
+        s3.objects.put("large.enc", content);
+
+        store.copy("large.enc", "ab/large.enc");
+
+        assertThat(s3.objects.get("ab/large.enc")).isEqualTo(content);
+        assertThat(s3.requests).containsExactly(
+                "HEAD",
+                "POST uploads",
+                "PUT copy partNumber=1 bytes=0-1048575",
+                "PUT copy partNumber=2 bytes=1048576-2097151",
+                "PUT copy partNumber=3 bytes=2097152-2101472",
+                "POST complete");
+        assertThat(s3.uploads).isEmpty();
+    }
+
+    @Test
+    void abortsPartCopyWhenSourceDisappears() {
+        s3.objects.put("gone.enc", randomBytes((int) (MAX_COPY_SIZE + 1)));
+        s3.deleteBeforePartCopy = true;
+
+        assertThatThrownBy(() -> store.copy("gone.enc", "ab/gone.enc")).isInstanceOf(FileStorageException.class);
+
+        assertThat(s3.objects).doesNotContainKey("ab/gone.enc");
+        assertThat(s3.requests).contains("DELETE abort").doesNotContain("POST complete");
+        assertThat(s3.uploads).isEmpty();
+    }
+
+    private static byte[] randomBytes(int length) {
+        byte[] bytes = new byte[length];
+        new Random(length).nextBytes(bytes);
+        return bytes;
+    }
+
+    /**
+     * Path-style S3 endpoint keeping objects and multipart uploads in memory.
+     * Rejects requests whose payload hash does not match their body.
+     */
+    private static final class StubS3 {
+
+        private static final Pattern PART_NUMBER = Pattern.compile("<PartNumber>(\\d+)</PartNumber>");
+
+        final Map<String, byte[]> objects = new ConcurrentHashMap<>();
+        final Map<String, TreeMap<Integer, byte[]>> uploads = new ConcurrentHashMap<>();
+        final List<String> requests = new CopyOnWriteArrayList<>();
+        final List<String> ranges = new CopyOnWriteArrayList<>();
+        final List<Integer> completedParts = new CopyOnWriteArrayList<>();
+        volatile boolean deleteBeforePartCopy;
+
+        private final HttpServer server;
+        private int nextUploadId;
+
+        StubS3() throws IOException {
+            server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+            server.createContext("/", this::handle);
+            server.start();
+        }
+
+        int port() {
+            return server.getAddress().getPort();
+        }
+
+        void stop() {
+            server.stop(0);
+        }
+
+        private void handle(HttpExchange exchange) throws IOException {
+            try (exchange) {
+                byte[] body = exchange.getRequestBody().readAllBytes();
+                String payloadHash = exchange.getRequestHeaders().getFirst("x-amz-content-sha256");
+                String authorization = exchange.getRequestHeaders().getFirst("Authorization");
+                if (authorization == null || !authorization.startsWith("AWS4-HMAC-SHA256 Credential=test-access-key/")
+                        || !sha256Hex(body).equals(payloadHash)) {
+                    respond(exchange, 403, "<Error><Code>SignatureDoesNotMatch</Code></Error>");
+                    return;
+                }
+
+                String key = exchange.getRequestURI().getPath().substring(("/" + BUCKET + "/").length());
+                Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+                switch (exchange.getRequestMethod()) {
+                    case "PUT" -> put(exchange, key, query, body);
+                    case "POST" -> post(exchange, key, query, body);
+                    case "GET" -> get(exchange, key);
+                    case "HEAD" -> head(exchange, key);
+                    case "DELETE" -> delete(exchange, query);
+                    default -> respond(exchange, 405, "");
+                }
+            }
+        }
+
+        private void put(HttpExchange exchange, String key, Map<String, String> query, byte[] body)
+                throws IOException {
+            String copySource = exchange.getRequestHeaders().getFirst("x-amz-copy-source");
+            if (copySource != null) {
+                copy(exchange, key, query, copySource.substring(("/" + BUCKET + "/").length()));
+                return;
+            }
+            if (query.containsKey("partNumber")) {
+                requests.add("PUT partNumber=" + query.get("partNumber"));
+                int partNumber = Integer.parseInt(query.get("partNumber"));
+                TreeMap<Integer, byte[]> parts = uploads.get(query.get("uploadId"));
+                if (parts == null) {
+                    respond(exchange, 404, "<Error><Code>NoSuchUpload</Code></Error>");
+                    return;
+                }
+                parts.put(partNumber, body);
+                exchange.getResponseHeaders().set("ETag", "\"etag-" + partNumber + "\"");
+            } else {
+                requests.add("PUT object");
+                objects.put(key, body);
+            }
+            respond(exchange, 200, "");
+        }
+
+        private void copy(HttpExchange exchange, String key, Map<String, String> query, String sourceKey)
+                throws IOException {
+            if (!query.containsKey("partNumber")) {
+                requests.add("PUT copy");
+                objects.put(key, objects.get(sourceKey).clone());
+                respond(exchange, 200, "<CopyObjectResult><ETag>&quot;copy&quot;</ETag></CopyObjectResult>");
+                return;
+            }
+
+            String range = exchange.getRequestHeaders().getFirst("x-amz-copy-source-range");
+            requests.add("PUT copy partNumber=" + query.get("partNumber") + " " + range);
+            if (deleteBeforePartCopy) {
+                objects.remove(sourceKey);
+            }
+            byte[] source = objects.get(sourceKey);
+            if (source == null) {
+                // Copy errors arrive in the body of a 200 response
+                respond(exchange, 200, "<Error><Code>NoSuchKey</Code></Error>");
+                return;
+            }
+            String[] bounds = range.substring("bytes=".length()).split("-");
+            int partNumber = Integer.parseInt(query.get("partNumber"));
+            uploads.get(query.get("uploadId")).put(partNumber, Arrays.copyOfRange(source,
+                    Integer.parseInt(bounds[0]), Integer.parseInt(bounds[1]) + 1));
+            respond(exchange, 200, "<CopyPartResult><ETag>&quot;etag-" + partNumber
+                    + "&quot;</ETag></CopyPartResult>");
+        }
+
+        private void head(HttpExchange exchange, String key) throws IOException {
+            requests.add("HEAD");
+            byte[] object = objects.get(key);
+            if (object == null) {
+                exchange.sendResponseHeaders(404, -1);
+                return;
+            }
+            exchange.getResponseHeaders().set("Content-Length", String.valueOf(object.length));
+            exchange.sendResponseHeaders(200, -1);
+        }
+
+        private void post(HttpExchange exchange, String key, Map<String, String> query, byte[] body)
+                throws IOException {
+            if (query.containsKey("uploads")) {
+                requests.add("POST uploads");
+                String uploadId;
+                synchronized (this) {
+                    uploadId = "upload-" + nextUploadId++;
+                }
+                uploads.put(uploadId, new TreeMap<>());
+                respond(exchange, 200, "<InitiateMultipartUploadResult><UploadId>" + uploadId
+                        + "</UploadId></InitiateMultipartUploadResult>");
+                return;
+            }
+
+            requests.add("POST complete");
+            TreeMap<Integer, byte[]> parts = uploads.remove(query.get("uploadId"));
+            Matcher matcher = PART_NUMBER.matcher(new String(body, StandardCharsets.UTF_8));
+            List<byte[]> ordered = new ArrayList<>();
+            while (matcher.find()) {
+                int partNumber = Integer.parseInt(matcher.group(1));
+                completedParts.add(partNumber);
+                ordered.add(parts.get(partNumber));
+            }
+            int length = ordered.stream().mapToInt(part -> part.length).sum();
+            byte[] object = new byte[length];
+            int offset = 0;
+            for (byte[] part : ordered) {
+                System.arraycopy(part, 0, object, offset, part.length);
+                offset += part.length;
+            }
+            objects.put(key, object);
+            respond(exchange, 200, "<CompleteMultipartUploadResult/>");
+        }
+
+        private void get(HttpExchange exchange, String key) throws IOException {
+            byte[] object = objects.get(key);
+            if (object == null) {
+                respond(exchange, 404, "<Error><Code>NoSuchKey</Code></Error>");
+                return;
+            }
+
+            String range = exchange.getRequestHeaders().getFirst("Range");
+            ranges.add(range);
+            long start = Long.parseLong(range.substring("bytes=".length(), range.length() - 1));
+            if (start >= object.length) {
+                respond(exchange, 416, "<Error><Code>InvalidRange</Code></Error>");
+                return;
+            }
+            exchange.getResponseHeaders().set("Content-Range",
+                    "bytes " + start + "-" + (object.length - 1) + "/" + object.length);
+            exchange.sendResponseHeaders(206, object.length - start);
+            try (OutputStream outputStream = exchange.getResponseBody()) {
+                outputStream.write(object, (int) start, (int) (object.length - start));
+            }
+        }
+
+        private void delete(HttpExchange exchange, Map<String, String> query) throws IOException {
+            requests.add("DELETE abort");
+            uploads.remove(query.get("uploadId"));
+            exchange.sendResponseHeaders(204, -1);
+        }
+
+        private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+            byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(status, bytes.length == 0 ? -1 : bytes.length);
+            if (bytes.length > 0) {
+                exchange.getResponseBody().write(bytes);
+            }
+        }
+
+        private static Map<String, String> parseQuery(String rawQuery) {
+            Map<String, String> query = new TreeMap<>();
+            if (rawQuery != null) {
+                for (String parameter : rawQuery.split("&")) {
+                    int equals = parameter.indexOf('=');
+                    query.put(equals < 0 ? parameter : parameter.substring(0, equals),
+                            equals < 0 ? "" : parameter.substring(equals + 1));
+                }
+            }
+            return query;
+        }
+
+        private static String sha256Hex(byte[] data) {
+            try {
+                return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(data));
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package com.fluxshare.util;
+
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Throughput of {@link RandomSource} against the single shared
+ * {@link SecureRandom} it replaced, with several threads drawing at once.
+ * Compares 12-byte AEAD nonces (shared nextBytes vs. nextNonce) and 8-char
+ * share IDs (one shared nextInt per character vs. nextString).
+ *
+ * <p>Not a unit test; run it after {@code mvn test-compile}:
+ * <pre>
+ * mvn -q dependency:build-classpath -Dmdep.outputFile=target/cp.txt
+ * java -cp target/classes:target/test-classes:$(cat target/cp.txt) \
+ *     com.fluxshare.util.RandomSourceBenchmark [seconds-per-point] [threads,...]
+ * </pre>
+ * Defaults: 1 second per point, and 1, 2, 4, 8 threads. Each point is
+ * preceded by a warmup of the same length.
+ */
+public final class RandomSourceBenchmark {
+
+    private static final String ALPHABET = "abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789";
+    private static final int ID_LENGTH = 8;
+    private static final int NONCE_SIZE = 12;
+
+    private static volatile int sink;
+
+    private RandomSourceBenchmark() {
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        long seconds = args.length > 0 ? Long.parseLong(args[0]) : 1;
+        int[] threadCounts = args.length > 1
+                ? Arrays.stream(args[1].split(",")).mapToInt(Integer::parseInt).toArray()
+                : new int[] {1, 2, 4, 8};
+
+        SecureRandom shared = new SecureRandom();
+        RandomSource randomSource = new RandomSource();
+
+        System.out.printf("%d cores, ops/s over %d s per point%n",
+                Runtime.getRuntime().availableProcessors(), seconds);
+        System.out.printf("%-8s %-14s %-14s %-14s %-14s%n",
+                "threads", "nonce shared", "nonce per-thr", "id shared", "id per-thr");
+        for (int threads : threadCounts) {
+            double sharedNonce = measure(threads, seconds, () -> {
+                byte[] nonce = new byte[NONCE_SIZE];
+                shared.nextBytes(nonce);
+                return nonce[0];
+            });
+            double threadNonce = measure(threads, seconds, () -> {
+                byte[] nonce = new byte[NONCE_SIZE];
+                randomSource.nextNonce(nonce);
+                return nonce[NONCE_SIZE - 1];
+            });
+            double sharedId = measure(threads, seconds, () -> {
+                StringBuilder sb = new StringBuilder(ID_LENGTH);
+                for (int i = 0; i < ID_LENGTH; i++) {
+                    sb.append(ALPHABET.charAt(shared.nextInt(ALPHABET.length())));
+                }
+                return sb.charAt(0);
+            });
+            double threadId = measure(threads, seconds,
+                    () -> randomSource.nextString(ALPHABET, ID_LENGTH).charAt(0));
+
+            System.out.printf("%-8d %-14s %-14s %-14s %-14s%n", threads,
+                    format(sharedNonce), format(threadNonce), format(sharedId), format(threadId));
+        }
+    }
+
+    /**
+     * Run the operation on {@code threads} threads, first for a warmup
+     * period and then for the measured one
+     *
+     * @return Operations per second across all threads
+     */
+    private static double measure(int threads, long seconds, Operation operation) throws InterruptedException {
+        run(threads, seconds, operation);
+        return run(threads, seconds, operation) / (double) seconds;
+    }
+
+    private static long run(int threads, long seconds, Operation operation) throws InterruptedException {
+        LongAdder count = new LongAdder();
+        AtomicBoolean running = new AtomicBoolean(true);
+        CountDownLatch start = new CountDownLatch(1);
+        Thread[] workers = new Thread[threads];
+
+        for (int t = 0; t < threads; t++) {
+            workers[t] = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                long local = 0;
+                int result = 0;
+                while (running.get()) {
+                    result += operation.run();
+                    local++;
+                }
+                sink += result;
+                count.add(local);
+            });
+            workers[t].start();
+        }
+
+        start.countDown();
+        Thread.sleep(TimeUnit.SECONDS.toMillis(seconds));
+        running.set(false);
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        return count.sum();
+    }
+
+    private static String format(double opsPerSecond) {
+        return opsPerSecond >= 1e6
+                ? String.format("%.2fM", opsPerSecond / 1e6)
+                : String.format("%.0fK", opsPerSecond / 1e3);
+    }
+
+    @FunctionalInterface
+    private interface Operation {
+        int run();
+    }
+}
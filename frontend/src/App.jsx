@@ -104,17 +104,17 @@ function HomePage() {
       };
 
       if (activeTab === 0) {
-        // File share
+        // File share; options go first, the server reads the form as it streams in
         const formData = new FormData();
-        files.forEach((file) => {
-          formData.append('files', file);
-        });
         formData.append('expiryHours', commonData.expiryHours);
         formData.append('viewOnce', commonData.viewOnce);
         if (commonData.password) formData.append('password', commonData.password);
         if (commonData.notes) formData.append('notes', commonData.notes);
         if (options.maxDownloads) formData.append('maxDownloads', options.maxDownloads);
         if (options.maxViews) formData.append('maxViews', options.maxViews);
+        files.forEach((file) => {
+          formData.append('files', file);
+        });
 
         console.log('FormData being sent:');
         for (let pair of formData.entries()) {
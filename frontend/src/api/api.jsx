@@ -12,7 +12,7 @@ const api = axios.create({
 
 // File Share APIs
 export const createFileShare = async (formData) => {
-  const response = await api.post('/share/file', formData, {
+  const response = await api.post('/share/file/stream', formData, {
     headers: {
       'Content-Type': 'multipart/form-data',
     },